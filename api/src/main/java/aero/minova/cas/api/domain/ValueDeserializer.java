@@ -7,35 +7,34 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.Locale;
 
-import org.springframework.beans.factory.annotation.Autowired;
-
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 
 public class ValueDeserializer extends com.fasterxml.jackson.databind.JsonDeserializer<Value> implements JsonDeserializer<Value> {
-	@Autowired
-	private Gson gson;
-
-	private ObjectMapper jacksonMapper = new ObjectMapper();
 
 	public static final String SQL_IS_NULL = "null";
 	public static final String SQL_IS_NOT_NULL = "!null";
 	protected static final String[] SQL_OPERATORS = { "<>", "<=", ">=", "<", ">", "=", "between()", "in()", "!~", "~", SQL_IS_NULL, SQL_IS_NOT_NULL };
 
+	/**
+	 * Liest den Value direkt aus dem Jackson-Stream, ohne Zwischenbaum und ohne den Umweg über Gson. Das Format ist dasselbe wie bei
+	 * {@link #deserialize(JsonElement, Type, JsonDeserializationContext)}.
+	 */
 	@Override
 	public Value deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
-		ObjectCodec codec = jsonParser.getCodec();
-		JsonNode node = codec.readTree(jsonParser);
-
-		return gson.fromJson(jacksonMapper.writeValueAsString(node), Value.class);
+		JsonToken token = jsonParser.currentToken();
+		if (token == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		if (token == null || !token.isScalarValue()) {
+			return (Value) deserializationContext.handleUnexpectedToken(Value.class, jsonParser);
+		}
+		return fromWireString(jsonParser.getText());
 	}
 
 	@Override
@@ -43,8 +42,19 @@ public class ValueDeserializer extends com.fasterxml.jackson.databind.JsonDeseri
 		if (json == null || type == null) {
 			return null;
 		}
-		String typeString = json.getAsString().substring(0, 1);
-		String value = json.getAsString().substring(2);
+		return fromWireString(json.getAsString());
+	}
+
+	/**
+	 * Wandelt einen String im Übertragungsformat (z.B. "n-42" oder "f-~-s-test%") in einen Value um. Wird von Gson und Jackson gleichermaßen verwendet.
+	 *
+	 * @param json
+	 *            Der String im Übertragungsformat.
+	 * @return Den Value oder null, falls der Typ unbekannt ist.
+	 */
+	public static Value fromWireString(String json) {
+		String typeString = json.substring(0, 1);
+		String value = json.substring(2);
 		String rule;
 
 		if (value == null) {
@@ -3,28 +3,59 @@ package aero.minova.cas.api.domain;
 import java.io.IOException;
 import java.lang.reflect.Type;
 
-import org.springframework.beans.factory.annotation.Autowired;
-
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.SerializerProvider;
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
 public class ValueSerializer extends com.fasterxml.jackson.databind.JsonSerializer<Value> implements JsonSerializer<Value> {
-	@Autowired
-	private Gson gson;
 
+	private static final CharacterEscapes GSON_ESCAPES = new GsonCharacterEscapes();
+
+	/**
+	 * Schreibt den Value direkt in den Jackson-Stream, ohne den Umweg über Gson. Das Format ist dasselbe wie bei
+	 * {@link #serialize(Value, Type, JsonSerializationContext)}. Der String wird wie bei Gson maskiert (siehe {@link GsonCharacterEscapes}), sodass das JSON
+	 * Byte für Byte gleich ist.
+	 */
 	@Override
 	public void serialize(Value value, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
-		jsonGenerator.writeRawValue(gson.toJson(value));
+		String encoded = toWireString(value);
+		if (encoded == null) {
+			jsonGenerator.writeNull();
+			return;
+		}
+		final CharacterEscapes previous = jsonGenerator.getCharacterEscapes();
+		jsonGenerator.setCharacterEscapes(GSON_ESCAPES);
+		try {
+			jsonGenerator.writeString(encoded);
+		} finally {
+			jsonGenerator.setCharacterEscapes(previous);
+		}
 	}
 
 	@Override
 	public JsonElement serialize(Value value, Type type, JsonSerializationContext context) {
-		if (value == null || type == null || value.getValue() == null || value.getType() == null) {
+		if (type == null) {
+			return null;
+		}
+		String encoded = toWireString(value);
+		return encoded == null ? null : new JsonPrimitive(encoded);
+	}
+
+	/**
+	 * Wandelt den Value in das Übertragungsformat um, z.B. "n-42" oder "f-~-s-test%". Wird von Gson und Jackson gleichermaßen verwendet.
+	 *
+	 * @param value
+	 *            Der umzuwandelnde Value.
+	 * @return Den String im Übertragungsformat oder null, falls der Value, sein Wert oder sein Typ null ist.
+	 */
+	public static String toWireString(Value value) {
+		if (value == null || value.getValue() == null || value.getType() == null) {
 			return null;
 		}
 
@@ -41,23 +72,63 @@ public class ValueSerializer extends com.fasterxml.jackson.databind.JsonSerializ
 
 		switch (value.getType()) {
 		case INTEGER:
-			return new JsonPrimitive(ruleString + "n-" + value.getIntegerValue());
+			return ruleString + "n-" + value.getIntegerValue();
 		case DOUBLE:
-			return new JsonPrimitive(ruleString + "d-" + value.getDoubleValue());
+			return ruleString + "d-" + value.getDoubleValue();
 		case STRING:
-			return new JsonPrimitive(ruleString + "s-" + value.getStringValue());
+			return ruleString + "s-" + value.getStringValue();
 		case INSTANT:
-			return new JsonPrimitive(ruleString + "i-" + value.getInstantValue().toString());
+			return ruleString + "i-" + value.getInstantValue().toString();
 		case ZONED:
-			return new JsonPrimitive(ruleString + "z-" + value.getZonedDateTimeValue().toString());
+			return ruleString + "z-" + value.getZonedDateTimeValue().toString();
 		case BOOLEAN:
-			return new JsonPrimitive(ruleString + "b-" + value.getBooleanValue().toString());
+			return ruleString + "b-" + value.getBooleanValue().toString();
 		case BIGDECIMAL:
-			return new JsonPrimitive(ruleString + "m-" + value.getBigDecimalValue().toString());
+			return ruleString + "m-" + value.getBigDecimalValue().toString();
 		case LONG:
-			return new JsonPrimitive(ruleString + "l-" + value.getLongValue().toString());
+			return ruleString + "l-" + value.getLongValue().toString();
 		default:
 			return null;
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Maskiert wie Gson ohne disableHtmlEscaping: zusätzlich zu Jackson auch &lt;, &gt;, &amp;, = und ' sowie U+2028 und U+2029. Die Hex-Ziffern der
+	 * Unicode-Escapes werden wie bei Gson klein geschrieben, Jackson schreibt sie sonst groß.
+	 */
+	static final class GsonCharacterEscapes extends CharacterEscapes {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] asciiEscapes = standardAsciiEscapesForJSON();
+		private final SerializableString[] asciiSequences = new SerializableString[asciiEscapes.length];
+
+		GsonCharacterEscapes() {
+			for (char c : "<>&='".toCharArray()) {
+				asciiEscapes[c] = ESCAPE_STANDARD;
+			}
+			for (int c = 0; c < asciiEscapes.length; c++) {
+				if (asciiEscapes[c] == ESCAPE_STANDARD) {
+					asciiEscapes[c] = ESCAPE_CUSTOM;
+					asciiSequences[c] = unicodeEscape(c);
+				}
+			}
+		}
+
+		@Override
+		public int[] getEscapeCodesForAscii() {
+			return asciiEscapes;
+		}
+
+		@Override
+		public SerializableString getEscapeSequence(int ch) {
+			if (ch < asciiSequences.length) {
+				return asciiSequences[ch];
+			}
+			return ch == 0x2028 || ch == 0x2029 ? unicodeEscape(ch) : null;
+		}
+
+		private static SerializableString unicodeEscape(int ch) {
+			return new SerializedString(String.format("\\u%04x", ch));
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package aero.minova.cas.api.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Prüft, dass der direkte Jackson-Codec für {@link Value} dasselbe Format liest und schreibt wie der Gson-Codec.
+ */
+class ValueCodecTest {
+
+	private final Gson gson = new GsonBuilder() //
+			.registerTypeAdapter(Value.class, new ValueSerializer()) //
+			.registerTypeAdapter(Value.class, new ValueDeserializer()) //
+			.create();
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private static List<Value> sampleValues() {
+		List<Value> values = new ArrayList<>();
+		values.add(new Value(42));
+		values.add(new Value(42L, ">="));
+		values.add(new Value(1.5d));
+		values.add(new Value("test", null));
+		values.add(new Value("test%", "like"));
+		values.add(new Value("test", "not like"));
+		values.add(new Value("a,b", "in()"));
+		values.add(new Value("", "!null"));
+		values.add(new Value(true));
+		values.add(new Value(new BigDecimal("12.50")));
+		values.add(new Value(Instant.ofEpochMilli(1598613904487L)));
+		values.add(new Value(ZonedDateTime.parse("2023-06-19T08:00:00+02:00[Europe/Berlin]")));
+		values.add(new Value("mit \"Anführungszeichen\" und \\ Backslash", null));
+		values.add(new Value("<a href='x?a=1&b=2'>HTML</a>", null));
+		values.add(new Value("Steuerzeichen " + (char) 0x1f + (char) 0x0b + "\t und " + (char) 0x2028 + " Zeilentrenner, Umlaute äöü", null));
+		return values;
+	}
+
+	@DisplayName("Jackson schreibt dasselbe JSON wie Gson")
+	@Test
+	void test_serializeCompatible() throws Exception {
+		for (Value value : sampleValues()) {
+			String jackson = objectMapper.writeValueAsString(value);
+			String viaGson = gson.toJson(value);
+			// Auch die von Gson maskierten HTML-Zeichen (z.B. '<' und '=') müssen gleich geschrieben werden.
+			assertThat(jackson).isEqualTo(viaGson);
+		}
+	}
+
+	@DisplayName("Jackson liest dasselbe JSON wie Gson")
+	@Test
+	void test_deserializeCompatible() throws Exception {
+		for (Value value : sampleValues()) {
+			String json = gson.toJson(value);
+			Value jackson = objectMapper.readValue(json, Value.class);
+			Value viaGson = gson.fromJson(json, Value.class);
+			assertThat(jackson.toString()).isEqualTo(viaGson.toString());
+		}
+	}
+
+	@DisplayName("null-Werte innerhalb einer Row")
+	@Test
+	void test_nullValues() throws Exception {
+		Row row = new Row();
+		row.addValue(new Value(1));
+		row.addValue(null);
+
+		String jackson = objectMapper.writeValueAsString(row);
+		assertThat(jackson).isEqualTo(gson.toJson(row));
+		Row parsed = objectMapper.readValue(jackson, Row.class);
+		assertThat(parsed.getValues()).hasSize(2);
+		assertThat(parsed.getValues().get(1)).isNull();
+	}
+
+	@DisplayName("Andere Strings im selben Stream werden weiterhin von Jackson maskiert")
+	@Test
+	void test_escapesOnlyValues() throws Exception {
+		Row row = new Row();
+		row.addValue(new Value("a=b", null));
+
+		assertThat(objectMapper.writeValueAsString(List.of("a=b", row, "<c>"))).isEqualTo("[\"a=b\",{\"values\":[\"s-a\\u003db\"]},\"<c>\"]");
+	}
+
+	@DisplayName("Ein Objekt statt eines Strings liefert einen Fehler")
+	@Test
+	void test_unexpectedToken() {
+		JsonNode node = objectMapper.createObjectNode().put("value", "n-1");
+		assertThrows(Exception.class, () -> objectMapper.treeToValue(node, Value.class));
+	}
+
+	/**
+	 * Einfacher Vergleich der beiden Jackson-Pfade für breite Tabellen: direkt über {@link ValueSerializer}/{@link ValueDeserializer} gegen den früheren
+	 * Umweg über Gson-String bzw. Jackson-Baum. JMH ist nicht im Build eingebunden, deshalb wird hier nur grob gemessen. Muss manuell gestartet werden, z.B.
+	 * mit mvn -pl api test -Dtest=ValueCodecTest#benchmark_jacksonVersusGsonRoundTrip nach Entfernen von {@link Disabled}. Die ersten Runden dienen dem
+	 * Aufwärmen der JIT, aussagekräftig sind die letzten.
+	 */
+	@Disabled("Micro-Benchmark, nur manuell ausführen")
+	@Test
+	void benchmark_jacksonVersusGsonRoundTrip() throws Exception {
+		List<Row> rows = new ArrayList<>();
+		for (int i = 0; i < 2_000; i++) {
+			Row row = new Row();
+			for (Value value : sampleValues()) {
+				row.addValue(value);
+			}
+			rows.add(row);
+		}
+		String json = objectMapper.writeValueAsString(rows);
+
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+			objectMapper.writeValueAsString(rows);
+			objectMapper.readValue(json, Row[].class);
+			long direct = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (Row row : rows) {
+				for (Value value : row.getValues()) {
+					// so hat der alte Codec gearbeitet: Gson-String bzw. Jackson-Baum -> String -> Gson
+					gson.fromJson(objectMapper.writeValueAsString(objectMapper.readTree(gson.toJson(value))), Value.class);
+				}
+			}
+			long roundTrip = System.nanoTime() - start;
+
+			System.out.printf("Runde %d: direkt %d ms, über Gson %d ms%n", round, direct / 1_000_000, roundTrip / 1_000_000);
+		}
+	}
+}
@@ -30,6 +30,7 @@ public class AuthoritiesExtension extends BaseGridExtension<Authorities> {
 		viewPrefix = "xvcas";
 		procedurePrefix = "xpcas";
 		tablePrefix = "xtcas";
+		invalidatesPrivileges = true;
 		super.basicSetup();
 	}
 
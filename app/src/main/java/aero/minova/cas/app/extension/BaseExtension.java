@@ -24,6 +24,7 @@ import aero.minova.cas.controller.SqlProcedureController;
 import aero.minova.cas.controller.SqlViewController;
 import aero.minova.cas.service.AuthorizationService;
 import aero.minova.cas.service.BaseService;
+import aero.minova.cas.service.SecurityService;
 import aero.minova.cas.service.model.DataEntity;
 import jakarta.annotation.PostConstruct;
 
@@ -41,10 +42,15 @@ public abstract class BaseExtension<E extends DataEntity> {
 	@Autowired
 	protected AuthorizationService authorizationService;
 
+	@Autowired
+	protected SecurityService securityService;
+
 	protected String procedurePrefix = "xpcor";
 	protected String viewPrefix = "xvcor";
 	protected String tablePrefix = "";
 	protected boolean filterLastAction = true;
+	// Wenn true, wird nach jedem Schreibzugriff der Privilegien-Cache des SecurityService geleert.
+	protected boolean invalidatesPrivileges = false;
 
 	public static final Gson TABLE_CONVERSION_GSON = GsonUtil.getGsonBuilder() //
 			.registerTypeAdapter(Table.class, new TableDeserializer()) //
@@ -147,6 +153,7 @@ public abstract class BaseExtension<E extends DataEntity> {
 		JsonElement json = TABLE_CONVERSION_GSON.toJsonTree(response);
 		Table jsonTable = TABLE_CONVERSION_GSON.fromJson(json, Table.class);
 		Table resultTable = TableUtil.addDataTypeToTable(jsonTable, inputTable);
+		invalidatePrivilegeCache();
 		return ResponseEntityUtil.createResponseEntity(resultTable, false);
 	}
 
@@ -154,15 +161,26 @@ public abstract class BaseExtension<E extends DataEntity> {
 
 		E entity = TABLE_CONVERSION_GSON.fromJson(TABLE_CONVERSION_GSON.toJsonTree(inputTable), entityClass);
 		service.save(entity);
+		invalidatePrivilegeCache();
 
 		return ResponseEntityUtil.createResponseEntity(null, false);
 	}
 
 	public ResponseEntity<SqlProcedureResult> delete(Table inputTable) {
 		service.deleteById(inputTable.getValue("KeyLong", 0).getIntegerValue());
+		invalidatePrivilegeCache();
 		return ResponseEntityUtil.createResponseEntity(null, false);
 	}
 
+	/**
+	 * Leert den Privilegien-Cache, falls diese Extension User, Gruppen oder Privilegien verwaltet.
+	 */
+	protected void invalidatePrivilegeCache() {
+		if (invalidatesPrivileges) {
+			securityService.invalidatePrivilegeCache();
+		}
+	}
+
 	public ResponseEntity<SqlProcedureResult> read(Table inputTable) {
 
 		E findEntityById = service.findEntityById(inputTable.getValue("KeyLong", 0).getIntegerValue());
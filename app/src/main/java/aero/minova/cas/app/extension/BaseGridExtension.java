@@ -15,12 +15,16 @@ public abstract class BaseGridExtension<E extends DataEntity> extends BaseExtens
 
 	@Override
 	public ResponseEntity<SqlProcedureResult> insert(Table inputTable) {
-		return insertOrUpdate(inputTable);
+		ResponseEntity<SqlProcedureResult> result = insertOrUpdate(inputTable);
+		invalidatePrivilegeCache();
+		return result;
 	}
 
 	@Override
 	public ResponseEntity<SqlProcedureResult> update(Table inputTable) {
-		return insertOrUpdate(inputTable);
+		ResponseEntity<SqlProcedureResult> result = insertOrUpdate(inputTable);
+		invalidatePrivilegeCache();
+		return result;
 	}
 
 	protected ResponseEntity<SqlProcedureResult> insertOrUpdate(Table inputTable) {
@@ -41,6 +45,7 @@ public abstract class BaseGridExtension<E extends DataEntity> extends BaseExtens
 		for (Row r : inputTable.getRows()) {
 			service.deleteById(inputTable.getValue("KeyLong", r).getIntegerValue());
 		}
+		invalidatePrivilegeCache();
 
 		return ResponseEntityUtil.createResponseEntity(null, false);
 
@@ -15,4 +15,13 @@ public class ColumnSecurityExtension extends BaseExtension<ColumnSecurity> {
 		tablePrefix = "xtcas";
 		super.basicSetup();
 	}
+
+	/**
+	 * Nach jedem Schreibzugriff muss der Index der Spalten-Berechtigungen im SecurityService neu geladen werden.
+	 */
+	@Override
+	protected void invalidatePrivilegeCache() {
+		super.invalidatePrivilegeCache();
+		securityService.invalidateColumnSecurity();
+	}
 }
\ No newline at end of file
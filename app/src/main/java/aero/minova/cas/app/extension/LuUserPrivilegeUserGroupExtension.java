@@ -24,6 +24,7 @@ public class LuUserPrivilegeUserGroupExtension extends BaseGridExtension<LuUserP
 		viewPrefix = "xvcas";
 		procedurePrefix = "xpcas";
 		tablePrefix = "xtcas";
+		invalidatesPrivileges = true;
 		super.basicSetup();
 	}
 
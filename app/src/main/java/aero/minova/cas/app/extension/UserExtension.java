@@ -13,6 +13,7 @@ public class UserExtension extends BaseExtension<User> {
 		viewPrefix = "xvcas";
 		procedurePrefix = "xpcas";
 		tablePrefix = "xtcas";
+		invalidatesPrivileges = true;
 		super.basicSetup();
 	}
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ public class UserGroupExtension extends BaseExtension<UserGroup> {
 		viewPrefix = "xvcas";
 		procedurePrefix = "xpcas";
 		tablePrefix = "xtcas";
+		invalidatesPrivileges = true;
 		super.basicSetup();
 	}
 }
@@ -16,6 +16,7 @@ import aero.minova.cas.api.domain.Value;
 import aero.minova.cas.app.util.ResponseEntityUtil;
 import aero.minova.cas.controller.SqlProcedureController;
 import aero.minova.cas.service.AuthorizationService;
+import aero.minova.cas.service.SecurityService;
 import aero.minova.cas.service.UserService;
 import aero.minova.cas.service.model.User;
 import jakarta.annotation.PostConstruct;
@@ -32,6 +33,9 @@ public class UserGroupUserExtension {
 	@Autowired
 	protected AuthorizationService authorizationService;
 
+	@Autowired
+	protected SecurityService securityService;
+
 	@Autowired
 	protected UserService userService;
 
@@ -54,6 +58,7 @@ public class UserGroupUserExtension {
 					inputTable.getValue("UserKey", r).getIntegerValue(), //
 					inputTable.getValue("KeyLong", r).getIntegerValue());
 		}
+		securityService.invalidatePrivilegeCache();
 
 		return ResponseEntityUtil.createResponseEntity(null, true);
 
@@ -71,6 +76,7 @@ public class UserGroupUserExtension {
 					inputTable.getValue("UserKey", r).getIntegerValue(), //
 					inputTable.getValue("KeyLong", r).getIntegerValue());
 		}
+		securityService.invalidatePrivilegeCache();
 		return ResponseEntityUtil.createResponseEntity(null, true);
 
 	}
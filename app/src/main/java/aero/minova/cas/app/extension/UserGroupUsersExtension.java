@@ -17,6 +17,7 @@ import aero.minova.cas.app.util.ResponseEntityUtil;
 import aero.minova.cas.controller.SqlProcedureController;
 import aero.minova.cas.service.AuthoritiesService;
 import aero.minova.cas.service.AuthorizationService;
+import aero.minova.cas.service.SecurityService;
 import aero.minova.cas.service.UserGroupService;
 import aero.minova.cas.service.UsersService;
 import aero.minova.cas.service.model.Users;
@@ -34,6 +35,9 @@ public class UserGroupUsersExtension {
 	@Autowired
 	protected AuthorizationService authorizationService;
 
+	@Autowired
+	protected SecurityService securityService;
+
 	@Autowired
 	protected UserGroupService userGroupService;
 
@@ -62,6 +66,7 @@ public class UserGroupUsersExtension {
 					inputTable.getValue("UsersKey", r).getIntegerValue(), //
 					inputTable.getValue("KeyLong", r).getIntegerValue());
 		}
+		securityService.invalidatePrivilegeCache();
 		return ResponseEntityUtil.createResponseEntity(null, true);
 
 	}
@@ -80,6 +85,7 @@ public class UserGroupUsersExtension {
 					inputTable.getValue("UsersKey", r).getIntegerValue(), //
 					inputTable.getValue("KeyLong", r).getIntegerValue());
 		}
+		securityService.invalidatePrivilegeCache();
 		return ResponseEntityUtil.createResponseEntity(null, true);
 
 	}
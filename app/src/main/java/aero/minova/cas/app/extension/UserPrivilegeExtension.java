@@ -13,6 +13,7 @@ public class UserPrivilegeExtension extends BaseExtension<UserPrivilege> {
 		viewPrefix = "xvcas";
 		procedurePrefix = "xpcas";
 		tablePrefix = "xtcas";
+		invalidatesPrivileges = true;
 		super.basicSetup();
 	}
 }
\ No newline at end of file
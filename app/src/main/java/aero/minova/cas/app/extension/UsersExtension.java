@@ -20,6 +20,7 @@ public class UsersExtension extends BaseExtension<Users> {
 		viewPrefix = "xvcas";
 		procedurePrefix = "xpcas";
 		tablePrefix = "xtcas";
+		invalidatesPrivileges = true;
 		super.basicSetup();
 	}
 
@@ -25,6 +25,7 @@ import aero.minova.cas.api.domain.SqlProcedureResult;
 import aero.minova.cas.controller.SqlProcedureController;
 import aero.minova.cas.controller.SqlViewController;
 import aero.minova.cas.service.FilesService;
+import aero.minova.cas.service.SecurityService;
 import aero.minova.cas.setup.dependency.DependencyOrder;
 import aero.minova.cas.sql.SystemDatabase;
 import jakarta.annotation.PostConstruct;
@@ -56,12 +57,16 @@ public class SetupService {
 	@Autowired
 	SqlViewController svc;
 
+	@Autowired
+	SecurityService securityService;
+
 	@Autowired
 	CustomLogger logger;
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@PostConstruct
 	private void setup() {
+		// Das Setup darf nie gleichzeitig mehrfach laufen.
 		spc.registerExtension(PROCEDURE_NAME, inputTable -> {
 			try {
 				SqlProcedureResult result = new SqlProcedureResult();
@@ -81,8 +86,13 @@ public class SetupService {
 				return new ResponseEntity(result, HttpStatus.ACCEPTED);
 			} catch (Exception e) {
 				throw new RuntimeException(e);
+			} finally {
+				// Das Setup legt Tabellen und Views an oder ersetzt sie und vergibt Privilegien, auch wenn es nur teilweise durchläuft.
+				securityService.invalidateSchemaCache();
+				securityService.invalidateColumnSecurity();
+				securityService.invalidatePrivilegeCache();
 			}
-		});
+		}, true);
 		spc.registerExtensionBootstrapCheck(PROCEDURE_NAME, inputTable -> true);
 	}
 
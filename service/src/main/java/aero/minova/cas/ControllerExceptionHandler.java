@@ -337,22 +337,13 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
 			callableErrorStatement.setString(1, username);
 			callableErrorStatement.setString(2, e.getMessage());
 			callableErrorStatement.setTimestamp(3, timeOfError);
-			{
-				StringWriter sw = new StringWriter();
-				PrintWriter pw = new PrintWriter(sw);
-				e.printStackTrace(pw);
-				customLogger.logSql("CAS : Execute : " + errorStatement + " with values: " + username + ", " + e.getMessage() + ", " + timeOfError);
-				// Der Stacktrace wird nicht in der Datenbank gespeichert, da das Feld einfach viel zu lang ist. Deswegen geben wir ihn im ErrorLog aus.
-				customLogger.logError("CAS: Showing Stacktrace : " + sw, e);
-			}
+			customLogger.logSql("CAS : Execute : " + errorStatement + " with values: " + username + ", " + e.getMessage() + ", " + timeOfError);
+			// Der Stacktrace wird nicht in der Datenbank gespeichert, da das Feld einfach viel zu lang ist. Deswegen geben wir ihn im ErrorLog aus.
+			customLogger.logError("CAS: Showing Stacktrace", e);
 			callableErrorStatement.executeUpdate();
 			connection.commit();
 		} catch (SQLException e1) {
-			StringWriter sw = new StringWriter();
-			PrintWriter pw = new PrintWriter(sw);
-			e1.printStackTrace(pw);
-
-			customLogger.logError("CAS : Error could not be saved in database." + "/n" + sw, e1);
+			customLogger.logError("CAS : Error could not be saved in database.", e1);
 		} finally {
 			systemDatabase.closeConnection(connection);
 		}
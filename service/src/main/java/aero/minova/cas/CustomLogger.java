@@ -1,13 +1,15 @@
 package aero.minova.cas;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.env.AbstractEnvironment;
@@ -18,8 +20,10 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 
 import aero.minova.cas.api.restapi.ClientRestAPI;
+import aero.minova.cas.sql.SqlTrace;
 import jakarta.annotation.PostConstruct;
 
 @Component
@@ -45,13 +49,29 @@ public class CustomLogger {
 
 	private static final String LOGFORMAT = "{}: {}";
 
-	private static final String ERRORLOGFORMAT = "{}: {}: \n{}";
-
 	private static final String USERREQUESTLOGFORMAT = "{}: {} {}";
 
+	private static final String SQLTRACELOGFORMAT = "{}: {}({} ms) {}";
+
 	@Autowired
 	private ClientRestAPI crapi;
 
+	// Maximale Anzahl Zeichen, mit denen der Inhalt einer Anfrage im UserLogger ausgegeben wird. 0 schreibt den Inhalt immer vollständig.
+	@Value("${aero.minova.log.request.maxLength:10000}")
+	int requestMaxLength;
+
+	// Anteil der Anfragen (zwischen 0 und 1), deren Inhalt im UserLogger ausgegeben wird. Von den übrigen wird nur der Aufruf geloggt.
+	@Value("${aero.minova.log.request.sampleRate:1.0}")
+	double requestSampleRate;
+
+	// Anteil der erfolgreichen Aufrufe (zwischen 0 und 1), deren Statements und Parameter im SqlLogger ausgegeben werden.
+	@Value("${aero.minova.log.sql.sampleRate:1.0}")
+	double sqlSampleRate;
+
+	// Aufrufe, die mindestens so viele Millisekunden dauern, werden immer und als Warnung geloggt. 0 schaltet das ab.
+	@Value("${aero.minova.log.sql.slowMillis:1000}")
+	long sqlSlowMillis;
+
 	private Gson gson;
 
 	@PostConstruct
@@ -65,11 +85,11 @@ public class CustomLogger {
 		logError(logMessage, (Throwable) e);
 	}
 
+	/**
+	 * Der Stacktrace wird von Logback an die Meldung angehängt und nur gerendert, wenn der ErrorLogger eingeschaltet ist.
+	 */
 	public void logError(String logMessage, Throwable e) {
-		StringWriter sw = new StringWriter();
-		PrintWriter pw = new PrintWriter(sw);
-		e.printStackTrace(pw);
-		errorLogger.error(ERRORLOGFORMAT, getUser(), logMessage, sw);
+		errorLogger.error(LOGFORMAT, getUser(), logMessage, e);
 	}
 
 	public void logError(Exception e) {
@@ -88,12 +108,150 @@ public class CustomLogger {
 		logger.info(LOGFORMAT, getUser(), logMessage);
 	}
 
+	/**
+	 * Loggt die Statements und Parameter eines erfolgreichen Aufrufs. Der Trace wird von Logback nur gerendert, wenn die Meldung geschrieben wird. Mit
+	 * aero.minova.log.sql.sampleRate wird nur ein Teil der Aufrufe geloggt. Aufrufe ab aero.minova.log.sql.slowMillis werden immer als Warnung geloggt.
+	 *
+	 * @param logMessage
+	 *            Die Meldung, z.B. "Procedure successfully executed: ".
+	 * @param trace
+	 *            Die ausgeführten Statements.
+	 */
+	public void logSql(String logMessage, SqlTrace trace) {
+		final long millis = trace.elapsedMillis();
+		if (sqlSlowMillis > 0 && millis >= sqlSlowMillis) {
+			logger.warn(SQLTRACELOGFORMAT, getUser(), logMessage, millis, trace);
+		} else if (logger.isInfoEnabled() && (sqlSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sqlSampleRate)) {
+			logger.info(SQLTRACELOGFORMAT, getUser(), logMessage, millis, trace);
+		}
+	}
+
+	/**
+	 * Wie {@link #logSql(String, SqlTrace)} für die Abfragen der Privilegien, aber ohne Sampling.
+	 */
+	public void logPrivilege(String logMessage, SqlTrace trace) {
+		final long millis = trace.elapsedMillis();
+		if (sqlSlowMillis > 0 && millis >= sqlSlowMillis) {
+			privilegeLogger.warn(SQLTRACELOGFORMAT, getUser(), logMessage, millis, trace);
+		} else {
+			privilegeLogger.info(SQLTRACELOGFORMAT, getUser(), logMessage, millis, trace);
+		}
+	}
+
 	public void logUserRequest(String logMessage) {
 		userLogger.info(LOGFORMAT, getUser(), logMessage);
 	}
 
+	/**
+	 * Loggt eine Anfrage mit ihrem Inhalt als JSON. Der Inhalt wird nur erzeugt, wenn der UserLogger eingeschaltet ist, und nach
+	 * aero.minova.log.request.maxLength Zeichen abgeschnitten. Mit aero.minova.log.request.sampleRate wird der Inhalt nur für einen Teil der Anfragen
+	 * ausgegeben.
+	 *
+	 * @param logMessage
+	 *            Die Anfrage, z.B. "data/procedure: ".
+	 * @param gsonObject
+	 *            Der Inhalt der Anfrage, z.B. die Table.
+	 */
 	public void logUserRequest(String logMessage, Object gsonObject) {
-		userLogger.info(USERREQUESTLOGFORMAT, getUser(), logMessage, gson.toJson(gsonObject));
+		if (!userLogger.isInfoEnabled()) {
+			return;
+		}
+		if (requestSampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= requestSampleRate) {
+			userLogger.info(USERREQUESTLOGFORMAT, getUser(), logMessage, "(content not sampled)");
+			return;
+		}
+		userLogger.info(USERREQUESTLOGFORMAT, getUser(), logMessage, new JsonArgument(gsonObject));
+	}
+
+	/**
+	 * Wandelt den Inhalt erst in {@link #toString()} in JSON um. Logback ruft das nur auf, wenn die Meldung tatsächlich geschrieben wird, und zwar noch im
+	 * aufrufenden Thread, auch bei einem AsyncAppender.
+	 */
+	private final class JsonArgument {
+		private final Object source;
+
+		private JsonArgument(Object source) {
+			this.source = source;
+		}
+
+		@Override
+		public String toString() {
+			return toJson(source, requestMaxLength);
+		}
+	}
+
+	/**
+	 * @param source
+	 *            Das Objekt, welches als JSON ausgegeben werden soll.
+	 * @param maxLength
+	 *            Die maximale Anzahl an Zeichen oder 0 für unbegrenzt.
+	 * @return Das Objekt als JSON. Ist es länger als maxLength, wird die Umwandlung abgebrochen und "... (truncated)" angehängt.
+	 */
+	String toJson(Object source, int maxLength) {
+		if (maxLength <= 0) {
+			return gson.toJson(source);
+		}
+		final TruncatingWriter writer = new TruncatingWriter(maxLength);
+		try {
+			gson.toJson(source, writer);
+		} catch (JsonIOException e) {
+			if (!(e.getCause() instanceof LengthLimitReached)) {
+				throw e;
+			}
+			writer.content.append("... (truncated)");
+		}
+		return writer.content.toString();
+	}
+
+	/**
+	 * Bricht das Schreiben ab, sobald die maximale Länge erreicht ist. Der Stacktrace wird nicht benötigt und deshalb nicht erzeugt.
+	 */
+	private static final class LengthLimitReached extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private static final class TruncatingWriter extends Writer {
+		private final StringBuilder content = new StringBuilder();
+		private final int maxLength;
+
+		private TruncatingWriter(int maxLength) {
+			this.maxLength = maxLength;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			final int remaining = maxLength - content.length();
+			if (len > remaining) {
+				content.append(cbuf, off, remaining);
+				throw new LengthLimitReached();
+			}
+			content.append(cbuf, off, len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			final int remaining = maxLength - content.length();
+			if (len > remaining) {
+				content.append(str, off, off + remaining);
+				throw new LengthLimitReached();
+			}
+			content.append(str, off, off + len);
+		}
+
+		@Override
+		public void flush() {
+			// Schreibt direkt in den StringBuilder.
+		}
+
+		@Override
+		public void close() {
+			// Schreibt direkt in den StringBuilder.
+		}
 	}
 
 	public void logFiles(String logMessage) {
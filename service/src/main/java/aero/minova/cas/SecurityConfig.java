@@ -18,6 +18,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.ldap.userdetails.LdapUserDetailsMapper;
@@ -31,10 +32,12 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.thymeleaf.extras.springsecurity6.dialect.SpringSecurityDialect;
 
+import aero.minova.cas.cache.AuthenticationCache;
 import aero.minova.cas.ldap.MultipleLdapDomainsAuthenticationProvider;
 import aero.minova.cas.ldap.MultipleLdapServerAddressesUserDetailsManager;
 import aero.minova.cas.service.SecurityService;
 import aero.minova.cas.sql.SystemDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 
 @RequiredArgsConstructor
@@ -60,9 +63,19 @@ public class SecurityConfig {
 	@Value("${cors.allowed.origins:http://localhost:8100,https://localhost:8100}")
 	private String allowedOrigins;
 
+	// Wie lange eine erfolgreiche Anmeldung per Basic-Auth gemerkt wird (in Sekunden). 0 schaltet den Cache ab.
+	@Value("${aero.minova.security.authentication.cache.ttl:60}")
+	private long authenticationCacheTtl;
+
+	@Value("${aero.minova.security.authentication.cache.size:1000}")
+	private int authenticationCacheSize;
+
 	@Autowired
 	SystemDatabase systemDatabase;
 
+	@Autowired(required = false)
+	MeterRegistry meterRegistry;
+
 	private final DataSource dataSource;
 
 	@Bean
@@ -112,7 +125,32 @@ public class SecurityConfig {
 			return new MultipleLdapServerAddressesUserDetailsManager(
 					Arrays.asList(ldapServerAddress.split(SecurityConfig.MULTIPLE_LDAP_CONFIGURATIONS_SEPERATOR)));
 		} else if ("database".equals(loginDataSource)) {
-			JdbcUserDetailsManager jdbcUserDetailsManager = new JdbcUserDetailsManager(dataSource);
+			final AuthenticationCache cache = authenticationCache();
+			// Die Benutzer werden kurz gecacht, damit nicht jede Anfrage mit Basic-Auth xtcasUsers und xtcasAuthorities abfragen muss.
+			JdbcUserDetailsManager jdbcUserDetailsManager = new JdbcUserDetailsManager(dataSource) {
+				@Override
+				public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+					return cache.loadUser(username, super::loadUserByUsername);
+				}
+
+				@Override
+				public void updateUser(UserDetails user) {
+					super.updateUser(user);
+					cache.invalidate(user.getUsername());
+				}
+
+				@Override
+				public void deleteUser(String username) {
+					super.deleteUser(username);
+					cache.invalidate(username);
+				}
+
+				@Override
+				public void changePassword(String oldPassword, String newPassword) {
+					super.changePassword(oldPassword, newPassword);
+					cache.invalidateAll();
+				}
+			};
 
 			if (systemDatabase.isSQLDatabase()) {
 				jdbcUserDetailsManager.setUsersByUsernameQuery(
@@ -138,9 +176,35 @@ public class SecurityConfig {
 		throw new IllegalArgumentException("dataSource contains unknown parameter '" + loginDataSource + "'");
 	}
 
+	@Bean
+	AuthenticationCache authenticationCache() {
+		return new AuthenticationCache(authenticationCacheTtl * 1000, authenticationCacheSize, meterRegistry);
+	}
+
+	/**
+	 * BCrypt ist absichtlich langsam. Da die Clients die Credentials bei jeder Anfrage mitschicken, werden erfolgreiche Prüfungen im
+	 * {@link AuthenticationCache} gemerkt.
+	 */
 	@Bean
 	PasswordEncoder passwordEncoder() {
-		return new BCryptPasswordEncoder();
+		final PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+		final AuthenticationCache cache = authenticationCache();
+		return new PasswordEncoder() {
+			@Override
+			public String encode(CharSequence rawPassword) {
+				return bcrypt.encode(rawPassword);
+			}
+
+			@Override
+			public boolean matches(CharSequence rawPassword, String encodedPassword) {
+				return cache.matches(rawPassword, encodedPassword, raw -> bcrypt.matches(raw, encodedPassword));
+			}
+
+			@Override
+			public boolean upgradeEncoding(String encodedPassword) {
+				return bcrypt.upgradeEncoding(encodedPassword);
+			}
+		};
 	}
 
 	@Bean
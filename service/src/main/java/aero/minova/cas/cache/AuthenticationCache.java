@@ -0,0 +1,129 @@
+package aero.minova.cas.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.function.Function;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Merkt sich erfolgreiche Passwort-Prüfungen und die Benutzer aus der Datenbank für kurze Zeit. Die Clients schicken bei jeder Anfrage die Basic-Credentials
+ * mit, ohne Cache kostet jede Anfrage eine vollständige BCrypt-Prüfung und eine Abfrage auf xtcasUsers/xtcasAuthorities.
+ * <p>
+ * Klartext-Passwörter werden nie gespeichert. Der Schlüssel für eine Passwort-Prüfung ist ein HMAC-SHA256 über das Passwort und den gespeicherten Hash. Das
+ * Geheimnis dafür wird bei jedem Start zufällig erzeugt. Ändert sich der Hash in der Datenbank, passt der alte Eintrag automatisch nicht mehr. Es werden nur
+ * erfolgreiche Prüfungen gespeichert.
+ */
+public class AuthenticationCache {
+
+	private static final String HMAC = "HmacSHA256";
+
+	private final ExpiringCache<String, Boolean> verifiedPasswords;
+	private final ExpiringCache<String, UserDetails> users;
+	private final SecretKeySpec secret;
+
+	/**
+	 * @param ttlMillis
+	 *            Die Lebensdauer eines Eintrags in Millisekunden. 0 schaltet den Cache ab.
+	 * @param maxSize
+	 *            Die maximale Anzahl an Einträgen je Cache.
+	 * @param meterRegistry
+	 *            Die Registry für die Metriken, darf null sein.
+	 */
+	public AuthenticationCache(long ttlMillis, int maxSize, MeterRegistry meterRegistry) {
+		verifiedPasswords = new ExpiringCache<>("authenticationPasswords", ttlMillis, maxSize, meterRegistry);
+		users = new ExpiringCache<>("authenticationUsers", ttlMillis, maxSize, meterRegistry);
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		secret = new SecretKeySpec(key, HMAC);
+	}
+
+	/**
+	 * Prüft das Passwort gegen den gespeicherten Hash. Die eigentliche Prüfung wird nur ausgeführt, wenn es keine gültige erfolgreiche Prüfung im Cache gibt.
+	 *
+	 * @param rawPassword
+	 *            Das Passwort aus der Anfrage.
+	 * @param encodedPassword
+	 *            Der gespeicherte Hash.
+	 * @param verifier
+	 *            Die eigentliche (teure) Prüfung.
+	 * @return true, wenn das Passwort passt.
+	 */
+	public boolean matches(CharSequence rawPassword, String encodedPassword, Function<CharSequence, Boolean> verifier) {
+		if (!verifiedPasswords.isEnabled() || rawPassword == null || encodedPassword == null) {
+			return verifier.apply(rawPassword);
+		}
+		String key = key(rawPassword, encodedPassword);
+		if (verifiedPasswords.get(key) != null) {
+			return true;
+		}
+		boolean matches = verifier.apply(rawPassword);
+		if (matches) {
+			verifiedPasswords.put(key, Boolean.TRUE);
+		}
+		return matches;
+	}
+
+	/**
+	 * Liefert den Benutzer aus dem Cache oder lädt ihn. Zurückgegeben wird immer eine Kopie, da Spring Security nach der Anmeldung das Passwort aus dem
+	 * Benutzer-Objekt löscht.
+	 *
+	 * @param username
+	 *            Der Benutzername.
+	 * @param loader
+	 *            Lädt den Benutzer aus der Datenbank.
+	 * @return Eine Kopie des Benutzers.
+	 */
+	public UserDetails loadUser(String username, Function<String, UserDetails> loader) {
+		if (!users.isEnabled()) {
+			return loader.apply(username);
+		}
+		UserDetails cached = users.get(username);
+		if (cached == null) {
+			cached = copy(loader.apply(username));
+			users.put(username, cached);
+		}
+		return copy(cached);
+	}
+
+	/**
+	 * Entfernt den Benutzer aus dem Cache. Da die Passwort-Prüfungen nicht nach Benutzer abgelegt werden, werden diese vollständig geleert.
+	 *
+	 * @param username
+	 *            Der Benutzername.
+	 */
+	public void invalidate(String username) {
+		users.invalidate(username);
+		verifiedPasswords.invalidateAll();
+	}
+
+	public void invalidateAll() {
+		users.invalidateAll();
+		verifiedPasswords.invalidateAll();
+	}
+
+	private String key(CharSequence rawPassword, String encodedPassword) {
+		try {
+			Mac mac = Mac.getInstance(HMAC);
+			mac.init(secret);
+			mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+			mac.update((byte) 0);
+			mac.update(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+			return Base64.getEncoder().encodeToString(mac.doFinal());
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static UserDetails copy(UserDetails user) {
+		return User.withUserDetails(user).build();
+	}
+}
@@ -0,0 +1,158 @@
+package aero.minova.cas.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Ein einfacher, threadsicherer Cache mit maximaler Lebensdauer (TTL) und maximaler Größe. Ist die maximale Größe erreicht, wird der am längsten nicht
+ * verwendete Eintrag verworfen. Treffer und Fehlschläge werden, falls eine {@link MeterRegistry} übergeben wurde, unter 'cas.cache.gets' gezählt.
+ * <p>
+ * Ist die TTL oder die maximale Größe kleiner oder gleich 0, ist der Cache deaktiviert. Dann wird nichts gespeichert und es werden auch keine Metriken
+ * erfasst.
+ *
+ * @param <K>
+ *            Typ der Schlüssel
+ * @param <V>
+ *            Typ der Werte
+ */
+public class ExpiringCache<K, V> {
+
+	private record Entry<V>(V value, long expiresAt) {}
+
+	private final long ttlNanos;
+	private final Map<K, Entry<V>> entries;
+	private final Counter hits;
+	private final Counter misses;
+
+	/**
+	 * @param name
+	 *            Der Name des Caches, wird als Tag 'cache' für die Metriken verwendet.
+	 * @param ttlMillis
+	 *            Die Lebensdauer eines Eintrags in Millisekunden.
+	 * @param maxSize
+	 *            Die maximale Anzahl an Einträgen.
+	 * @param meterRegistry
+	 *            Die Registry für die Metriken, darf null sein.
+	 */
+	public ExpiringCache(String name, long ttlMillis, int maxSize, MeterRegistry meterRegistry) {
+		this.ttlNanos = ttlMillis * 1_000_000L;
+		if (ttlMillis <= 0 || maxSize <= 0) {
+			entries = null;
+		} else {
+			entries = new LinkedHashMap<>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+		if (meterRegistry != null && entries != null) {
+			hits = Counter.builder("cas.cache.gets").tag("cache", name).tag("result", "hit").register(meterRegistry);
+			misses = Counter.builder("cas.cache.gets").tag("cache", name).tag("result", "miss").register(meterRegistry);
+			Gauge.builder("cas.cache.size", this, ExpiringCache::size).tag("cache", name).register(meterRegistry);
+		} else {
+			hits = null;
+			misses = null;
+		}
+	}
+
+	/**
+	 * @return true, wenn der Cache Werte speichert.
+	 */
+	public boolean isEnabled() {
+		return entries != null;
+	}
+
+	/**
+	 * @param key
+	 *            Der Schlüssel.
+	 * @return Den gespeicherten Wert oder null, falls es keinen (gültigen) Eintrag gibt.
+	 */
+	public V get(K key) {
+		if (entries == null) {
+			return null;
+		}
+		Entry<V> entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry != null && entry.expiresAt() - System.nanoTime() <= 0) {
+				entries.remove(key);
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			count(misses);
+			return null;
+		}
+		count(hits);
+		return entry.value();
+	}
+
+	public void put(K key, V value) {
+		if (entries == null || value == null) {
+			return;
+		}
+		synchronized (entries) {
+			entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+		}
+	}
+
+	/**
+	 * Liefert den gespeicherten Wert oder berechnet ihn über die übergebene Funktion. Die Berechnung findet außerhalb der Sperre statt, damit langsame
+	 * Datenbank-Abfragen andere Zugriffe nicht blockieren. Wird derselbe Schlüssel gleichzeitig angefragt, kann der Wert daher mehrfach berechnet werden.
+	 *
+	 * @param key
+	 *            Der Schlüssel.
+	 * @param loader
+	 *            Berechnet den Wert, falls es keinen gültigen Eintrag gibt.
+	 * @return Den gespeicherten oder neu berechneten Wert.
+	 */
+	public V computeIfAbsent(K key, Function<K, V> loader) {
+		V value = get(key);
+		if (value == null) {
+			value = loader.apply(key);
+			put(key, value);
+		}
+		return value;
+	}
+
+	public void invalidate(K key) {
+		if (entries == null) {
+			return;
+		}
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		if (entries == null) {
+			return;
+		}
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		if (entries == null) {
+			return 0;
+		}
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	private static void count(Counter counter) {
+		if (counter != null) {
+			counter.increment();
+		}
+	}
+}
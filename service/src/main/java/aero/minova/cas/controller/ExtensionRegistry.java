@@ -0,0 +1,88 @@
+package aero.minova.cas.controller;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Threadsichere Registrierung der Extensions eines Controllers. Die Namen sind case insensitive. Extensions werden ohne globale Sperre aufgerufen, sodass
+ * voneinander unabhängige Extensions parallel laufen können. Extensions, die nicht threadsicher sind, können bei der Registrierung eine Serialisierung
+ * anfordern. Dann wird nur diese eine Extension nie gleichzeitig ausgeführt.
+ *
+ * @param <F>
+ *            Der Typ der Extension, z.B. Function&lt;Table, ResponseEntity&gt;
+ */
+public class ExtensionRegistry<F> {
+
+	/**
+	 * Eine registrierte Extension.
+	 *
+	 * @param name
+	 *            Der Name, wie er registriert wurde.
+	 * @param extension
+	 *            Die Extension selbst.
+	 * @param lock
+	 *            Die Sperre der Extension oder null, falls diese parallel ausgeführt werden darf.
+	 */
+	public record Registration<F>(String name, F extension, Object lock) {
+
+		/**
+		 * Führt die Extension aus. Falls diese serialisiert registriert wurde, passiert das unter ihrer eigenen Sperre.
+		 */
+		public <R> R call(Function<F, R> invocation) {
+			if (lock == null) {
+				return invocation.apply(extension);
+			}
+			synchronized (lock) {
+				return invocation.apply(extension);
+			}
+		}
+
+		public boolean isSerialized() {
+			return lock != null;
+		}
+	}
+
+	private final Map<String, Registration<F>> extensions = new ConcurrentHashMap<>();
+
+	/**
+	 * @param name
+	 *            Name der Erweiterung (case insensitive)
+	 * @param extension
+	 *            Erweiterung
+	 * @param serialized
+	 *            true, wenn die Erweiterung nicht threadsicher ist und nie gleichzeitig ausgeführt werden darf
+	 * @return true, wenn die Erweiterung registriert wurde, false, wenn es bereits eine Erweiterung mit diesem Namen gibt.
+	 */
+	public boolean register(String name, F extension, boolean serialized) {
+		return extensions.putIfAbsent(key(name), new Registration<>(name, extension, serialized ? new Object() : null)) == null;
+	}
+
+	public boolean contains(String name) {
+		return name != null && extensions.containsKey(key(name));
+	}
+
+	public Optional<Registration<F>> find(String name) {
+		if (name == null) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(extensions.get(key(name)));
+	}
+
+	/**
+	 * @return Die Namen aller Erweiterungen, wie sie registriert wurden, sortiert.
+	 */
+	public Set<String> names() {
+		Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		extensions.values().forEach(registration -> names.add(registration.name()));
+		return names;
+	}
+
+	private static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+}
@@ -2,23 +2,27 @@ package aero.minova.cas.controller;
 
 import static java.nio.file.Files.readAllBytes;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,8 +30,13 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.PathResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -36,7 +45,14 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import aero.minova.cas.CustomLogger;
+import aero.minova.cas.service.FilesManifest;
 import aero.minova.cas.service.FilesService;
+import aero.minova.cas.service.ResourceZipCache;
+import aero.minova.cas.service.ResourceZipCache.CachedZip;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.val;
 
 @RestController
@@ -53,12 +69,44 @@ public class FilesController {
 	@Autowired
 	SqlProcedureController spc;
 
+	@Autowired
+	ResourceZipCache zipCache;
+
 	@org.springframework.beans.factory.annotation.Value("${generate.mdi.per.user:true}")
 	boolean generateMDIPerUser;
 
 	@org.springframework.beans.factory.annotation.Value("${fat.jar.mode:false}")
 	boolean isFatJarMode;
 
+	@Autowired(required = false)
+	MeterRegistry meterRegistry;
+
+	// Anzahl der Threads für hashAll und zipAll beim Start. 0 nutzt einen Thread pro Prozessor.
+	@org.springframework.beans.factory.annotation.Value("${files.startup.threads:0}")
+	int startupThreads;
+
+	// Die Manifeste liegen im MD5-Ordner, damit sie weder gehashed noch gezipped werden.
+	static final String HASH_MANIFEST = "files.manifest";
+	static final String ZIP_MANIFEST = "zips.manifest";
+
+	final StartupProgress hashProgress = new StartupProgress("hashAll");
+	final StartupProgress zipProgress = new StartupProgress("zipAll");
+
+	@PostConstruct
+	void initMetrics() {
+		if (meterRegistry != null) {
+			for (StartupProgress progress : List.of(hashProgress, zipProgress)) {
+				registerGauge(progress, "total", progress.total);
+				registerGauge(progress, "done", progress.done);
+				registerGauge(progress, "changed", progress.changed);
+			}
+		}
+	}
+
+	private void registerGauge(StartupProgress progress, String state, AtomicInteger value) {
+		Gauge.builder("cas.files.startup", value, AtomicInteger::get).tag("job", progress.job).tag("state", state).register(meterRegistry);
+	}
+
 	// TODO Extension vorerst entfernt, aber für später aufheben
 	// TODO Bytes in JSON durch BASE64 darstellen
 //	@PostConstruct
@@ -141,25 +189,26 @@ public class FilesController {
 //	}
 
 	/**
-	 * Verarbeitet User-Anfragen zum Senden eines Files. Falls das angefragte File gefunden werden kann, wird es zurückgegeben, andernfalls wird entweder eine
-	 * FileNotFoundException oder eine IllegalAccessException geworfen.
+	 * Verarbeitet User-Anfragen zum Senden eines Files. Die Datei wird nicht in den Speicher geladen, sondern beim Schreiben der Antwort gestreamt. Range-Anfragen
+	 * werden von Spring über die Resource beantwortet. Gibt es in Internal/MD5 einen aktuellen Hash der Datei, wird dieser als ETag gesetzt. Stimmt er mit
+	 * If-None-Match überein, liefert Spring 304, ohne die Datei zu lesen.
 	 *
 	 * @param path
 	 *            Der Pfad des Files, welches der User anfragt, als String.
-	 * @return byte[] des angefragten Files.
+	 * @return Das angefragte File als Stream.
 	 * @throws Exception
 	 *             Entweder eine IllegalAccessException, falls der Pfad außerhalb des System-Ordners liegt, oder FileNotFoundException, falls es keine Datei mit
 	 *             diesem Namen in dem gewünschten Pfad gibt.
 	 */
 	@RequestMapping(value = "files/read", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
-	public @ResponseBody byte[] getFile(@RequestParam String path) throws Exception {
+	public ResponseEntity<Resource> streamFile(@RequestParam String path) throws Exception {
 
 		// Zuerst prüfen, ob application.mdi aus Datenbank gelesen werden soll
 		if (generateMDIPerUser && path.contains("application.mdi")) {
 
 			// Falls es beim Auslesen der Mdi zu einem Fehler kommt, wird stattdessen eine StandardMdi aus dem Root-Path zurückgegeben.
 			try {
-				return fileService.readMDI();
+				return ResponseEntity.ok().body(new ByteArrayResource(fileService.readMDI()));
 			} catch (Exception e) {
 				customLogger.logError("Mdi could not be read. It will be loaded from the system file path.", e);
 			}
@@ -171,22 +220,58 @@ public class FilesController {
 				path = "/" + path;
 			}
 			if (path.endsWith(".zip")) {
-				return getZip(path.substring(0, path.length() - 4));
+				return streamZip(path.substring(0, path.length() - 4));
+			}
+			final ClassPathResource resource = new ClassPathResource(path);
+			if (!resource.exists()) {
+				throw new NoSuchFileException("msg.FileError %" + path);
 			}
-			return getClass().getResourceAsStream(path).readAllBytes();
+			return ResponseEntity.ok().body(resource);
 		}
 
 		// Ansonsten Dateisystem nutzen
 		path = path.replace('\\', '/');
 
 		String extension = FilenameUtils.getExtension(path);
-		// Zur Abwärtskompatibilität Dateiendung überprüfen und, falls diese Zip ist, getZip aufrufen.
+		// Zur Abwärtskompatibilität Dateiendung überprüfen und, falls diese Zip ist, streamZip aufrufen.
 		if (extension.equalsIgnoreCase("zip")) {
-			return getZip(path);
+			return streamZip(path);
 		}
 		val inputPath = fileService.checkLegalPath(Paths.get(path));
 		customLogger.logUserRequest("files/read: " + path);
-		return readAllBytes(inputPath);
+		return stream(inputPath);
+	}
+
+	/**
+	 * Liefert ein File als byte[]. Über HTTP wird das File mit {@link #streamFile(String)} ausgeliefert.
+	 *
+	 * @param path
+	 *            Der Pfad des Files als String.
+	 * @return byte[] des angefragten Files.
+	 * @throws Exception
+	 *             Entweder eine IllegalAccessException, falls der Pfad außerhalb des System-Ordners liegt, oder FileNotFoundException, falls es keine Datei mit
+	 *             diesem Namen in dem gewünschten Pfad gibt.
+	 */
+	public byte[] getFile(String path) throws Exception {
+		try (InputStream in = streamFile(path).getBody().getInputStream()) {
+			return in.readAllBytes();
+		}
+	}
+
+	/**
+	 * Sucht die MD5-Datei bestimmten Files im Internal/MD5-Verzeichnis und gibt diese zurück. Der Hash ist gleichzeitig der ETag der Antwort.
+	 *
+	 * @param path
+	 *            Der Pfad des Files, zu welchem der User die MD5 Datei möchte, als String.
+	 * @return Der MD5 Wert des angefragten Files.
+	 * @throws Exception
+	 *             Entweder eine IllegalAccessException, falls der Pfad außerhalb des System-Ordners liegt, oder FileNotFoundException, falls es keine Datei mit
+	 *             diesem Namen in dem gewünschten Pfad gibt.
+	 */
+	@RequestMapping(value = "files/hash", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
+	public ResponseEntity<Resource> streamHash(@RequestParam String path) throws Exception {
+		final byte[] hash = getHash(path);
+		return ResponseEntity.ok().eTag("\"" + new String(hash, StandardCharsets.UTF_8).trim() + "\"").body(new ByteArrayResource(hash));
 	}
 
 	/**
@@ -199,18 +284,16 @@ public class FilesController {
 	 *             Entweder eine IllegalAccessException, falls der Pfad außerhalb des System-Ordners liegt, oder FileNotFoundException, falls es keine Datei mit
 	 *             diesem Namen in dem gewünschten Pfad gibt.
 	 */
-	@RequestMapping(value = "files/hash", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
-	public @ResponseBody byte[] getHash(@RequestParam String path) throws Exception {
+	public byte[] getHash(String path) throws Exception {
 		if (isFatJarMode) {
 			if (!path.startsWith("/")) {
 				path = "/" + path;
 			}
-			final byte[] pathContent;
 			if (path.endsWith(".zip")) {
-				pathContent = getZip(path);
-			} else {
-				pathContent = getFile(path);
+				// Derselbe Hash, der auch als ETag von files/zip geliefert wird.
+				return zipCache.get(path.substring(0, path.length() - 4)).getMd5().getBytes(StandardCharsets.UTF_8);
 			}
+			final byte[] pathContent = getFile(path);
 			MessageDigest md;
 			try {
 				md = MessageDigest.getInstance("MD5");
@@ -240,65 +323,84 @@ public class FilesController {
 		return readAllBytes(md5FilePath);
 	}
 
+	/**
+	 * Liefert die Zip eines Ordners als Stream. Im Fat-Jar-Modus kommt die Zip aus dem {@link ResourceZipCache}, ansonsten aus Internal/Zips. Der ETag ist der
+	 * MD5-Hash der Zip, bei passendem If-None-Match liefert Spring 304.
+	 *
+	 * @param path
+	 *            Der Pfad des Ordners, optional mit der Endung .zip.
+	 * @return Die Zip als Stream.
+	 * @throws Exception
+	 *             Entweder eine IllegalAccessException, falls der Pfad außerhalb des System-Ordners liegt, oder NoSuchFileException, falls es die Zip nicht
+	 *             gibt.
+	 */
 	@RequestMapping(value = "files/zip", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
-	public @ResponseBody byte[] getZip(@RequestParam String path) throws Exception {
+	public ResponseEntity<Resource> streamZip(@RequestParam String path) throws Exception {
 		if (isFatJarMode) {
-			final var pathStr = path.toString();
-			if (!path.startsWith("/")) {
-				path = "/" + path;
-			}
-			final List<String> matchingResources = new ArrayList<>();
-			final var deployedResources = new String(getClass().getResourceAsStream("/aero.minova.app.resources/deployed.resources.txt").readAllBytes());
-			for (final var resourceListPath : deployedResources.split("\n")) {
-				if (resourceListPath.isBlank()) {
-					continue;
-				}
-				final var resourceList = new String(getClass().getResourceAsStream(resourceListPath).readAllBytes());
-				for (final var resource : resourceList.split("\n")) {
-					if (resource.isBlank()) {
-						continue;
-					}
-					if (resource.startsWith(pathStr) && !matchingResources.contains(resource)) {
-						matchingResources.add(resource);
-					}
-				}
-			}
-			String resourcePathLog = null;
-			ZipEntry ze = null;
-			ByteArrayOutputStream fos = new ByteArrayOutputStream();
-			try (ZipOutputStream zos = new ZipOutputStream(fos);) {
-
-				for (String resourcePath : matchingResources) {
-					resourcePathLog = resourcePath;
-					if (isFileResource(resourcePath)) {
-						ze = new ZipEntry(resourcePath.substring(1));
-
-						// CreationTime der Zip und Änderungs-Zeitpunkt der Zip auf diese festen
-						// Zeitpunkte setzen, da sich sonst jedes Mal der md5 Wert ändert,
-						// wenn die Zip erstellt wird.
-						ze.setCreationTime(FileTime.from(Instant.EPOCH));
-						ze.setTime(0);
-						zos.putNextEntry(ze);
-
-						final var resourceContent = getClass().getResourceAsStream(resourcePath).readAllBytes();
-						zos.write(resourceContent, 0, resourceContent.length);
-						zos.closeEntry();
-					}
-				}
-			} catch (Exception e) {
-				if (ze != null) {
-					customLogger.logFiles("Error while zipping file " + ze.getName());
-					throw new RuntimeException("msg.ZipError %" + ze.getName());
-				} else {
-					// Landet nur hier, wenn es nicht mal bis in das erste if geschafft hat.
-					customLogger.logFiles("Error while accessing file path for file to zip.");
-					throw new RuntimeException("Error while accessing file path " + resourcePathLog + " for file to zip.", e);
+			final CachedZip zip = zipCache.get(path.startsWith("/") ? path : "/" + path);
+			customLogger.logUserRequest("files/zip: " + path);
+			return ResponseEntity.ok().eTag(zip.getETag()).body(zip.toResource());
+		}
+		return stream(resolveZip(path));
+	}
+
+	/**
+	 * Liefert die Zip eines Ordners als byte[].
+	 *
+	 * @param path
+	 *            Der Pfad des Ordners, optional mit der Endung .zip.
+	 * @return Die Zip.
+	 * @throws Exception
+	 *             Entweder eine IllegalAccessException, falls der Pfad außerhalb des System-Ordners liegt, oder NoSuchFileException, falls es die Zip nicht
+	 *             gibt.
+	 */
+	public byte[] getZip(String path) throws Exception {
+		if (isFatJarMode) {
+			return zipCache.get(path.startsWith("/") ? path : "/" + path).readAllBytes();
+		}
+		return readAllBytes(resolveZip(path));
+	}
+
+	/**
+	 * Liefert eine Datei aus dem System-Ordner als Stream. Die Datei wird erst beim Schreiben der Antwort gelesen und nie vollständig in den Speicher geladen.
+	 *
+	 * @param file
+	 *            Der geprüfte, absolute Pfad der Datei.
+	 * @return Die Antwort mit der Datei und, falls vorhanden, dem ETag aus Internal/MD5.
+	 */
+	private ResponseEntity<Resource> stream(Path file) {
+		final String eTag = readETag(file);
+		final ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+		if (eTag != null) {
+			response.eTag(eTag);
+		}
+		return response.body(new PathResource(file));
+	}
+
+	/**
+	 * Liest den von {@link #hashAll()} geschriebenen MD5-Hash einer Datei. Ist die MD5-Datei älter als die Datei selbst, wurde diese seitdem geändert und es
+	 * gibt keinen ETag.
+	 *
+	 * @param file
+	 *            Der absolute Pfad der Datei innerhalb des System-Ordners.
+	 * @return Der Hash als ETag oder null.
+	 */
+	String readETag(Path file) {
+		final Path md5File = fileService.getMd5Folder().resolve(fileService.getSystemFolder().relativize(file) + ".md5");
+		try {
+			if (Files.isRegularFile(md5File) && Files.getLastModifiedTime(md5File).compareTo(Files.getLastModifiedTime(file)) >= 0) {
+				final String md5 = Files.readString(md5File, StandardCharsets.UTF_8).trim();
+				if (!md5.isEmpty()) {
+					return "\"" + md5 + "\"";
 				}
-			} finally {
-				fos.close();
 			}
-			return fos.toByteArray();
+		} catch (IOException e) {
+			customLogger.logFiles("Could not read " + md5File + ": " + e.getMessage());
 		}
+		return null;
+	}
+
+	private Path resolveZip(String path) throws Exception {
 		path = path.replace('\\', '/');
 		customLogger.logUserRequest("files/zip: " + path);
 		String toBeResolved = path;
@@ -309,8 +411,7 @@ public class FilesController {
 			toBeResolved = toBeResolved + ".zip";
 		}
 		Path zipFilePath = fileService.getZipsFolder().resolve(toBeResolved);
-		fileService.checkLegalPath(zipFilePath);
-		return readAllBytes(zipFilePath);
+		return fileService.checkLegalPath(zipFilePath);
 	}
 
 	/**
@@ -347,20 +448,13 @@ public class FilesController {
 	 *
 	 * @param p
 	 *            Der Pfad der Datei, welche gehashed werden soll.
+	 * @return Der geschriebene Hash.
 	 * @throws Exception
 	 *             Falls die Datei nicht geschrieben oder gelesen werden kann.
 	 */
-	public void hashFile(Path p) throws Exception {
+	public String hashFile(Path p) throws Exception {
 		final val filePath = fileService.checkLegalPath(p);
-		MessageDigest md;
-		try {
-			md = MessageDigest.getInstance("MD5");
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException("msg.MD5Error");
-		}
-		md.update(readAllBytes(filePath));
-		String fx = "%0" + (md.getDigestLength() * 2) + "x";
-		byte[] hashOfFile = String.format(fx, new BigInteger(1, md.digest())).getBytes(StandardCharsets.UTF_8);
+		final String hash = fileService.md5(filePath);
 
 		// Path für die neue MD5-Datei zusammenbauen
 		Path mdDataName = fileService.getMd5Folder().resolve(p);
@@ -374,11 +468,13 @@ public class FilesController {
 		File hashedFile = new File(mdDataName + ".md5");
 		customLogger.logFiles("Hashing: " + hashedFile.getAbsolutePath());
 
-		Files.write(Paths.get(hashedFile.getAbsolutePath()), hashOfFile);
+		Files.write(Paths.get(hashedFile.getAbsolutePath()), hash.getBytes(StandardCharsets.UTF_8));
+		return hash;
 	}
 
 	/**
-	 * Hashed beim Starten des CAS alle Dateien und speichert deren MD5-Dateien im Internal/MD5-Ordner.
+	 * Hashed beim Starten des CAS alle Dateien und speichert deren MD5-Dateien im Internal/MD5-Ordner. Die Dateien werden parallel gehashed. Größe und
+	 * Änderungszeitpunkt jeder Datei werden im Manifest {@value #HASH_MANIFEST} gespeichert, beim nächsten Start werden nur geänderte Dateien neu gehashed.
 	 *
 	 * @throws Exception
 	 *             Falls die MD5-Dateien nicht geschrieben werden können.
@@ -389,25 +485,42 @@ public class FilesController {
 	@RequestMapping(value = "files/hashAll")
 	public void hashAll() throws Exception {
 		if (isFatJarMode) {
-			// In diesem Modus werden die Zips bei jeder Anfrage on the fly neu generiert.
+			// In diesem Modus werden die Zips bei der ersten Anfrage im ResourceZipCache erzeugt.
 			return;
 		}
-		List<Path> programFiles = fileService.populateFilesList(fileService.getSystemFolder());
-		for (Path path : programFiles) {
+		final Path systemFolder = fileService.getSystemFolder().toAbsolutePath();
+		final List<Path> programFiles = new ArrayList<>();
+		for (Path path : fileService.populateFilesList(fileService.getSystemFolder())) {
 			// Mit dieser If-Abfrage wird verhindert, dass es .md5-Dateiketten gibt
 			if (path.startsWith(fileService.getMd5Folder())) {
 				continue;
 			}
 			// wir wollen keine Hashes von einem Directory ( zips allerdings schon)
 			if (!path.toFile().isDirectory()) {
-				hashFile(fileService.getSystemFolder().toAbsolutePath().relativize(path.toAbsolutePath()));
+				programFiles.add(path);
 			}
-
 		}
+
+		final FilesManifest manifest = FilesManifest.load(fileService.getMd5Folder().resolve(HASH_MANIFEST));
+		runStartupJob(hashProgress, programFiles, path -> {
+			final Path relativePath = systemFolder.relativize(path.toAbsolutePath());
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			final long lastModified = attributes.lastModifiedTime().toMillis();
+			if (manifest.isUnchanged(relativePath.toString(), attributes.size(), lastModified, null)
+					&& Files.exists(fileService.getMd5Folder().resolve(relativePath + ".md5"))) {
+				return false;
+			}
+			final String hash = hashFile(relativePath);
+			manifest.put(relativePath.toString(), new FilesManifest.Entry(attributes.size(), lastModified, hash));
+			return true;
+		});
+		manifest.save();
 	}
 
 	/**
-	 * Zipped beim Starten des CAS alle Dateien und speichert deren Zip-Dateien im Internal/Zips.
+	 * Zipped beim Starten des CAS alle Dateien und speichert deren Zip-Dateien im Internal/Zips. Die Ordner werden parallel gezipped. Zu jedem Ordner wird
+	 * im Manifest {@value #ZIP_MANIFEST} ein Fingerabdruck aus Pfad, Größe und Änderungszeitpunkt aller enthaltenen Dateien gespeichert, beim nächsten Start
+	 * werden nur Ordner mit geändertem Fingerabdruck neu gezipped.
 	 *
 	 * @throws Exception
 	 *             Falls Dateien nicht gezipped werden konnten oder der Dateipfad außerhalb des Root-Directories zeigt.
@@ -418,32 +531,37 @@ public class FilesController {
 	@RequestMapping(value = "files/zipAll")
 	public void zipAll() throws Exception {
 		if (isFatJarMode) {
-			// In diesem Modus werden die Zips bei jeder Anfrage on the fly neu generiert.
+			// In diesem Modus werden die Zips bei der ersten Anfrage im ResourceZipCache erzeugt.
 			return;
 		}
-		List<Path> programFiles = fileService.populateFilesList(fileService.getSystemFolder());
-		for (Path path : programFiles) {
+		final Path systemFolder = fileService.getSystemFolder().toAbsolutePath();
+		final List<Path> directories = new ArrayList<>();
+		for (Path path : fileService.populateFilesList(fileService.getSystemFolder())) {
 			if (path.startsWith(fileService.getZipsFolder().getParent().toString())) {
 				continue;
 			}
 
-			// XXX String fileSuffix = path.toString().substring(path.toString().lastIndexOf(".") + 1 );
 			String fileSuffix = FilenameUtils.getExtension(path.toString());
-			// es kann sein, dass von einem vorherigen Start bereits gezippte Dateien vorhanden sind, welche schon gehashed wurden
-			if (fileSuffix.equalsIgnoreCase("md5")) {
-				String filePrefix = path.toString().substring(0, path.toString().lastIndexOf("."));
-				// XXX fileSuffix = path.toString().substring(filePrefix.lastIndexOf(".") + 1 );
-				fileSuffix = FilenameUtils.getExtension(path.toString());
-			}
 			// wir wollen nicht noch einen zip von einer zip Datei, wir wollen allerdings hier NUR Directories haben
 			if ((!fileSuffix.toLowerCase().contains("zip")) && (path.toFile().isDirectory())) {
-				createZip(fileService.getSystemFolder().toAbsolutePath().relativize(path.toAbsolutePath()));
+				directories.add(path);
 			}
 		}
-	}
 
-	private boolean isFileResource(String resourcePath) {
-		return !resourcePath.endsWith("/");
+		final FilesManifest manifest = FilesManifest.load(fileService.getMd5Folder().resolve(ZIP_MANIFEST));
+		runStartupJob(zipProgress, directories, directory -> {
+			final Path relativePath = systemFolder.relativize(directory.toAbsolutePath());
+			final List<Path> fileList = fileService.populateFilesList(directory);
+			final FilesManifest.Entry fingerprint = fingerprint(systemFolder, fileList);
+			if (manifest.isUnchanged(relativePath.toString(), fingerprint.getSize(), fingerprint.getLastModified(), fingerprint.getHash())
+					&& Files.exists(fileService.getZipsFolder().resolve(relativePath + ".zip"))) {
+				return false;
+			}
+			createZip(relativePath, fileList);
+			manifest.put(relativePath.toString(), fingerprint);
+			return true;
+		});
+		manifest.save();
 	}
 
 	/**
@@ -460,11 +578,13 @@ public class FilesController {
 	@RequestMapping(value = "files/createZip", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
 	public void createZip(@RequestParam Path path) throws Exception {
 		if (isFatJarMode) {
-			// In diesem Modus werden die Zips bei jeder Anfrage on the fly neu generiert.
+			// In diesem Modus werden die Zips bei der ersten Anfrage im ResourceZipCache erzeugt.
 			return;
 		}
-		List<Path> fileList = fileService.populateFilesList(fileService.getSystemFolder().resolve(path));
+		createZip(path, fileService.populateFilesList(fileService.getSystemFolder().resolve(path)));
+	}
 
+	private void createZip(Path path, List<Path> fileList) throws Exception {
 		// Path für die neue ZIP-Datei zusammenbauen
 		Path zipDataName = fileService.getZipsFolder().resolve(path);
 		// Alle benötigten Ordner erstellen
@@ -483,4 +603,94 @@ public class FilesController {
 		fileService.zip(fileService.getSystemFolder().toString(), zipFile, fileList);
 	}
 
+	/**
+	 * Berechnet den Fingerabdruck eines Ordners aus Pfad, Größe und Änderungszeitpunkt aller enthaltenen Dateien. Der Inhalt der Dateien wird nicht gelesen.
+	 */
+	private static FilesManifest.Entry fingerprint(Path systemFolder, List<Path> fileList) throws IOException {
+		final List<String> lines = new ArrayList<>();
+		long size = 0;
+		long lastModified = 0;
+		for (Path path : fileList) {
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			if (attributes.isRegularFile()) {
+				size += attributes.size();
+				lastModified = Math.max(lastModified, attributes.lastModifiedTime().toMillis());
+				lines.add(systemFolder.relativize(path.toAbsolutePath()) + "\t" + attributes.size() + "\t" + attributes.lastModifiedTime().toMillis());
+			}
+		}
+		Collections.sort(lines);
+		final MessageDigest md = FilesService.newMd5();
+		md.update(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+		return new FilesManifest.Entry(size, lastModified, FilesService.toHex(md));
+	}
+
+	/**
+	 * Ein Schritt von {@link #hashAll()} oder {@link #zipAll()}.
+	 */
+	@FunctionalInterface
+	interface StartupTask {
+		/**
+		 * @return true, falls etwas neu erzeugt wurde, false, falls das Ergebnis des letzten Starts noch aktuell ist.
+		 */
+		boolean run(Path path) throws Exception;
+	}
+
+	/**
+	 * Der Fortschritt von {@link #hashAll()} oder {@link #zipAll()}, abrufbar unter 'cas.files.startup'.
+	 */
+	static final class StartupProgress {
+		final String job;
+		final AtomicInteger total = new AtomicInteger();
+		final AtomicInteger done = new AtomicInteger();
+		final AtomicInteger changed = new AtomicInteger();
+
+		StartupProgress(String job) {
+			this.job = job;
+		}
+	}
+
+	/**
+	 * Führt den Schritt für alle Pfade auf einem eigenen ForkJoinPool aus. Schlägt ein Pfad fehl, werden die übrigen trotzdem bearbeitet und danach der erste
+	 * Fehler geworfen.
+	 */
+	private void runStartupJob(StartupProgress progress, List<Path> paths, StartupTask task) throws Exception {
+		progress.total.set(paths.size());
+		progress.done.set(0);
+		progress.changed.set(0);
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		final List<Callable<Void>> tasks = new ArrayList<>(paths.size());
+		for (Path path : paths) {
+			tasks.add(() -> {
+				try {
+					if (task.run(path)) {
+						progress.changed.incrementAndGet();
+					}
+				} catch (Exception e) {
+					customLogger.logFiles("Error in " + progress.job + " for " + path + ": " + e.getMessage());
+					failure.compareAndSet(null, e);
+				} finally {
+					progress.done.incrementAndGet();
+				}
+				return null;
+			});
+		}
+
+		final long start = System.nanoTime();
+		final ForkJoinPool pool = new ForkJoinPool(startupThreads > 0 ? startupThreads : Runtime.getRuntime().availableProcessors());
+		try {
+			pool.invokeAll(tasks);
+		} finally {
+			pool.shutdown();
+		}
+		final long nanos = System.nanoTime() - start;
+		if (meterRegistry != null) {
+			Timer.builder("cas.files.startup.duration").tag("job", progress.job).register(meterRegistry).record(nanos, TimeUnit.NANOSECONDS);
+		}
+		customLogger.logFiles(
+				progress.job + ": " + progress.changed.get() + " of " + paths.size() + " changed, " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+	}
+
 }
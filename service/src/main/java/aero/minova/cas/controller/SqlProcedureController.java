@@ -4,12 +4,11 @@ import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,19 +52,19 @@ public class SqlProcedureController {
 	@Setter
 	QueueService queueService;
 
-	final Object extensionSynchronizer = new Object();
-
 	/**
-	 * Das sind Registrierungen, die ausgeführt werden, wenn eine Prozedur mit den Namen der Registrierung ausgeführt werden soll.
+	 * Das sind Registrierungen, die ausgeführt werden, wenn eine Prozedur mit den Namen der Registrierung ausgeführt werden soll. Die Extensions werden ohne
+	 * gemeinsame Sperre ausgeführt.
 	 */
-	private final Map<String, Function<Table, ResponseEntity>> extensions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final ExtensionRegistry<Function<Table, ResponseEntity>> extensions = new ExtensionRegistry<>();
 	/**
 	 * Wird nur verwendet, falls die Tabelle "xvcasUserSecurity" nicht vorhanden ist. In diesem Fall kann man annehmen, das die Datenbank nicht aufgesetzt ist.
 	 */
-	private final Map<String, Function<Table, Boolean>> extensionBootstrapChecks = new HashMap<>();
+	private final Map<String, Function<Table, Boolean>> extensionBootstrapChecks = new ConcurrentHashMap<>();
 
 	/**
-	 * Hiermit lassen sich Erweiterungen registrieren, die ausgeführt werden, wenn eine Prozedur mit der Namen der Registrierung ausgeführt werden soll.
+	 * Hiermit lassen sich Erweiterungen registrieren, die ausgeführt werden, wenn eine Prozedur mit der Namen der Registrierung ausgeführt werden soll. Die
+	 * Erweiterung muss threadsicher sein, da sie gleichzeitig von mehreren Anfragen aufgerufen werden kann.
 	 *
 	 * @param name
 	 *            Name der Erweiterung
@@ -73,12 +72,26 @@ public class SqlProcedureController {
 	 *            Erweiterung
 	 */
 	public void registerExtension(String name, Function<Table, ResponseEntity> ext) {
-		if (extensions.containsKey(name)) {
+		registerExtension(name, ext, false);
+	}
+
+	/**
+	 * Hiermit lassen sich Erweiterungen registrieren, die ausgeführt werden, wenn eine Prozedur mit der Namen der Registrierung ausgeführt werden soll.
+	 *
+	 * @param name
+	 *            Name der Erweiterung
+	 * @param ext
+	 *            Erweiterung
+	 * @param serialized
+	 *            true, wenn die Erweiterung nicht threadsicher ist. Dann wird sie nie gleichzeitig ausgeführt. Andere Erweiterungen werden dadurch nicht
+	 *            blockiert.
+	 */
+	public void registerExtension(String name, Function<Table, ResponseEntity> ext, boolean serialized) {
+		if (!extensions.register(name, ext, serialized)) {
 			String errorMessage = "Cannot register two extensions with the same name: " + name;
 			customLogger.logSetup(errorMessage);
 			throw new IllegalArgumentException(errorMessage);
 		}
-		extensions.put(name, ext);
 	}
 
 	/**
@@ -90,10 +103,18 @@ public class SqlProcedureController {
 	 *            Alternative Privilegien-Prüfung
 	 */
 	public void registerExtensionBootstrapCheck(String name, Function<Table, Boolean> extCheck) {
-		if (extensionBootstrapChecks.containsKey(name)) {
+		if (extensionBootstrapChecks.putIfAbsent(name, extCheck) != null) {
 			throw new IllegalArgumentException(name);
 		}
-		extensionBootstrapChecks.put(name, extCheck);
+	}
+
+	/**
+	 * @param name
+	 *            Name der Prozedur (Case insensitive)
+	 * @return true, wenn für die Prozedur eine Extension registriert ist.
+	 */
+	public boolean hasExtension(String name) {
+		return extensions.contains(name);
 	}
 
 	/**
@@ -107,7 +128,7 @@ public class SqlProcedureController {
 		extensionSetupTable.addColumn(new Column("KeyText", DataType.STRING));
 		extensionSetupTable.addColumn(new Column("Description", DataType.STRING));
 
-		for (String extensionName : extensions.keySet()) {
+		for (String extensionName : extensions.names()) {
 			Row extensionSetupRows = new Row();
 			extensionSetupRows.addValue(null);
 			extensionSetupRows.addValue(new Value(extensionName, null));
@@ -170,7 +191,11 @@ public class SqlProcedureController {
 		}
 		customLogger.logUserRequest("data/procedure: ", inputTable);
 		try {
-			final List<Row> privilegeRequest = checkForPrivilegeAndBootstrapExtension(inputTable);
+			final List<Row> privilegeRequest;
+			// Die Sicherheitsabfragen teilen sich eine Connection. Die Prozedur selbst schreibt und bekommt deshalb weiterhin eine eigene.
+			try (SystemDatabase.SharedConnection shared = database.shareConnection()) {
+				privilegeRequest = checkForPrivilegeAndBootstrapExtension(inputTable);
+			}
 
 			Optional<ResponseEntity> extensionResult = checkForExtension(inputTable);
 
@@ -201,23 +226,19 @@ public class SqlProcedureController {
 	 * @return Das Ergebnis der Extension als Optional mit der übergebenen Table als Input.
 	 */
 	Optional<ResponseEntity> checkForExtension(Table inputTable) {
-		ResponseEntity extResult = null;
-		synchronized (extensionSynchronizer) {
-			if (extensions.containsKey(inputTable.getName())) {
-				final var extension = extensions.get(inputTable.getName());
-				extResult = extension.apply(inputTable);
-				queueService.accept(inputTable, extResult);
-				if (extResult == null) {
-					customLogger.logError(
-							"Extension " + extension
-									+ " returned null. This is not allowed to happen, as otherwise the SQL method is executed after the extension as well.",
-							new NullPointerException());
-				}
-				return Optional.of(extResult);
-			} else {
-				return Optional.empty();
-			}
+		final var registration = extensions.find(inputTable.getName());
+		if (registration.isEmpty()) {
+			return Optional.empty();
+		}
+		final var extension = registration.get().extension();
+		final ResponseEntity extResult = registration.get().call(ext -> ext.apply(inputTable));
+		queueService.accept(inputTable, extResult);
+		if (extResult == null) {
+			customLogger.logError(
+					"Extension " + extension + " returned null. This is not allowed to happen, as otherwise the SQL method is executed after the extension as well.",
+					new NullPointerException());
 		}
+		return Optional.of(extResult);
 	}
 
 	/**
@@ -240,8 +261,9 @@ public class SqlProcedureController {
 				throw new ProcedureException("msg.PrivilegeError %" + inputTable.getName());
 			}
 		} else {
-			if (extensionBootstrapChecks.containsKey(inputTable.getName())) {
-				if (!extensionBootstrapChecks.get(inputTable.getName()).apply(inputTable)) {
+			final var bootstrapCheck = inputTable.getName() == null ? null : extensionBootstrapChecks.get(inputTable.getName());
+			if (bootstrapCheck != null) {
+				if (!bootstrapCheck.apply(inputTable)) {
 					throw new ProcedureException("msg.PrivilegeError %" + inputTable.getName());
 				}
 			} else {
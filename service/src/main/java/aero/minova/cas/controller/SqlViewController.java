@@ -1,18 +1,27 @@
 package aero.minova.cas.controller;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Optional;
 import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.google.gson.Gson;
 
 import aero.minova.cas.CustomLogger;
 import aero.minova.cas.api.domain.Column;
@@ -25,6 +34,7 @@ import aero.minova.cas.api.domain.Value;
 import aero.minova.cas.service.ProcedureService;
 import aero.minova.cas.service.SecurityService;
 import aero.minova.cas.service.ViewService;
+import aero.minova.cas.sql.SystemDatabase;
 
 @RestController
 public class SqlViewController {
@@ -41,12 +51,17 @@ public class SqlViewController {
 	@Autowired
 	ProcedureService procedureService;
 
-	final Object extensionSynchronizer = new Object();
+	@Autowired
+	private Gson gson;
+
+	@Autowired
+	private SystemDatabase systemDatabase;
 
 	/**
-	 * Das sind Registrierungen, die ausgeführt werden, wenn eine View mit den Namen der Registrierung ausgeführt werden soll.
+	 * Das sind Registrierungen, die ausgeführt werden, wenn eine View mit den Namen der Registrierung ausgeführt werden soll. Die Extensions werden ohne
+	 * gemeinsame Sperre ausgeführt.
 	 */
-	private final Map<String, Function<Table, Table>> extensions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final ExtensionRegistry<Function<Table, Table>> extensions = new ExtensionRegistry<>();
 
 	/**
 	 * Hiermit lassen sich Erweiterungen für Views registrieren, die ausgeführt werden, wenn eine View mit der Namen der Registrierung ausgeführt werden soll.
@@ -57,12 +72,25 @@ public class SqlViewController {
 	 *            Erweiterung
 	 */
 	public void registerExtension(String name, Function<Table, Table> ext) {
-		if (extensions.containsKey(name)) {
+		registerExtension(name, ext, false);
+	}
+
+	/**
+	 * Hiermit lassen sich Erweiterungen für Views registrieren, die ausgeführt werden, wenn eine View mit der Namen der Registrierung ausgeführt werden soll.
+	 *
+	 * @param name
+	 *            Name der Erweiterung
+	 * @param ext
+	 *            Erweiterung
+	 * @param serialized
+	 *            true, wenn die Erweiterung nicht threadsicher ist. Dann wird sie nie gleichzeitig ausgeführt.
+	 */
+	public void registerExtension(String name, Function<Table, Table> ext, boolean serialized) {
+		if (!extensions.register(name, ext, serialized)) {
 			String errorMessage = "Cannot register two extensions with the same name: " + name;
 			customLogger.logSetup(errorMessage);
 			throw new IllegalArgumentException(errorMessage);
 		}
-		extensions.put(name, ext);
 	}
 
 	/**
@@ -76,7 +104,7 @@ public class SqlViewController {
 		extensionSetupTable.addColumn(new Column("KeyText", DataType.STRING));
 		extensionSetupTable.addColumn(new Column("Description", DataType.STRING));
 
-		for (String extensionName : extensions.keySet()) {
+		for (String extensionName : extensions.names()) {
 			Row extensionSetupRows = new Row();
 			extensionSetupRows.addValue(null);
 			extensionSetupRows.addValue(new Value(extensionName, null));
@@ -106,18 +134,66 @@ public class SqlViewController {
 		return getIndexView(inputTable, true);
 	}
 
-	public Table getIndexView(@RequestBody Table inputTable, boolean checkForExtension) throws Exception {
-		// Die Privilegien-Abfrage muss vor allem Anderen passieren. Falls das Privileg nicht vorhanden ist MUSS eine TableException geworfen werden.
-		List<Row> authoritiesForThisTable = securityService.getPrivilegePermissions(inputTable.getName());
+	/**
+	 * Wie data/index, nur dass die Zeilen direkt aus der Datenbank in die Antwort geschrieben werden. Dadurch müssen bei großen Views bzw. Exporten nicht alle
+	 * Zeilen gleichzeitig im Speicher gehalten werden. Für Views mit einer registrierten Extension wird deren Ergebnis wie gewohnt serialisiert.
+	 *
+	 * @param inputTable
+	 *            Die Anfrage, wie bei data/index.
+	 * @return Die Antwort, welche beim Schreiben die Abfrage ausführt.
+	 * @throws Exception
+	 *             Falls der Nutzer kein Recht auf die View hat.
+	 */
+	@PostMapping(value = "data/index/stream", produces = "application/json")
+	public ResponseEntity<StreamingResponseBody> getIndexViewStreamed(@RequestBody Table inputTable) throws Exception {
+		customLogger.logUserRequest(": data/index/stream: ", inputTable);
+		final List<Row> authoritiesForThisTable;
+		try (SystemDatabase.SharedConnection shared = systemDatabase.shareConnection()) {
+			authoritiesForThisTable = securityService.getPrivilegePermissions(inputTable.getName());
+		}
 		if (authoritiesForThisTable.isEmpty()) {
 			throw new TableException(new RuntimeException("msg.PrivilegeError %" + inputTable.getName()));
 		}
-		if (checkForExtension && extensions.containsKey(inputTable.getName())) {
-			synchronized (extensionSynchronizer) {
-				return extensions.get(inputTable.getName()).apply(inputTable);
+
+		final StreamingResponseBody body;
+		final var registration = extensions.find(inputTable.getName());
+		if (registration.isPresent()) {
+			final Table result = registration.get().call(ext -> ext.apply(inputTable));
+			body = out -> {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+				gson.toJson(result, writer);
+				writer.flush();
+			};
+		} else {
+			body = out -> {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+				try {
+					viewService.streamView(inputTable, authoritiesForThisTable, gson, writer);
+				} catch (TableException e) {
+					throw new IOException(e.getCause());
+				}
+				writer.flush();
+			};
+		}
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+	}
+
+	public Table getIndexView(@RequestBody Table inputTable, boolean checkForExtension) throws Exception {
+		final Optional<ExtensionRegistry.Registration<Function<Table, Table>>> registration;
+		// Die Sicherheitsabfragen und die eigentliche Abfrage teilen sich eine Connection, statt jeweils eine eigene aus dem Pool zu holen.
+		try (SystemDatabase.SharedConnection shared = systemDatabase.shareConnection()) {
+			// Die Privilegien-Abfrage muss vor allem Anderen passieren. Falls das Privileg nicht vorhanden ist MUSS eine TableException geworfen werden.
+			List<Row> authoritiesForThisTable = securityService.getPrivilegePermissions(inputTable.getName());
+			if (authoritiesForThisTable.isEmpty()) {
+				throw new TableException(new RuntimeException("msg.PrivilegeError %" + inputTable.getName()));
+			}
+			registration = checkForExtension ? extensions.find(inputTable.getName()) : Optional.empty();
+			if (registration.isEmpty()) {
+				return viewService.executeView(inputTable, authoritiesForThisTable);
 			}
 		}
-		return viewService.executeView(inputTable, authoritiesForThisTable);
+		// Extensions können auch schreiben und laufen deshalb außerhalb der gemeinsamen Connection.
+		return registration.get().call(ext -> ext.apply(inputTable));
 	}
 
 	/**
@@ -6,7 +6,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +30,9 @@ import aero.minova.cas.api.domain.XTable;
 import aero.minova.cas.service.ProcedureService;
 import aero.minova.cas.service.QueueService;
 import aero.minova.cas.service.SecurityService;
+import aero.minova.cas.sql.DeadlockRetry;
+import aero.minova.cas.sql.ExecuteStrategy;
+import aero.minova.cas.sql.SqlTrace;
 import aero.minova.cas.sql.SystemDatabase;
 
 @RestController
@@ -56,11 +59,13 @@ public class XSqlProcedureController {
 	@Autowired
 	QueueService queueService;
 
+	@Autowired
+	DeadlockRetry deadlockRetry;
+
 	/**
 	 * Das sind Registrierungen, die ausgeführt werden, wenn eine Prozedur in der Liste mit den Namen der Registrierung ausgeführt werden soll.
 	 */
-	private final Map<String, BiFunction<List<XTable>, Map<Table, List<SqlProcedureResult>>, List<XSqlProcedureResult>>> extensions = new TreeMap<>(
-			String.CASE_INSENSITIVE_ORDER);
+	private final ExtensionRegistry<BiFunction<List<XTable>, Map<Table, List<SqlProcedureResult>>, List<XSqlProcedureResult>>> extensions = new ExtensionRegistry<>();
 
 	/**
 	 * Hiermit lassen sich Erweiterungen registrieren. Hat eine Tabelle in der Transaktion den registrierten Namen, so wird die gesamte Transaktion an die
@@ -77,11 +82,10 @@ public class XSqlProcedureController {
 	 *             beim Versuch, einen bereits verwendeten Namen für eine andere Extension zu registrieren
 	 */
 	public void registerExtension(String name, BiFunction<List<XTable>, Map<Table, List<SqlProcedureResult>>, List<XSqlProcedureResult>> ext) {
-		if (extensions.containsKey(name)) {
+		if (!extensions.register(name, ext, false)) {
 			customLogger.logSetup("Cannot register two extensions with the same name: " + name);
 			throw new IllegalArgumentException(name);
 		}
-		extensions.put(name, ext);
 	}
 
 	/**
@@ -107,8 +111,7 @@ public class XSqlProcedureController {
 		customLogger.logUserRequest("data/x-procedure: ", inputTables);
 		List<XSqlProcedureResult> resultSets = new ArrayList<>();
 
-		Connection connection = null;
-		StringBuffer sb = new StringBuffer();
+		SqlTrace trace = new SqlTrace();
 		try {
 
 			Map<Table, List<SqlProcedureResult>> inputTablesWithResults = new HashMap<>();
@@ -119,13 +122,7 @@ public class XSqlProcedureController {
 				resultSets = checkForExtensions.get();
 
 			} else { // Ansonsten die Prozeduren einzeln verarbeiten
-
-				connection = systemDatabase.getConnection();
-				resultSets = processXProcedures(inputTables, resultSets, sb, connection, inputTablesWithResults);
-				// Hier werden die Checks nach der eigentlichen Anfrage ausgeführt.
-				checkFollowUpProcedures(inputTables, resultSets, sb, connection, inputTablesWithResults);
-				// Erst wenn auch die Checks erfolgreich waren, wird der Commit gesendet.
-				connection.commit();
+				resultSets = executeTransaction(inputTables, resultSets, trace, inputTablesWithResults);
 			}
 
 			// Nachdem alle Prozeduren und Folgeprozeduren bzw. die Erweiterung erfolgreich durchgelaufen sind, kann man die Nachrichten über den QueueService
@@ -136,19 +133,69 @@ public class XSqlProcedureController {
 				}
 			}
 		} catch (Throwable e) {
-			customLogger.logError("XSqlProcedure could not be executed: " + sb, e);
-			if (connection != null) {
-				try {
-					connection.rollback();
-				} catch (Exception e1) {
-					customLogger.logError("Couldn't roll back xSqlProcedure execution", e);
+			customLogger.logError("XSqlProcedure could not be executed: " + trace, e);
+			throw new XProcedureException(inputTables, resultSets, e);
+		}
+		return new ResponseEntity<>(resultSets, HttpStatus.ACCEPTED);
+	}
+
+	/**
+	 * Führt die Prozeduren und ihre Checks in einer Transaktion aus. Wird die Transaktion als Deadlock-Opfer abgebrochen, wird sie gemäß
+	 * {@link ExecuteStrategy#DEADLOCK_TRY_AGAIN} vollständig wiederholt. Dafür werden die durch {@link #fillInDependencies} ersetzten Werte vorher wieder
+	 * hergestellt. Ist für eine der Prozeduren eine Extension registriert, wird nicht wiederholt, da diese Seiteneffekte außerhalb der Transaktion haben
+	 * kann.
+	 */
+	private List<XSqlProcedureResult> executeTransaction(List<XTable> inputTables, List<XSqlProcedureResult> resultSets, SqlTrace trace,
+			Map<Table, List<SqlProcedureResult>> inputTablesWithResults) throws Exception {
+		if (!procedureService.getExecuteStrategies().contains(ExecuteStrategy.DEADLOCK_TRY_AGAIN)
+				|| inputTables.stream().anyMatch(xt -> sqlProcedureController.hasExtension(xt.getTable().getName()))) {
+			return executeTransactionOnce(inputTables, resultSets, trace, inputTablesWithResults);
+		}
+		final List<List<List<Value>>> originalValues = new ArrayList<>();
+		for (XTable xt : inputTables) {
+			originalValues.add(xt.getTable().getRows().stream().<List<Value>> map(r -> new ArrayList<>(r.getValues())).toList());
+		}
+		final AtomicBoolean firstAttempt = new AtomicBoolean(true);
+		return deadlockRetry.execute("x-procedure", () -> {
+			if (!firstAttempt.getAndSet(false)) {
+				for (int i = 0; i < inputTables.size(); i++) {
+					final List<Row> rows = inputTables.get(i).getTable().getRows();
+					for (int j = 0; j < rows.size(); j++) {
+						rows.get(j).setValues(new ArrayList<>(originalValues.get(i).get(j)));
+					}
 				}
+				resultSets.clear();
+				inputTablesWithResults.clear();
+				trace.clear();
 			}
-			throw new XProcedureException(inputTables, resultSets, e);
+			return executeTransactionOnce(inputTables, resultSets, trace, inputTablesWithResults);
+		});
+	}
+
+	private List<XSqlProcedureResult> executeTransactionOnce(List<XTable> inputTables, List<XSqlProcedureResult> resultSets, SqlTrace trace,
+			Map<Table, List<SqlProcedureResult>> inputTablesWithResults) throws Exception {
+		final Connection connection = systemDatabase.getConnection();
+		try {
+			processXProcedures(inputTables, resultSets, trace, connection, inputTablesWithResults);
+			// Hier werden die Checks nach der eigentlichen Anfrage ausgeführt.
+			checkFollowUpProcedures(inputTables, resultSets, trace, connection, inputTablesWithResults);
+			// Erst wenn auch die Checks erfolgreich waren, wird der Commit gesendet.
+			connection.commit();
+			if (!trace.isEmpty()) {
+				// Alle Prozeduren der Transaktion in einer Meldung, mit der Dauer der gesamten Transaktion.
+				customLogger.logSql("Procedures successfully executed: ", trace);
+			}
+			return resultSets;
+		} catch (Throwable e) {
+			try {
+				connection.rollback();
+			} catch (Exception e1) {
+				customLogger.logError("Couldn't roll back xSqlProcedure execution", e1);
+			}
+			throw e;
 		} finally {
 			systemDatabase.closeConnection(connection);
 		}
-		return new ResponseEntity<>(resultSets, HttpStatus.ACCEPTED);
 	}
 
 	/**
@@ -168,17 +215,19 @@ public class XSqlProcedureController {
 
 		// Gibt es eine Extension für die Transaktion?
 		for (XTable table : inputTables) {
-			if (extensions.containsKey(table.getTable().getName())) {
-				extensionFunction = extensions.get(table.getTable().getName());
+			final var registration = extensions.find(table.getTable().getName());
+			if (registration.isPresent()) {
+				extensionFunction = registration.get().extension();
 				break;
 			}
 		}
 
 		// Privilegien Prüfen und Extension ausführen
 		if (extensionFunction != null) {
+			final Map<String, List<Row>> permissions = securityService.getPrivilegePermissions(tableNames(inputTables));
 			for (XTable table : inputTables) {
 				List<Row> privilegeRequest = new ArrayList<>();
-				privilegeRequest.addAll(securityService.getPrivilegePermissions(table.getTable().getName()));
+				privilegeRequest.addAll(permissions.get(table.getTable().getName()));
 				if (privilegeRequest.isEmpty()) {
 					throw new ProcedureException("msg.PrivilegeError %" + table.getTable());
 				}
@@ -199,8 +248,8 @@ public class XSqlProcedureController {
 	 *            Eine Liste an XTables, welche Prozeduren enthalten ausgeführt werden sollen.
 	 * @param resultSets
 	 *            Die bisher noch leere Liste an XSqlResultSets, welche in dieser Methode gefüllt weden.
-	 * @param sb
-	 *            Ein StringBuffer.
+	 * @param trace
+	 *            Der SqlTrace für das Loggen der Prozedur-Aufrufe.
 	 * @param connection
 	 *            Eine Connection zur Datenbank. QueueService später benötigt.
 	 * @return Gibt die zuvor leere Liste an XSqlProcedureResults zurück, welche nun gefüllt ist.
@@ -208,9 +257,9 @@ public class XSqlProcedureController {
 	 *             Wirft einen Fehler, falls das Privileg nicht vorhanden ist oder es einen Fehler bei der Ausführung der Prozedur gab.
 	 */
 	@Deprecated
-	private List<XSqlProcedureResult> processXProcedures(List<XTable> inputTables, List<XSqlProcedureResult> resultSets, StringBuffer sb, Connection connection)
+	private List<XSqlProcedureResult> processXProcedures(List<XTable> inputTables, List<XSqlProcedureResult> resultSets, SqlTrace trace, Connection connection)
 			throws Exception {
-		return processXProcedures(inputTables, resultSets, sb, connection, null);
+		return processXProcedures(inputTables, resultSets, trace, connection, null);
 	}
 
 	/**
@@ -221,8 +270,8 @@ public class XSqlProcedureController {
 	 *            Eine Liste an XTables, welche Prozeduren enthalten ausgeführt werden sollen.
 	 * @param resultSets
 	 *            Die bisher noch leere Liste an XSqlResultSets, welche in dieser Methode gefüllt weden.
-	 * @param sb
-	 *            Ein StringBuffer für das Loggen der Prozedur-Aufrufe
+	 * @param trace
+	 *            Der SqlTrace für das Loggen der Prozedur-Aufrufe
 	 * @param connection
 	 *            Eine Connection zur Datenbank.
 	 * @param inputTablesWithResults
@@ -232,8 +281,15 @@ public class XSqlProcedureController {
 	 * @throws Exception
 	 *             Wirft einen Fehler, falls das Privileg nicht vorhanden ist oder es einen Fehler bei der Ausführung der Prozedur gab.
 	 */
-	private List<XSqlProcedureResult> processXProcedures(List<XTable> inputTables, List<XSqlProcedureResult> resultSets, StringBuffer sb, Connection connection,
+	private List<XSqlProcedureResult> processXProcedures(List<XTable> inputTables, List<XSqlProcedureResult> resultSets, SqlTrace trace, Connection connection,
 			Map<Table, List<SqlProcedureResult>> inputTablesWithResults) throws Exception {
+		if (inputTables.isEmpty()) {
+			return resultSets;
+		}
+		// Die Rechte aller Prozeduren werden gemeinsam mit einer Abfrage geladen.
+		final Map<String, List<Row>> permissions = securityService.arePrivilegeStoresSetup()
+				? securityService.getPrivilegePermissions(tableNames(inputTables))
+				: null;
 		for (XTable xt : inputTables) {
 			SqlProcedureResult result = new SqlProcedureResult();
 			// Referenzen auf Ergebnisse bereits ausgeführter Prozeduren auflösen.
@@ -241,8 +297,8 @@ public class XSqlProcedureController {
 
 			// Rechteprüfung
 			final List<Row> privilegeRequest = new ArrayList<>();
-			if (securityService.arePrivilegeStoresSetup()) {
-				privilegeRequest.addAll(securityService.getPrivilegePermissions(filledTable.getName()));
+			if (permissions != null) {
+				privilegeRequest.addAll(permissions.get(filledTable.getName()));
 				if (privilegeRequest.isEmpty()) {
 					throw new ProcedureException("msg.PrivilegeError %" + filledTable.getName());
 				}
@@ -255,8 +311,7 @@ public class XSqlProcedureController {
 				result = (SqlProcedureResult) extensionResult.getBody();
 				customLogger.logSql("Extension succesfully executed with name: " + filledTable.getName());
 			} else {
-				result = procedureService.calculateSqlProcedureResult(filledTable, privilegeRequest, connection, result, sb);
-				customLogger.logSql("Procedure succesfully executed: " + sb.toString());
+				result = procedureService.calculateSqlProcedureResult(filledTable, privilegeRequest, connection, result, trace);
 			}
 			// Die erste if-Bedingung ist eigentlich nur für die Abwärtskompatibilität da, damit hier keine NullPointerException geworfen wird.
 			if (inputTablesWithResults != null) {
@@ -277,6 +332,10 @@ public class XSqlProcedureController {
 		return resultSets;
 	}
 
+	private static List<String> tableNames(List<XTable> inputTables) {
+		return inputTables.stream().map(xt -> xt.getTable().getName()).toList();
+	}
+
 	/**
 	 * Falls es einen Verweis auf ein OutputParameter einer anderen Prozedur gibt, wird der Value hier ersetzt.
 	 *
@@ -402,17 +461,18 @@ public class XSqlProcedureController {
 	 *            Die XSqlProcedureResults, welche die ausgeführten Prozeduren geliefert haben.
 	 * @param connection
 	 *            Die Verbindung zur Datenbank.
-	 * @param sb
-	 *            Ein StringBuffer, welcher das Ausführen der Check-Prozeduren loggt.
+	 * @param trace
+	 *            Der SqlTrace, welcher das Ausführen der Check-Prozeduren loggt.
 	 */
 	@Deprecated
-	private void checkFollowUpProcedures(List<XTable> inputTables, List<XSqlProcedureResult> xsqlResults, StringBuffer sb, Connection connection) {
-		checkFollowUpProcedures(inputTables, xsqlResults, sb, connection, null);
+	private void checkFollowUpProcedures(List<XTable> inputTables, List<XSqlProcedureResult> xsqlResults, SqlTrace trace, Connection connection) {
+		checkFollowUpProcedures(inputTables, xsqlResults, trace, connection, null);
 	}
 
 	/**
-	 * Findet anhand der übergebenen Liste an XTables und über einen Aufruf der xtcasUserPrivilege-Tabelle heraus, welche Check-Prozeduren für die gerade
-	 * ausgeführten XProzeduren durchgeführt werden müssen. In dieser Methode wird noch kein Commit an die Datenbank gesendet.
+	 * Findet anhand der übergebenen Liste an XTables und der TransactionChecker der xtcasUserPrivilege-Tabelle heraus, welche Check-Prozeduren für die gerade
+	 * ausgeführten XProzeduren durchgeführt werden müssen. Die TransactionChecker kommen aus dem Cache des {@link SecurityService}. In dieser Methode wird
+	 * noch kein Commit an die Datenbank gesendet.
 	 *
 	 * @param inputTables
 	 *            Die Original-Anfrage, welche an das CAS gesendet wurde.
@@ -420,43 +480,29 @@ public class XSqlProcedureController {
 	 *            Die XSqlProcedureResults, welche die ausgeführten Prozeduren geliefert haben.
 	 * @param connection
 	 *            Die Verbindung zur Datenbank.
-	 * @param sb
-	 *            Ein StringBuffer, welcher das Ausführen der Check-Prozeduren loggt.
+	 * @param trace
+	 *            Der SqlTrace, welcher das Ausführen der Check-Prozeduren loggt.
 	 * @param inputTablesWithResults
 	 *            Eine Map, in welcher die InputTables und deren SqlProcedureResults gespeichert werden. Wird zum Versenden von Nachrichten über den
 	 *            QueueService später benötigt.
 	 * @throws RuntimeException
 	 *             "msg.PrivilegeError"
 	 */
-	private void checkFollowUpProcedures(List<XTable> inputTables, List<XSqlProcedureResult> xsqlResults, StringBuffer sb, Connection connection,
+	private void checkFollowUpProcedures(List<XTable> inputTables, List<XSqlProcedureResult> xsqlResults, SqlTrace trace, Connection connection,
 			Map<Table, List<SqlProcedureResult>> inputTablesWithResults) {
-		// Die nötigen Check-Prozeduren aus der xtcasUserPrivilege-Tabelle auslesen.
-		Table privilegeRequest = new Table();
-		privilegeRequest.setName("xtcasUserPrivilege");
-		privilegeRequest.addColumn(new Column("KeyText", DataType.STRING));
-		privilegeRequest.addColumn(new Column("TransactionChecker", DataType.STRING));
-
-		List<Row> inputRows = new ArrayList<>(); // ToDo - was passiert mit inputRows?
-		for (XTable xTable : inputTables) {
-			Row requestParam = new Row();
-			privilegeRequest.getRows().add(requestParam);
-			requestParam.addValue(new Value(xTable.getTable().getName(), null));
-			requestParam.addValue(null);
-
-			inputRows.add(requestParam);
-		}
 		try {
 			customLogger.logInfo("Checking for follow.up procedures...");
-			Table checksPerPrivilege = securityService.unsecurelyGetIndexView(privilegeRequest);
+			// Die nötigen Check-Prozeduren der xtcasUserPrivilege-Tabelle.
+			List<Row> checksPerPrivilege = securityService.getTransactionCheckers(tableNames(inputTables));
 
 			// Wir müssen ja eigentlich einen Eintrag in der Datenbank dazu haben, sonst hätten wir sie bisher nicht ausführen können.
-			if (checksPerPrivilege.getRows().isEmpty()) {
+			if (checksPerPrivilege.isEmpty()) {
 				throw new RuntimeException("msg.PrivilegeError");
 			}
 
 			// Neue Prozedur-Aufrufe für alle gefundenen TransactionChecker zusammenbauen.
 			List<XTable> checksXtables = new ArrayList<>();
-			for (Row privilegeCheck : checksPerPrivilege.getRows()) {
+			for (Row privilegeCheck : checksPerPrivilege) {
 				if (privilegeCheck.getValues().size() >= 2 && privilegeCheck.getValues().get(1) != null) {
 					String dependencyTableName = privilegeCheck.getValues().get(0).getStringValue();
 					String transactionChecker = privilegeCheck.getValues().get(1).getStringValue();
@@ -502,7 +548,7 @@ public class XSqlProcedureController {
 
 				}
 			}
-			processXProcedures(checksXtables, xsqlResults, sb, connection, inputTablesWithResults);
+			processXProcedures(checksXtables, xsqlResults, trace, connection, inputTablesWithResults);
 		} catch (Exception e) {
 			throw new RuntimeException("Error while trying to find follow up procedures.", e);
 		}
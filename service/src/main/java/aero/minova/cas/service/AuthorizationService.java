@@ -1,5 +1,6 @@
 package aero.minova.cas.service;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -9,6 +10,7 @@ import org.springframework.dao.InvalidDataAccessResourceUsageException;
 import org.springframework.stereotype.Service;
 
 import aero.minova.cas.CustomLogger;
+import aero.minova.cas.cache.AuthenticationCache;
 import aero.minova.cas.service.model.Authorities;
 import aero.minova.cas.service.model.LuUserPrivilegeUserGroup;
 import aero.minova.cas.service.model.UserGroup;
@@ -44,6 +46,12 @@ public class AuthorizationService {
 	@Autowired
 	protected CustomLogger logger;
 
+	@Autowired(required = false)
+	AuthenticationCache authenticationCache;
+
+	@Autowired
+	SecurityService securityService;
+
 	/**
 	 * Erstellt die Insert/Update/Read/Delete Prozedur-Berechtigungen und die Index-View
 	 * 
@@ -97,7 +105,9 @@ public class AuthorizationService {
 	private UserPrivilege createUserPrivilege(String privilegeName) {
 		UserPrivilege privilege = new UserPrivilege();
 		privilege.setKeyText(privilegeName);
-		return userPrivilegeRepository.save(privilege);
+		privilege = userPrivilegeRepository.save(privilege);
+		privilegesChanged();
+		return privilege;
 	}
 
 	/**
@@ -154,6 +164,11 @@ public class AuthorizationService {
 		user.setPassword(encryptedPassword);
 		user = usersRepository.save(user);
 
+		// Das alte Passwort darf ab sofort nicht mehr aus dem Cache akzeptiert werden.
+		if (authenticationCache != null) {
+			authenticationCache.invalidate(username);
+		}
+
 		return user;
 	}
 
@@ -175,10 +190,14 @@ public class AuthorizationService {
 		for (String newToken : newTokens) {
 			if (!oldTokens.contains(newToken)) {
 				usergroup.setSecurityToken(usergroup.getSecurityToken() + "#" + newToken);
+				// Ändert das Merkmal, an dem andere CAS-Knoten die Änderung erkennen (siehe PrivilegeTokenTable).
+				usergroup.setLastDate(LocalDateTime.now());
 			}
 		}
 
-		return userGroupRepository.save(usergroup);
+		usergroup = userGroupRepository.save(usergroup);
+		privilegesChanged();
+		return usergroup;
 	}
 
 	private UserGroup createUserGroup(String keyText) {
@@ -201,6 +220,7 @@ public class AuthorizationService {
 			authority.setUsername(username);
 			authority.setAuthority(authorityName);
 			authority = authoritiesRepository.save(authority);
+			privilegesChanged();
 			return authority;
 		});
 	}
@@ -218,7 +238,16 @@ public class AuthorizationService {
 					lu.setUserGroup(userGroup);
 					lu.setUserPrivilege(priv);
 					lu = luUserPrivilegeUserGroupRepository.save(lu);
+					privilegesChanged();
 					return lu;
 				});
 	}
+
+	/**
+	 * Nach Änderungen an Gruppen, Authorities oder Privilegien dürfen keine gecachten Berechtigungen mehr verwendet werden, sonst erhalten gerade berechtigte
+	 * Benutzer bis zum Ablauf des Caches weiterhin msg.PrivilegeError. Dabei wird auch die xtcasPrivilegeToken zum Neuaufbau markiert.
+	 */
+	private void privilegesChanged() {
+		securityService.invalidatePrivilegeCache();
+	}
 }
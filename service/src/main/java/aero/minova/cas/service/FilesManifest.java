@@ -0,0 +1,141 @@
+package aero.minova.cas.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Merkt sich Größe, Änderungszeitpunkt und Hash von Dateien oder Ordnern über einen Neustart des CAS hinweg. Damit werden beim Start nur geänderte Dateien
+ * neu gehashed und nur geänderte Ordner neu gezipped.
+ * <p>
+ * Die Datei enthält eine Zeile pro Eintrag mit Pfad, Größe, Änderungszeitpunkt in Millisekunden und Hash, getrennt durch Tabulatoren. Beim Speichern werden
+ * nur die Einträge geschrieben, welche seit dem Laden abgefragt oder gesetzt wurden, gelöschte Dateien verschwinden so aus dem Manifest.
+ */
+public class FilesManifest {
+
+	/**
+	 * Der Stand einer Datei oder eines Ordners beim letzten Start.
+	 */
+	public static final class Entry {
+		private final long size;
+		private final long lastModified;
+		private final String hash;
+
+		public Entry(long size, long lastModified, String hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public String getHash() {
+			return hash;
+		}
+	}
+
+	private final Path file;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+	private FilesManifest(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Liest das Manifest. Fehlt die Datei oder ist sie nicht lesbar, ist das Manifest leer und es wird alles neu erzeugt.
+	 *
+	 * @param file
+	 *            Die Datei des Manifests.
+	 * @return Das Manifest.
+	 */
+	public static FilesManifest load(Path file) {
+		final FilesManifest manifest = new FilesManifest(file);
+		try {
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				final String[] columns = line.split("\t");
+				if (columns.length == 4) {
+					manifest.entries.put(columns[0], new Entry(Long.parseLong(columns[1]), Long.parseLong(columns[2]), columns[3]));
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// Erster Start, es wird alles neu erzeugt.
+		} catch (IOException | NumberFormatException e) {
+			manifest.entries.clear();
+		}
+		return manifest;
+	}
+
+	/**
+	 * Prüft, ob sich eine Datei seit dem letzten Start verändert hat.
+	 *
+	 * @param path
+	 *            Der relative Pfad der Datei.
+	 * @param size
+	 *            Die aktuelle Größe.
+	 * @param lastModified
+	 *            Der aktuelle Änderungszeitpunkt in Millisekunden.
+	 * @param hash
+	 *            Der erwartete Hash oder null, falls nur Größe und Änderungszeitpunkt verglichen werden sollen.
+	 * @return true, falls der Eintrag unverändert ist. Er bleibt dann beim Speichern erhalten.
+	 */
+	public boolean isUnchanged(String path, long size, long lastModified, String hash) {
+		final Entry entry = entries.get(path);
+		if (entry != null && entry.size == size && entry.lastModified == lastModified && (hash == null || hash.equals(entry.hash))) {
+			used.add(path);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Setzt den neuen Stand einer Datei.
+	 */
+	public void put(String path, Entry entry) {
+		entries.put(path, entry);
+		used.add(path);
+	}
+
+	/**
+	 * @return Der gespeicherte Stand oder null.
+	 */
+	public Entry get(String path) {
+		return entries.get(path);
+	}
+
+	/**
+	 * Schreibt alle verwendeten Einträge sortiert in die Datei. Die Datei wird erst am Ende ersetzt, bei einem Abbruch bleibt das alte Manifest erhalten.
+	 *
+	 * @throws IOException
+	 *             Falls die Datei nicht geschrieben werden kann.
+	 */
+	public void save() throws IOException {
+		final Map<String, Entry> sorted = new TreeMap<>();
+		for (String path : used) {
+			sorted.put(path, entries.get(path));
+		}
+		Files.createDirectories(file.getParent());
+		final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Entry> e : sorted.entrySet()) {
+				writer.write(e.getKey() + "\t" + e.getValue().size + "\t" + e.getValue().lastModified + "\t" + e.getValue().hash);
+				writer.newLine();
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+}
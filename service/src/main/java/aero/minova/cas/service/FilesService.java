@@ -4,17 +4,22 @@ import static aero.minova.cas.resources.ResourceFileSystemProvider.FILE_SYSTEM_P
 import static java.nio.file.Files.isDirectory;
 import static java.util.Arrays.asList;
 
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -224,7 +229,7 @@ public class FilesService {
 		ZipEntry ze = null;
 		// Jede Datei wird einzeln zu dem ZIP hinzugefügt.
 		FileOutputStream fos = new FileOutputStream(zipFile);
-		try (ZipOutputStream zos = new ZipOutputStream(fos);) {
+		try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(fos, 65536));) {
 
 			for (Path filePath : fileList) {
 
@@ -239,20 +244,11 @@ public class FilesService {
 					ze.setTime(0);
 					zos.putNextEntry(ze);
 
-					// Jeder Eintrag wird nacheinander in die ZIP Datei geschrieben mithilfe eines
-					// Buffers.
-					FileInputStream fis = new FileInputStream(filePath.toFile());
-
-					int len;
-					byte[] buffer = new byte[1024];
-
-					try (BufferedInputStream entryStream = new BufferedInputStream(fis, 2048)) {
-						while ((len = entryStream.read(buffer, 0, 1024)) != -1) {
-							zos.write(buffer, 0, len);
-						}
+					// Jeder Eintrag wird nacheinander in die ZIP Datei geschrieben.
+					try {
+						Files.copy(filePath, zos);
 					} finally {
 						zos.closeEntry();
-						fis.close();
 					}
 				}
 			}
@@ -270,6 +266,44 @@ public class FilesService {
 		}
 	}
 
+	/**
+	 * Berechnet den MD5-Hash einer Datei. Die Datei wird dabei gestreamt und nicht vollständig in den Speicher geladen.
+	 *
+	 * @param file
+	 *            Die Datei.
+	 * @return Der Hash als Hex-String, so wie er in den MD5-Dateien steht.
+	 * @throws IOException
+	 *             Falls die Datei nicht gelesen werden kann.
+	 */
+	public String md5(Path file) throws IOException {
+		final MessageDigest md = newMd5();
+		final byte[] buffer = new byte[65536];
+		try (InputStream in = Files.newInputStream(file)) {
+			for (int len = in.read(buffer); len != -1; len = in.read(buffer)) {
+				md.update(buffer, 0, len);
+			}
+		}
+		return toHex(md);
+	}
+
+	/**
+	 * @return Ein neuer MD5-Digest.
+	 */
+	public static MessageDigest newMd5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("msg.MD5Error");
+		}
+	}
+
+	/**
+	 * @return Der Hash des Digests als Hex-String.
+	 */
+	public static String toHex(MessageDigest md) {
+		return String.format("%0" + (md.getDigestLength() * 2) + "x", new BigInteger(1, md.digest()));
+	}
+
 	/**
 	 * Methode zum Entpacken einer Datei.
 	 *
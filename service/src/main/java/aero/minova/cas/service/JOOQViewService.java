@@ -26,7 +26,8 @@ public class JOOQViewService implements ViewServiceInterface {
 	private final CustomLogger customLogger;
 
 	@Override
-	public String prepareViewString(Table params, boolean autoLike, int maxRows, boolean isCounting, List<Row> authorities) throws IllegalArgumentException {
+	public String prepareViewString(Table params, boolean autoLike, int maxRows, boolean isCounting, List<Row> authorities, boolean bindRowLevelSecurity)
+			throws IllegalArgumentException {
 
 		if (params.getName() == null || params.getName().trim().length() == 0) {
 			throw new IllegalArgumentException("msg.ViewNullName");
@@ -55,12 +56,28 @@ public class JOOQViewService implements ViewServiceInterface {
 
 		String sqlString = query.getSQL();
 
-		// Die RowLevelSecurity muss schon als "ausgefüllter" String angehängt werden (keine "?"), da die Werte nicht in der Tabelle stehen
-		sqlString += SecurityService.rowLevelSecurity(condition.equals(DSL.noCondition()), authorities);
+		// Die RowLevelSecurity wird als String angehängt. Die SecurityTokens stehen nicht in der Tabelle, bei bindRowLevelSecurity werden sie deshalb erst
+		// nach den Werten der Where-Klausel gebunden.
+		sqlString += SecurityService.rowLevelSecurity(condition.equals(DSL.noCondition()), authorities, bindRowLevelSecurity);
 
 		return sqlString;
 	}
 
+	@Override
+	public String preparePagedViewString(Table params, boolean autoLike, int limit, int page, List<Row> authorities) {
+		if (limit <= 0 || page <= 0) {
+			throw new IllegalArgumentException("msg.LimitError");
+		}
+		// Limit und Offset werden erst nach der RowLevelSecurity angehängt, da diese als String an die Abfrage gehängt wird.
+		final StringBuilder sb = new StringBuilder(prepareViewString(params, autoLike, IF_LESS_THAN_ZERO_THEN_MAX_ROWS, false, authorities, true));
+		final String orderKey = ViewServiceInterface.findOrderKey(params);
+		if (orderKey != null) {
+			sb.append("\r\norder by ").append(orderKey);
+		}
+		sb.append("\r\nlimit ").append(limit).append(" offset ").append((long) (page - 1) * limit);
+		return sb.toString();
+	}
+
 	@Override
 	public String prepareWhereClause(Table params, boolean autoLike) {
 		return prepareWhereClauseGetCondition(params, autoLike).toString();
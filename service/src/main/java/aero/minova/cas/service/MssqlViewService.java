@@ -32,7 +32,8 @@ public class MssqlViewService implements ViewServiceInterface {
 	}
 
 	@Override
-	public String prepareViewString(Table params, boolean autoLike, int maxRows, boolean count, List<Row> authorities) throws IllegalArgumentException {
+	public String prepareViewString(Table params, boolean autoLike, int maxRows, boolean count, List<Row> authorities, boolean bindRowLevelSecurity)
+			throws IllegalArgumentException {
 		final StringBuilder sb = new StringBuilder();
 		if (params.getName() == null || params.getName().trim().length() == 0) {
 			throw new IllegalArgumentException("msg.ViewNullName");
@@ -70,12 +71,25 @@ public class MssqlViewService implements ViewServiceInterface {
 			}
 		}
 
-		final String onlyAuthorizedRows = SecurityService.rowLevelSecurity(isFirstWhereClause, authorities);
+		final String onlyAuthorizedRows = SecurityService.rowLevelSecurity(isFirstWhereClause, authorities, bindRowLevelSecurity);
 		sb.append(onlyAuthorizedRows);
 
 		return sb.toString();
 	}
 
+	@Override
+	public String preparePagedViewString(Table params, boolean autoLike, int limit, int page, List<Row> authorities) {
+		if (limit <= 0 || page <= 0) {
+			throw new IllegalArgumentException("msg.LimitError");
+		}
+		final StringBuilder sb = new StringBuilder(prepareViewString(params, autoLike, IF_LESS_THAN_ZERO_THEN_MAX_ROWS, false, authorities, true));
+		// OFFSET/FETCH erfordert im SQL Server immer ein ORDER BY. Ohne KeyLong wird die Reihenfolge der Datenbank beibehalten.
+		final String orderKey = ViewServiceInterface.findOrderKey(params);
+		sb.append("\r\norder by ").append(orderKey == null ? "(select null)" : orderKey);
+		sb.append("\r\noffset ").append((long) (page - 1) * limit).append(" rows fetch next ").append(limit).append(" rows only");
+		return sb.toString();
+	}
+
 	@Override
 	public String prepareWhereClause(Table params, boolean autoLike) {
 		final StringBuilder where = new StringBuilder();
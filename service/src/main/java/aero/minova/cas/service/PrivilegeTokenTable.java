@@ -0,0 +1,327 @@
+package aero.minova.cas.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.sql.SystemDatabase;
+
+/**
+ * Pflegt die xtcasPrivilegeToken. Die xvcasUserSecurity enthält pro Gruppe die SecurityTokens als einen mit '#' getrennten String. Um die Rechte eines Users
+ * zu finden, musste die View deshalb mit LIKE '%#Token' durchsucht werden, was keinen Index verwenden kann. Die xtcasPrivilegeToken enthält dieselben Daten
+ * mit einer Zeile pro Privileg und SecurityToken und kann mit = bzw. IN über den Index UQ_xtcasPrivilegeToken abgefragt werden.
+ * <p>
+ * Die Tabelle wird nicht während einer Anfrage, sondern von {@link #refreshIfNeeded()} alle aero.minova.security.token.refresh Sekunden über eine eigene
+ * Connection aktualisiert. Neu aufgebaut wird sie, sobald {@link #markStale()} aufgerufen wurde (siehe {@link SecurityService#invalidatePrivilegeCache()}).
+ * Damit auch Änderungen direkt in der Datenbank oder von anderen CAS-Knoten ankommen, wird alle aero.minova.security.cache.ttl Sekunden ohne Sperre ein
+ * Änderungsmerkmal der Gruppen, Privilegien und Zuordnungen gelesen (siehe {@link #readChangeMarker(Connection)}). Nur wenn es sich geändert hat, wird
+ * abgeglichen. Dabei werden nur die geänderten Zeilen geschrieben. Bis dahin liest {@link SecurityService} wie bisher die xvcasUserSecurity. Ist der Cache
+ * abgeschaltet (0), wird die Tabelle nie verwendet.
+ * <p>
+ * Fehlen die Tabelle oder die View (z.B. vor dem Setup), wird das einmal geloggt und erst nach dem nächsten {@link #markStale()} oder nach
+ * aero.minova.security.cache.ttl Sekunden erneut geprüft. Schlägt der Abgleich fehl, wird der Abstand bis zum nächsten Versuch verdoppelt.
+ * <p>
+ * Laufen mehrere CAS-Knoten an derselben Datenbank, wird die Tabelle während des Abgleichs gesperrt (MSSQL: TABLOCKX, Postgres: LOCK TABLE), sodass die
+ * Knoten nacheinander abgleichen. Der zweite Knoten findet dann keine Änderungen mehr.
+ */
+@Component
+public class PrivilegeTokenTable {
+
+	@Autowired
+	CustomLogger logger;
+
+	@Autowired
+	SystemDatabase systemDatabase;
+
+	@Value("${aero.minova.security.cache.ttl:60}")
+	long refreshSeconds;
+
+	// Wie oft (in Sekunden) geprüft wird, ob die Tabelle neu aufgebaut werden muss.
+	@Value("${aero.minova.security.token.refresh:5}")
+	long checkSeconds;
+
+	private volatile boolean stale = true;
+	private volatile boolean available = false;
+	volatile long lastRefresh = 0;
+	// Nach Fehlern oder fehlenden Tabellen wird erst ab diesem Zeitpunkt wieder geprüft.
+	private volatile long retryAt = 0;
+	private int failures = 0;
+	private boolean tablesPresent = false;
+	private boolean missingLogged = false;
+	private String changeMarker;
+
+	/**
+	 * Ein Eintrag der Tabelle. RowLevelSecurity ist nur gesetzt, wenn alle Gruppen mit dem Token das Privileg nur mit RowLevelSecurity haben, so wie es
+	 * {@link SecurityService#extractUserTokens(List)} auswertet.
+	 */
+	private static final class Entry {
+		private final String privilegeKeyText;
+		private final String securityToken;
+		private boolean rowLevelSecurity;
+
+		private Entry(String privilegeKeyText, String securityToken, boolean rowLevelSecurity) {
+			this.privilegeKeyText = privilegeKeyText;
+			this.securityToken = securityToken;
+			this.rowLevelSecurity = rowLevelSecurity;
+		}
+	}
+
+	/**
+	 * @return true, wenn die Tabelle verwendet werden soll. Mit aero.minova.security.cache.ttl=0 wird immer die xvcasUserSecurity gelesen.
+	 */
+	public boolean isEnabled() {
+		return refreshSeconds > 0;
+	}
+
+	/**
+	 * Merkt vor, dass sich User-Gruppen oder Privilegien geändert haben. Bis zum nächsten Abgleich wird die Tabelle nicht mehr verwendet.
+	 */
+	public void markStale() {
+		stale = true;
+		// Z.B. nach dem Setup sind die Tabellen eventuell neu angelegt.
+		retryAt = 0;
+	}
+
+	/**
+	 * Prüft, ob die Tabelle aktuell ist. Baut sie nicht selbst auf, damit auf dem Thread einer Anfrage nicht geschrieben wird.
+	 *
+	 * @return true, wenn die Tabelle aktuell ist und abgefragt werden kann. Bei false muss die xvcasUserSecurity gelesen werden.
+	 */
+	public boolean isUsable() {
+		// Bleibt der Abgleich aus, wird nach zwei ttl wieder die View gelesen.
+		return isEnabled() && available && !stale && System.currentTimeMillis() - lastRefresh <= refreshSeconds * 2000;
+	}
+
+	/**
+	 * Baut die Tabelle neu auf, falls Änderungen vorgemerkt sind. Liegt der letzte Abgleich länger als aero.minova.security.cache.ttl Sekunden zurück, wird
+	 * nur abgeglichen, wenn sich das Änderungsmerkmal geändert hat.
+	 */
+	@Scheduled(fixedDelayString = "${aero.minova.security.token.refresh:5}", timeUnit = TimeUnit.SECONDS)
+	public void refreshIfNeeded() {
+		final long now = System.currentTimeMillis();
+		if (!isEnabled() || now < retryAt) {
+			return;
+		}
+		if (stale) {
+			update(true);
+		} else if (now - lastRefresh > refreshSeconds * 1000) {
+			update(false);
+		}
+	}
+
+	/**
+	 * Baut die Tabelle sofort neu auf, z.B. im Setup.
+	 *
+	 * @return true, wenn die Tabelle aktuell ist.
+	 */
+	public boolean refreshNow() {
+		return update(true);
+	}
+
+	private synchronized boolean update(boolean force) {
+		// Vor dem Lesen zurücksetzen, damit eine Änderung während des Aufbaus einen weiteren Aufbau auslöst.
+		stale = false;
+		if (refresh(force)) {
+			available = true;
+			lastRefresh = System.currentTimeMillis();
+			failures = 0;
+		} else {
+			// Bis dahin wird die View gelesen.
+			stale = true;
+			final long maxDelay = Math.max(refreshSeconds, checkSeconds) * 1000;
+			if (tablesPresent) {
+				failures++;
+				retryAt = System.currentTimeMillis() + Math.min((checkSeconds * 1000) << Math.min(failures, 16), maxDelay);
+			} else {
+				retryAt = System.currentTimeMillis() + maxDelay;
+			}
+		}
+		return !stale;
+	}
+
+	/**
+	 * Gleicht die xtcasPrivilegeToken mit der xvcasUserSecurity ab.
+	 *
+	 * @param force
+	 *            Bei false wird nur abgeglichen, wenn sich das Änderungsmerkmal seit dem letzten Abgleich geändert hat.
+	 * @return false, falls die Tabelle nicht aktualisiert werden konnte, z.B. weil sie noch nicht angelegt ist.
+	 */
+	boolean refresh(boolean force) {
+		// Eine eigene Connection, damit der Commit keine geteilte Connection (siehe SystemDatabase#shareConnection) betrifft.
+		final Connection connection = systemDatabase.getDedicatedConnection();
+		try {
+			if (!areTablesPresent(connection)) {
+				return false;
+			}
+			// Vor dem Abgleich lesen: Eine Änderung währenddessen führt so beim nächsten Mal zu einem weiteren Abgleich.
+			final String marker = readChangeMarker(connection);
+			if (!force && available && marker.equals(changeMarker)) {
+				return true;
+			}
+			lockTable(connection);
+			final Map<String, Entry> target = new LinkedHashMap<>();
+			try (PreparedStatement select = connection.prepareStatement("select PrivilegeKeyText, SecurityToken, RowLevelSecurity from xvcasUserSecurity");
+					ResultSet resultSet = select.executeQuery()) {
+				while (resultSet.next()) {
+					final String privilegeKeyText = resultSet.getString(1);
+					final String securityTokens = resultSet.getString(2);
+					final boolean rowLevelSecurity = resultSet.getBoolean(3);
+					if (privilegeKeyText == null || securityTokens == null) {
+						continue;
+					}
+					for (String securityToken : securityTokens.split("#")) {
+						if (securityToken.isBlank()) {
+							continue;
+						}
+						// Der Index ist bei MSSQL meist case-insensitive, deshalb darf jede Kombination nur einmal vorkommen.
+						final Entry entry = target.computeIfAbsent(key(privilegeKeyText, securityToken),
+								k -> new Entry(privilegeKeyText, securityToken, rowLevelSecurity));
+						entry.rowLevelSecurity &= rowLevelSecurity;
+					}
+				}
+			}
+
+			final Map<String, Integer> existingKeys = new HashMap<>();
+			final List<Integer> obsolete = new ArrayList<>();
+			try (PreparedStatement select = connection
+					.prepareStatement("select KeyLong, PrivilegeKeyText, SecurityToken, RowLevelSecurity from xtcasPrivilegeToken");
+					ResultSet resultSet = select.executeQuery()) {
+				while (resultSet.next()) {
+					final String key = key(resultSet.getString(2), resultSet.getString(3));
+					final Entry entry = target.get(key);
+					if (entry != null && entry.privilegeKeyText.equals(resultSet.getString(2)) && entry.securityToken.equals(resultSet.getString(3))
+							&& entry.rowLevelSecurity == resultSet.getBoolean(4) && !existingKeys.containsKey(key)) {
+						existingKeys.put(key, resultSet.getInt(1));
+					} else {
+						obsolete.add(resultSet.getInt(1));
+					}
+				}
+			}
+
+			if (!obsolete.isEmpty()) {
+				try (PreparedStatement delete = connection.prepareStatement("delete from xtcasPrivilegeToken where KeyLong = ?")) {
+					for (Integer keyLong : obsolete) {
+						delete.setInt(1, keyLong);
+						delete.addBatch();
+					}
+					delete.executeBatch();
+				}
+			}
+			int inserted = 0;
+			try (PreparedStatement insert = connection.prepareStatement(
+					"insert into xtcasPrivilegeToken (PrivilegeKeyText, SecurityToken, RowLevelSecurity, LastAction) values (?, ?, ?, 1)")) {
+				for (Map.Entry<String, Entry> e : target.entrySet()) {
+					if (!existingKeys.containsKey(e.getKey())) {
+						insert.setString(1, e.getValue().privilegeKeyText);
+						insert.setString(2, e.getValue().securityToken);
+						insert.setBoolean(3, e.getValue().rowLevelSecurity);
+						insert.addBatch();
+						inserted++;
+					}
+				}
+				if (inserted > 0) {
+					insert.executeBatch();
+				}
+			}
+			connection.commit();
+			changeMarker = marker;
+			if (!obsolete.isEmpty() || inserted > 0) {
+				logger.logPrivilege("Privilege tokens refreshed: " + target.size() + " entries, " + inserted + " inserted, " + obsolete.size() + " deleted");
+			}
+			return true;
+		} catch (SQLException e) {
+			rollback(connection);
+			if (failures == 0) {
+				logger.logError("Could not refresh xtcasPrivilegeToken, falling back to xvcasUserSecurity.", e);
+			} else {
+				logger.logPrivilege("Refresh of xtcasPrivilegeToken failed again: " + e.getMessage());
+			}
+			return false;
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+
+	/**
+	 * Prüft über die Metadaten, ob die xtcasPrivilegeToken und die xvcasUserSecurity vorhanden sind. Wurden sie einmal gefunden, wird nicht mehr geprüft.
+	 * Der SecurityService kann dafür nicht verwendet werden, da er selbst diese Klasse verwendet.
+	 */
+	private boolean areTablesPresent(Connection connection) throws SQLException {
+		if (tablesPresent) {
+			return true;
+		}
+		for (String tableName : List.of("xtcasprivilegetoken", "xvcasusersecurity")) {
+			try (ResultSet tables = connection.getMetaData().getTables(null, null, tableName, null)) {
+				if (!tables.next()) {
+					if (!missingLogged) {
+						logger.logPrivilege(tableName + " not found, privileges are read from xvcasUserSecurity until it is set up.");
+						missingLogged = true;
+					}
+					return false;
+				}
+			}
+		}
+		tablesPresent = true;
+		missingLogged = false;
+		return true;
+	}
+
+	/**
+	 * Liest ohne Sperre Anzahl, letzte Änderung und Summe der LastAction der Tabellen hinter der xvcasUserSecurity. Jede Änderung über
+	 * {@link AuthorizationService} oder die Prozeduren setzt LastDate bzw. LastAction und ändert so das Merkmal.
+	 */
+	String readChangeMarker(Connection connection) throws SQLException {
+		final StringBuilder marker = new StringBuilder();
+		for (String tableName : List.of("xtcasUserPrivilege", "xtcasUserGroup", "xtcasLuUserPrivilegeUserGroup")) {
+			try (PreparedStatement select = connection.prepareStatement("select count(1), max(LastDate), sum(LastAction) from " + tableName);
+					ResultSet resultSet = select.executeQuery()) {
+				resultSet.next();
+				marker.append(resultSet.getLong(1)).append('/').append(resultSet.getTimestamp(2)).append('/').append(resultSet.getLong(3)).append(';');
+			}
+		}
+		return marker.toString();
+	}
+
+	/**
+	 * Sperrt die Tabelle bis zum Commit, damit mehrere CAS-Knoten nicht gleichzeitig abgleichen. H2 sperrt die geänderten Zeilen ohnehin.
+	 */
+	private void lockTable(Connection connection) throws SQLException {
+		final String lock;
+		if (systemDatabase.isSQLDatabase()) {
+			lock = "select count(1) from xtcasPrivilegeToken with (tablockx, holdlock)";
+		} else if (systemDatabase.isPostgresDatabase()) {
+			lock = "lock table xtcasPrivilegeToken in exclusive mode";
+		} else {
+			return;
+		}
+		try (PreparedStatement statement = connection.prepareStatement(lock)) {
+			statement.execute();
+		}
+	}
+
+	private static String key(String privilegeKeyText, String securityToken) {
+		return privilegeKeyText.toLowerCase(Locale.ROOT) + "#" + securityToken.toLowerCase(Locale.ROOT);
+	}
+
+	private void rollback(Connection connection) {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			logger.logError("Connection '" + connection + "' could not be rolled back: ", e);
+		}
+	}
+}
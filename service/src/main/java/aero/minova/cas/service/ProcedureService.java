@@ -31,8 +31,12 @@ import aero.minova.cas.api.domain.SqlProcedureResult;
 import aero.minova.cas.api.domain.Table;
 import aero.minova.cas.api.domain.TableMetaData;
 import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.service.SecurityTokenDictionary.TokenSet;
+import aero.minova.cas.sql.DeadlockRetry;
 import aero.minova.cas.sql.ExecuteStrategy;
+import aero.minova.cas.sql.SqlTrace;
 import aero.minova.cas.sql.SystemDatabase;
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.val;
@@ -56,9 +60,24 @@ public class ProcedureService {
 	@org.springframework.beans.factory.annotation.Value("${aero.minova.database.maxresultsetcount:512}")
 	Integer maxResultSetCount;
 
+	// Schaltet bei MSSQL während der Prozedur-Aufrufe NOCOUNT ein, damit der Treiber nicht jeden Zeilenzähler einzeln abholen muss.
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.database.nocount:true}")
+	boolean useNocount;
+
 	@Autowired
 	SecurityService securityService;
 
+	@Autowired
+	DeadlockRetry deadlockRetry;
+
+	// NOCOUNT gibt es nur bei MSSQL, bei Postgres und H2 wird nichts gemacht.
+	boolean nocountSupported;
+
+	@PostConstruct
+	void init() {
+		nocountSupported = systemDatabase.isSQLDatabase();
+	}
+
 	/**
 	 * Speichert im SQL-Session-Context unter `casUser` den Nutzer, der die Abfrage tätigt.
 	 *
@@ -111,7 +130,7 @@ public class ProcedureService {
 
 	/**
 	 * Führt eine Prozedur mit den übergebenen Parametern aus. Falls die Prozedur Output-Parameter zurückgibt, werden diese auch im SqlProcedureResult
-	 * zurückgegeben.
+	 * zurückgegeben. Wird die Transaktion als Deadlock-Opfer abgebrochen, wird sie gemäß {@link ExecuteStrategy#DEADLOCK_TRY_AGAIN} wiederholt.
 	 *
 	 * @param inputTable
 	 *            Ausführungs-Parameter im Form einer Table
@@ -125,8 +144,28 @@ public class ProcedureService {
 	 *             Fehler bei der Ausführung
 	 */
 	public SqlProcedureResult processSqlProcedureRequest(Table inputTable, List<Row> privilegeRequest, boolean isSetup) throws Exception {
+		final SqlTrace trace = new SqlTrace();
+		try {
+			if (!getExecuteStrategies().contains(ExecuteStrategy.DEADLOCK_TRY_AGAIN)) {
+				return executeTransaction(inputTable, privilegeRequest, isSetup, trace);
+			}
+			return deadlockRetry.execute(inputTable.getName(), () -> {
+				trace.clear();
+				return executeTransaction(inputTable, privilegeRequest, isSetup, trace);
+			});
+		} catch (Exception e) {
+			// Erst hier, damit ein Deadlock, der erfolgreich wiederholt wird, nicht als Fehler geloggt wird.
+			customLogger.logError("Procedure could not be executed: " + trace, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Führt die Prozedur in einer eigenen Transaktion aus. Wird bei einem Deadlock über {@link DeadlockRetry} vollständig wiederholt. Der Fehler wird vom
+	 * Aufrufer geloggt, sobald feststeht, dass nicht mehr wiederholt wird.
+	 */
+	private SqlProcedureResult executeTransaction(Table inputTable, List<Row> privilegeRequest, boolean isSetup, SqlTrace trace) throws Exception {
 		SqlProcedureResult result = new SqlProcedureResult();
-		StringBuffer sb = new StringBuffer();
 		Connection connection = null;
 
 		try {
@@ -134,14 +173,14 @@ public class ProcedureService {
 			if (isSetup) {
 				connection.createStatement().execute("set ANSI_WARNINGS off");
 			}
-			result = calculateSqlProcedureResult(inputTable, privilegeRequest, connection, result, sb);
+			result = calculateSqlProcedureResult(inputTable, privilegeRequest, connection, result, trace);
 			connection.commit();
-			customLogger.logSql("Procedure successfully executed: " + sb);
+			customLogger.logSql("Procedure successfully executed: ", trace);
 			if (isSetup) {
 				connection.createStatement().execute("set ANSI_WARNINGS on");
 			}
 		} catch (Exception e) {
-			customLogger.logError("Procedure could not be executed: " + sb, e);
+			rollback(connection);
 			throw new ProcedureException(e);
 		} finally {
 			systemDatabase.closeConnection(connection);
@@ -149,6 +188,18 @@ public class ProcedureService {
 		return result;
 	}
 
+	private void rollback(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			// Bei Postgres ist die Transaktion nach einem Fehler abgebrochen und muss vor einer Wiederholung zurückgerollt werden.
+			connection.rollback();
+		} catch (SQLException e) {
+			customLogger.logError("Could not roll back procedure execution", e);
+		}
+	}
+
 	/**
 	 * Diese Methode ist NICHT geschützt. Aufrufer sind für die Sicherheit verantwortlich. Führt eine Prozedur mit den übergebenen Parametern aus. Falls die
 	 * Prozedur Output-Parameter zurückgibt, werden diese auch im SqlProcedureResult zurückgegeben. CHECKT KEINE EXTENSIONS!!!
@@ -199,6 +250,11 @@ public class ProcedureService {
 	/**
 	 * Führt eine SQL-Prozedur aus. Hier gibt es keinen Rollback oder Commit. Diese müssen selbst durchgeführt werden. Diese Methode ist public, weil diese von
 	 * Erweiterungen genutzt werden, um bei Fehlern in komplexeren Prozessen alle Änderungen in der Datenbank rückgängig zu machen.
+	 * <p>
+	 * Bei MSSQL wird NOCOUNT im selben Batch wie der Aufruf eingeschaltet (ExecuteStrategy.USE_NOCOUNT, abschaltbar über aero.minova.database.nocount),
+	 * siehe {@link #prepareNocountProcedureString(Table, Set)}.
+	 * <p>
+	 * Die Prozedur wird mit den Strategien aus {@link #getExecuteStrategies()} ausgeführt und liefert für jede Zeile ihren ReturnCode.
 	 *
 	 * @param inputTable
 	 *            Die Table mit allen Werten zum Verarbeiten der Prozedur.
@@ -208,21 +264,75 @@ public class ProcedureService {
 	 *            Die offene Connection zu der Datenbank, welche die Prozedur ausführen soll.
 	 * @param result
 	 *            Das SQL-Result, welches innerhalb der Methode verändert und dann returned wird.
-	 * @param sb
-	 *            Ein StringBuffer, welcher im Fehlerfall die Fehlermeldung bis zum endgültigen Throw als String aufnimmt.
+	 * @param trace
+	 *            Der SqlTrace, in welchem die Aufrufe und Parameter für das Log und die Fehlermeldung festgehalten werden.
 	 * @return result das veränderte SqlProcedureResult.
 	 * @throws SQLException
 	 *             Falls ein Fehler beim Ausführen der Prozedur auftritt.
 	 * @throws ProcedureException
 	 *             Falls generell ein Fehler geworfen wird, zum Beispiel beim Konvertieren der Typen.
 	 */
+	public SqlProcedureResult calculateSqlProcedureResult(Table inputTable, List<Row> privilegeRequest, final java.sql.Connection connection,
+			SqlProcedureResult result, SqlTrace trace) throws SQLException, ProcedureException {
+		return calculateSqlProcedureResult(inputTable, privilegeRequest, connection, result, trace, getExecuteStrategies());
+	}
+
+	/**
+	 * Wie {@link #calculateSqlProcedureResult(Table, List, Connection, SqlProcedureResult, SqlTrace)}, nur mit eigenen Strategien. Verlangen die Strategien
+	 * keinen ReturnCode (siehe {@link ExecuteStrategy#returnRequired(Set)}, z.B. {@link ExecuteStrategy#RETURN_CODE_IGNORE}), wird die Prozedur ohne '? ='
+	 * aufgerufen und es werden keine ReturnCodes eingetragen.
+	 *
+	 * @param executeStrategies
+	 *            Die Strategien, mit denen die Prozedur ausgeführt wird.
+	 */
+	public SqlProcedureResult calculateSqlProcedureResult(Table inputTable, List<Row> privilegeRequest, final java.sql.Connection connection,
+			SqlProcedureResult result, SqlTrace trace, Set<ExecuteStrategy> executeStrategies) throws SQLException, ProcedureException {
+		return executeProcedure(inputTable, privilegeRequest, connection, result, trace, executeStrategies);
+	}
+
+	/**
+	 * Wie {@link #calculateSqlProcedureResult(Table, List, Connection, SqlProcedureResult, SqlTrace)}. Der Trace wird erst am Ende an den StringBuffer
+	 * gehängt.
+	 */
+	@Deprecated
 	public SqlProcedureResult calculateSqlProcedureResult(Table inputTable, List<Row> privilegeRequest, final java.sql.Connection connection,
 			SqlProcedureResult result, StringBuffer sb) throws SQLException, ProcedureException {
-		List<String> userSecurityTokensToBeChecked = securityService.extractUserTokens(privilegeRequest);
+		final SqlTrace trace = new SqlTrace();
+		try {
+			return calculateSqlProcedureResult(inputTable, privilegeRequest, connection, result, trace);
+		} finally {
+			sb.append(trace);
+		}
+	}
+
+	/**
+	 * @return Die Strategien, mit denen die Prozeduren von data/procedure und data/x-procedure ausgeführt werden.
+	 */
+	public Set<ExecuteStrategy> getExecuteStrategies() {
+		final Set<ExecuteStrategy> executeStrategies = new HashSet<>();
+		executeStrategies.add(ExecuteStrategy.RETURN_CODE_IS_ERROR_IF_NOT_0);
+		if (useNocount) {
+			executeStrategies.add(ExecuteStrategy.USE_NOCOUNT);
+		}
+		if (deadlockRetry.isEnabled()) {
+			executeStrategies.add(ExecuteStrategy.DEADLOCK_TRY_AGAIN);
+		}
+		return executeStrategies;
+	}
+
+	/**
+	 * Führt die Prozedur mit den übergebenen Strategien aus. Siehe
+	 * {@link #calculateSqlProcedureResult(Table, List, Connection, SqlProcedureResult, SqlTrace)}.
+	 */
+	private SqlProcedureResult executeProcedure(Table inputTable, List<Row> privilegeRequest, final java.sql.Connection connection, SqlProcedureResult result,
+			SqlTrace trace, Set<ExecuteStrategy> executeStrategies) throws SQLException, ProcedureException {
+		TokenSet userSecurityTokensToBeChecked = securityService.getUserTokenSet(privilegeRequest);
 
 		result.setReturnCodes(new ArrayList<>());
 		result.setReturnCode(0);
-		val parameterOffset = 2;
+		final boolean returnRequired = ExecuteStrategy.returnRequired(executeStrategies);
+		// Ohne '? =' beginnen die Parameter bei 1.
+		val parameterOffset = returnRequired ? 2 : 1;
 		val resultSetOffset = 1;
 		TableMetaData inputMetaData = inputTable.getMetaData();
 		if (inputMetaData == null) {
@@ -247,18 +357,33 @@ public class ProcedureService {
 		} else {
 			limit = inputMetaData.getLimited();
 		}
-		final Set<ExecuteStrategy> executeStrategies = new HashSet<>();
-		executeStrategies.add(ExecuteStrategy.RETURN_CODE_IS_ERROR_IF_NOT_0);
-		final val procedureCall = prepareProcedureString(inputTable, executeStrategies);
-		sb.append(procedureCall);
+		final boolean hasOutputParameters = inputTable//
+				.getColumns()//
+				.stream()//
+				.anyMatch(c -> c.getOutputType() == OutputType.OUTPUT);
 		setUserContextFor(connection);
 
+		final String procedureCall = executeStrategies.contains(ExecuteStrategy.USE_NOCOUNT) && nocountSupported
+				? prepareNocountProcedureString(inputTable, executeStrategies)
+				: prepareProcedureString(inputTable, executeStrategies);
+		trace.statement(procedureCall);
+		final List<Boolean> outputColumnsMapping = inputTable//
+				.getColumns()//
+				.stream()//
+				.map(c -> c.getOutputType() == OutputType.OUTPUT)//
+				.toList();
+		final int securityTokenInInputColumn = hasOutputParameters && !userSecurityTokensToBeChecked.isUnrestricted()
+				? securityService.findSecurityTokenColumn(inputTable)
+				: -1;
+
 		// Jede Row ist eine Abfrage.
 		for (int j = 0; j < inputTable.getRows().size(); j++) {
 			SqlProcedureResult resultForThisRow = new SqlProcedureResult();
 			try (final var preparedStatement = connection.prepareCall(procedureCall)) {
-				fillCallableSqlProcedureStatement(preparedStatement, inputTable, parameterOffset, sb, j);
-				preparedStatement.registerOutParameter(1, Types.INTEGER);
+				fillCallableSqlProcedureStatement(preparedStatement, inputTable, parameterOffset, trace, j);
+				if (returnRequired) {
+					preparedStatement.registerOutParameter(1, Types.INTEGER);
+				}
 				preparedStatement.execute();
 				{ /*
 					 * Man würde hier erwarten, dass der Code wie in folgender Doku aussieht:
@@ -266,6 +391,7 @@ public class ProcedureService {
 					 * SQL-Prozedur sehr viele verschiedene Arten von Rückgabewerte, wie beispielsweise selects oder Warnungen, hat. Folgender Artikel umreist,
 					 * dass ganze ganz gut: https://blog.jooq.org/how-i-incorrectly-fetched-jdbc-resultsets-again/
 					 */
+					// Mit USE_NOCOUNT liefert MSSQL keine Zeilenzähler mehr, die Schleife ist dann meist sofort beendet.
 					int i = 0;
 					while (preparedStatement.getResultSet() == null) {
 						/*
@@ -325,7 +451,7 @@ public class ProcedureService {
 						int totalResults = 0;
 
 						int securityTokenInColumn = -1;
-						if (!userSecurityTokensToBeChecked.isEmpty()) {
+						if (!userSecurityTokensToBeChecked.isUnrestricted()) {
 							securityTokenInColumn = securityService.findSecurityTokenColumn(resultSet);
 						}
 						resultSet.setMetaData(new TableMetaData());
@@ -360,19 +486,10 @@ public class ProcedureService {
 					}
 				}
 
-				boolean hasOutputParameters = inputTable//
-						.getColumns()//
-						.stream()//
-						.anyMatch(c -> c.getOutputType() == OutputType.OUTPUT);
 				if (hasOutputParameters) {
 					val outputParameters = new Table();
 					outputParameters.setName(inputTable.getName());
 					resultForThisRow.setOutputParameters(outputParameters);
-					val outputColumnsMapping = inputTable//
-							.getColumns()//
-							.stream()//
-							.map(c -> c.getOutputType() == OutputType.OUTPUT)//
-							.toList();
 
 					val outputValues = new Row();
 					outputParameters.setColumns(inputTable.getColumns());
@@ -384,12 +501,8 @@ public class ProcedureService {
 									outputValues.addValue(inputTable.getRows().get(0).getValues().get(i));
 								}
 							});
-					int securityTokenInColumn = -1;
-					if (!userSecurityTokensToBeChecked.isEmpty()) {
-						securityTokenInColumn = securityService.findSecurityTokenColumn(inputTable);
-					}
 					Row resultRow = new Row();
-					if (securityService.isRowAccessValid(userSecurityTokensToBeChecked, outputValues, securityTokenInColumn)) {
+					if (securityService.isRowAccessValid(userSecurityTokensToBeChecked, outputValues, securityTokenInInputColumn)) {
 						resultRow = outputValues;
 					} else {
 						for (Value ignored : outputValues.getValues()) {
@@ -423,7 +536,9 @@ public class ProcedureService {
 				// Dies muss ausgelesen werden, nachdem die ResultSet ausgelesen wurde, da sonst diese nicht abrufbar ist.
 				Object returnCode = null;
 				try {
-					returnCode = preparedStatement.getObject(1);
+					if (returnRequired) {
+						returnCode = preparedStatement.getObject(1);
+					}
 				} catch (Exception e) {
 					// Wenn preparedStatement.getObject(1) ausgeführt wird, wird in den Tests "Connection already closed" geworfen, obwohl die Prozedur
 					// ausgeführt wurde. Es ist also eigentlich gar kein echter Fehler aufgetreten.
@@ -444,14 +559,31 @@ public class ProcedureService {
 		return result;
 	}
 
+	/**
+	 * Wie {@link #fillCallableSqlProcedureStatement(CallableStatement, Table, int, SqlTrace, int)}, die Parameter werden als Text an den StringBuffer
+	 * gehängt.
+	 */
+	@Deprecated
 	public void fillCallableSqlProcedureStatement(CallableStatement preparedStatement, Table inputTable, int parameterOffset, StringBuffer sb, int row) {
+		final SqlTrace trace = new SqlTrace();
+		try {
+			fillCallableSqlProcedureStatement(preparedStatement, inputTable, parameterOffset, trace, row);
+		} finally {
+			sb.append(trace);
+		}
+	}
+
+	/**
+	 * Bindet die Werte einer Row an das Statement. Im SqlTrace werden nur die Positionen und Werte vermerkt, der Text wird erst beim Loggen erzeugt.
+	 */
+	public void fillCallableSqlProcedureStatement(CallableStatement preparedStatement, Table inputTable, int parameterOffset, SqlTrace trace, int row) {
 		range(0, inputTable.getColumns().size())//
 				.forEach(i -> {
 					try {
 						val iVal = inputTable.getRows().get(row).getValues().get(i);
 						val type = inputTable.getColumns().get(i).getType();
 						if (iVal == null) {
-							sb.append(" ; Position: " + (i + parameterOffset) + ", Value: " + iVal);
+							trace.bind(i + parameterOffset, null);
 							if (type == DataType.BOOLEAN) {
 								preparedStatement.setObject(i + parameterOffset, null, Types.BOOLEAN);
 							} else if (type == DataType.DOUBLE) {
@@ -473,7 +605,7 @@ public class ProcedureService {
 								throw new IllegalArgumentException("msg.UnknownType %" + type.name());
 							}
 						} else {
-							sb.append(" ; Position: " + (i + parameterOffset) + ", Value: " + iVal.getValue().toString());
+							trace.bind(i + parameterOffset, iVal.getValue());
 							if (type == DataType.BOOLEAN) {
 								preparedStatement.setBoolean(i + parameterOffset, iVal.getBooleanValue());
 							} else if (type == DataType.DOUBLE) {
@@ -575,4 +707,40 @@ public class ProcedureService {
 		sb.append(")}");
 		return sb.toString();
 	}
+
+	/**
+	 * Wie {@link #prepareProcedureString(Table, Set)}, nur als T-SQL-Batch mit vorangestelltem SET NOCOUNT ON:
+	 * <ol>
+	 * <li>SET NOCOUNT ON; EXEC procName ?,?, &#8230;</li>
+	 * <li>SET NOCOUNT ON; EXEC ? = procName ?,?, &#8230;</li>
+	 * </ol>
+	 * Der Treiber führt ein Batch mit Parametern über sp_executesql aus. Ein SET gilt dort nur bis zum Ende des Batches, danach hat die Connection wieder
+	 * ihre alte Einstellung. So kostet NOCOUNT keinen zusätzlichen Aufruf und muss nicht zurückgesetzt werden. Ohne Parameter würde der Treiber den Batch
+	 * direkt ausführen und NOCOUNT bliebe für die Connection gesetzt, deshalb wird dann der normale Aufruf verwendet.
+	 *
+	 * @param params
+	 *            SQL-Call-Parameter
+	 * @param strategy
+	 *            SQL-Execution-Strategie
+	 * @return SQL-Code
+	 * @throws IllegalArgumentException
+	 *             Fehler, wenn die Daten in params nicht richtig sind.
+	 */
+	String prepareNocountProcedureString(Table params, Set<ExecuteStrategy> strategy) throws IllegalArgumentException {
+		final String procedureCall = prepareProcedureString(params, strategy);
+		final int paramCount = params.getColumns().size();
+		final boolean returnRequired = ExecuteStrategy.returnRequired(strategy);
+		if (paramCount == 0 && !returnRequired) {
+			return procedureCall;
+		}
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append("SET NOCOUNT ON; EXEC ")//
+				.append(returnRequired ? "? = " : "")//
+				.append(params.getName());
+		for (int i = 0; i < paramCount; i++) {
+			sb.append(i == 0 ? " ?" : ",?");
+		}
+		return sb.toString();
+	}
 }
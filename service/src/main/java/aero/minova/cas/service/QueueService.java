@@ -5,11 +5,23 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 
@@ -25,6 +37,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
@@ -42,6 +56,7 @@ import aero.minova.cas.service.repository.CASServicesRepository;
 import aero.minova.cas.service.repository.ServiceMessageRepository;
 import aero.minova.cas.servicenotifier.ServiceNotifierService;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
@@ -58,6 +73,9 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	@Autowired
 	private SqlProcedureController spc;
 
+	@Autowired
+	private ServiceMessageClaimer serviceMessageClaimer;
+
 	// Hierbei handelt es sich um Tage
 	@org.springframework.beans.factory.annotation.Value("${aero.minova.message.age:7}")
 	int allowedMessageAge;
@@ -65,6 +83,21 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	@org.springframework.beans.factory.annotation.Value("${aero.minova.number.of.attempts:10}")
 	int allowedNumberOfAttempts;
 
+	// Anzahl der Dienste, an welche gleichzeitig Nachrichten verschickt werden.
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.threads:4}")
+	int deliveryThreads;
+
+	// Maximale Anzahl an Nachrichten, die pro Durchlauf für diesen Knoten reserviert werden.
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.batch.size:100}")
+	int deliveryBatchSize;
+
+	// Wartezeit in Millisekunden nach einem fehlgeschlagenen Versand. Verdoppelt sich mit jedem weiteren Fehlschlag bis zum Maximum.
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.backoff:1000}")
+	long initialBackoffMillis;
+
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.backoff.max:300000}")
+	long maxBackoffMillis;
+
 	@Autowired
 	RestTemplate restTemplate;
 
@@ -77,11 +110,85 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	@Autowired
 	CASServicesRepository casServiceRepo;
 
-	Map<CASServices, OAuth2Token> oauth2TokenList = new HashMap<>();
+	Map<CASServices, OAuth2Token> oauth2TokenList = new ConcurrentHashMap<>();
+
+	/**
+	 * Der Versand-Zustand eines Dienstes. Pro Dienst wird immer nur von einem Thread verschickt, damit die Reihenfolge der Nachrichten erhalten bleibt.
+	 */
+	static final class ServiceLane {
+		final AtomicBoolean running = new AtomicBoolean();
+		volatile int failures;
+		volatile long retryAt;
+	}
+
+	// Schlüssel: KeyLong des CASServices
+	final Map<Integer, ServiceLane> lanes = new ConcurrentHashMap<>();
+
+	// Liest die offenen Nachrichten und verteilt sie auf die Dienste. Es gibt nur einen Thread, damit nie zwei Durchläufe gleichzeitig lesen.
+	private ScheduledExecutorService dispatcher;
+	private ExecutorService deliveryExecutor;
+	private final AtomicBoolean dispatchPending = new AtomicBoolean();
+
+	private static final Authentication QUEUE_SERVICE_AUTHENTICATION = new Authentication() {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getName() {
+			return "CAS QueueService";
+		}
+
+		@Override
+		public void setAuthenticated(boolean isAuthenticated) throws IllegalArgumentException {
+			// Hier muss bisher nicht implementiert werden.
+		}
+
+		@Override
+		public boolean isAuthenticated() {
+			return true;
+		}
+
+		@Override
+		public Object getPrincipal() {
+			return null;
+		}
+
+		@Override
+		public Object getDetails() {
+			return null;
+		}
+
+		@Override
+		public Object getCredentials() {
+			return null;
+		}
+
+		@Override
+		public Collection<? extends GrantedAuthority> getAuthorities() {
+			return Collections.emptyList();
+		}
+	};
 
 	@PostConstruct
 	public void init() {
 		spc.setQueueService(this);
+		dispatcher = Executors.newSingleThreadScheduledExecutor(daemonThreads("cas-queue-dispatcher"));
+		deliveryExecutor = Executors.newFixedThreadPool(Math.max(1, deliveryThreads), daemonThreads("cas-queue-delivery"));
+	}
+
+	@PreDestroy
+	void shutdown() {
+		dispatcher.shutdownNow();
+		deliveryExecutor.shutdownNow();
+	}
+
+	private static ThreadFactory daemonThreads(String name) {
+		final AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
 	}
 
 	/**
@@ -105,70 +212,119 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	}
 
 	/**
-	 * Versucht in einem bestimmten regelmäßigen Abstand unversendete Nachrichten an Dienste zu verschicken.
+	 * Versucht in einem bestimmten regelmäßigen Abstand unversendete Nachrichten an Dienste zu verschicken. Neue Nachrichten aus {@link #accept} werden
+	 * sofort verschickt, das Intervall fängt nur Nachrichten auf, die direkt in der Datenbank (z.B. über xpcasInsertServiceMessage) angelegt wurden.
+	 * <p>
+	 * Vorher wird der Index der NewsfeedListener neu aus der Datenbank gelesen, damit auch An- und Abmeldungen über andere CAS-Knoten ankommen.
 	 */
 	@Scheduled(cron = "${aero.minova.check.message.intervall:0 * * * * *}")
-	private void sendQueueMessage() {
+	void sendQueueMessage() {
 		try {
-			if (!securityService.isTablePresent("xvcasCASServiceMessage")) {
-				return;
-			}
+			serviceNotifierService.rebuildIndex();
 		} catch (Exception e) {
-			logger.logError("Could not find view xvcasCASServiceMessage. No messages will be send to registered services!", e);
+			logger.logError("Could not rebuild the newsfeed index, using the previous one.", e);
 		}
+		requestDelivery();
+	}
 
-		// Es wird hier ein neuer SecurityContext benötigt, da sonst die Methode 'getUserContext im SqlProcedureController abbrechen würde.
-		SecurityContextHolder.getContext().setAuthentication(new Authentication() {
-
-			@Override
-			public String getName() {
-				return "CAS QueueService";
-			}
-
-			@Override
-			public void setAuthenticated(boolean isAuthenticated) throws IllegalArgumentException {
-				// Hier muss bisher nicht implementiert werden.
-			}
-
-			@Override
-			public boolean isAuthenticated() {
-				return true;
-			}
-
-			@Override
-			public Object getPrincipal() {
-				return null;
+	/**
+	 * Stößt den Versand der offenen Nachrichten an. Mehrere Aufrufe, bevor der Versand gestartet wurde, werden zu einem Durchlauf zusammengefasst.
+	 */
+	public void requestDelivery() {
+		if (dispatchPending.compareAndSet(false, true)) {
+			try {
+				dispatcher.execute(this::dispatchMessages);
+			} catch (RejectedExecutionException e) {
+				// Die Anwendung wird heruntergefahren.
+				dispatchPending.set(false);
 			}
+		}
+	}
 
-			@Override
-			public Object getDetails() {
-				return null;
-			}
+	private void scheduleDelivery(long delayMillis) {
+		try {
+			dispatcher.schedule(this::requestDelivery, delayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// Die Anwendung wird heruntergefahren.
+		}
+	}
 
-			@Override
-			public Object getCredentials() {
-				return null;
+	/**
+	 * Reserviert offene Nachrichten für diesen Knoten und verteilt sie pro Dienst auf die Versand-Threads. Nachrichten von Diensten, an die gerade verschickt
+	 * wird oder die nach einem Fehler noch warten müssen, werden nicht reserviert. Diese Dienste lösen nach Ende des Versands bzw. der Wartezeit selbst einen
+	 * neuen Durchlauf aus.
+	 */
+	void dispatchMessages() {
+		dispatchPending.set(false);
+		try {
+			if (!securityService.isTablePresent("xvcasCASServiceMessage")) {
+				return;
 			}
+		} catch (Exception e) {
+			logger.logError("Could not find view xvcasCASServiceMessage. No messages will be send to registered services!", e);
+		}
 
-			@Override
-			public Collection<? extends GrantedAuthority> getAuthorities() {
-				return Collections.emptyList();
+		final long now = System.currentTimeMillis();
+		final List<Integer> busyServices = new ArrayList<>();
+		lanes.forEach((serviceKey, lane) -> {
+			if (lane.retryAt > now || lane.running.get()) {
+				busyServices.add(serviceKey);
 			}
 		});
 
 		List<ServiceMessage> messagesToBeSend;
-
 		try {
-			// Holt sich alle Nachrichten, die noch nicht versandt wurden oder noch nicht gefailed sind.
-			messagesToBeSend = serviceMessageRepo.findAllByIsSentFalseAndFailedFalseAndLastActionGreaterThan(0);
+			// Reserviert die Nachrichten, die noch nicht versandt wurden oder noch nicht gefailed sind und von keinem anderen CAS-Knoten verschickt werden.
+			final List<Integer> claimedKeys = serviceMessageClaimer.claim(Math.max(1, deliveryBatchSize), busyServices);
+			if (claimedKeys.isEmpty()) {
+				return;
+			}
+			messagesToBeSend = new ArrayList<>(serviceMessageRepo.findAllById(claimedKeys));
+			messagesToBeSend.sort(Comparator.comparing(ServiceMessage::getKeyLong));
 		} catch (Exception e) {
 			logger.logError("Could not read next message. The QueueService could not read tServiceMessage.", e);
-			throw new RuntimeException(e);
+			return;
 		}
 
-		if (messagesToBeSend != null && !messagesToBeSend.isEmpty()) {
+		final Map<Integer, List<ServiceMessage>> messagesPerService = new LinkedHashMap<>();
+		for (ServiceMessage pendingMessage : messagesToBeSend) {
+			messagesPerService.computeIfAbsent(pendingMessage.getCasService().getKeyLong(), k -> new ArrayList<>()).add(pendingMessage);
+		}
 
-			for (ServiceMessage pendingMessage : messagesToBeSend) {
+		for (Map.Entry<Integer, List<ServiceMessage>> entry : messagesPerService.entrySet()) {
+			final ServiceLane lane = lanes.computeIfAbsent(entry.getKey(), k -> new ServiceLane());
+			final List<ServiceMessage> messages = entry.getValue();
+			if (!lane.running.compareAndSet(false, true)) {
+				// Kann nur passieren, wenn der Dienst zwischen Reservieren und Verteilen gestartet wurde. Dann darf ein anderer Knoten übernehmen.
+				releaseClaims(messages);
+				continue;
+			}
+			try {
+				deliveryExecutor.execute(() -> deliverMessages(lane, messages));
+			} catch (RejectedExecutionException e) {
+				lane.running.set(false);
+				releaseClaims(messages);
+			}
+		}
+	}
+
+	private void releaseClaims(List<ServiceMessage> messages) {
+		serviceMessageClaimer.release(messages.stream().map(ServiceMessage::getKeyLong).toList());
+	}
+
+	/**
+	 * Verschickt die Nachrichten eines Dienstes der Reihe nach. Schlägt ein Versand fehl, wird der Rest nicht versucht und der Dienst erst nach einer
+	 * exponentiell wachsenden Wartezeit erneut angesprochen. Bis dahin bleibt die fehlgeschlagene Nachricht für diesen Knoten reserviert. Die restlichen
+	 * Nachrichten werden freigegeben, können aber von keinem Knoten reserviert werden, solange die ältere Nachricht reserviert ist (siehe
+	 * {@link ServiceMessageClaimer}). So gilt die Wartezeit für den ganzen Cluster und die Reihenfolge bleibt erhalten.
+	 */
+	void deliverMessages(ServiceLane lane, List<ServiceMessage> messages) {
+		// Es wird hier ein SecurityContext benötigt, da sonst die Methode 'getUserContext im SqlProcedureController abbrechen würde.
+		SecurityContextHolder.getContext().setAuthentication(QUEUE_SERVICE_AUTHENTICATION);
+		int processed = 0;
+		try {
+			for (ServiceMessage pendingMessage : messages) {
+				processed++;
 
 				// Wenn die allowedNumberOfAttempts zu hoch wird, setzen wir Failed auf true und die Nachricht soll nicht weiter versucht werden zu verschicken.
 				if (pendingMessage.getNumberOfAttempts() >= allowedNumberOfAttempts) {
@@ -184,20 +340,51 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 				}
 
 				// Versuche die Nachricht an den Dienst zu verschicken.
-				boolean sendSuccessfull = sendMessage(pendingMessage);
-				if (sendSuccessfull) {
+				if (sendMessage(pendingMessage)) {
 					safeAsSent(true, pendingMessage);
+					lane.failures = 0;
 				} else {
+					lane.failures++;
+					final long backoff = backoffMillis(lane.failures);
+					lane.retryAt = System.currentTimeMillis() + backoff;
+					pendingMessage.setClaimedUntil(LocalDateTime.now().plus(backoff, ChronoUnit.MILLIS));
 					safeAsSent(false, pendingMessage);
-					logger.logQueueService(pendingMessage.getCasService().getKeyText() + " is not reachable!");
+					logger.logQueueService(pendingMessage.getCasService().getKeyText() + " is not reachable! Next attempt in " + backoff + " ms.");
+					break;
 				}
 			}
+		} catch (Exception e) {
+			// Z.B. wenn die Datenbank nicht erreichbar ist. Auch dann nicht sofort wieder versuchen.
+			lane.failures++;
+			lane.retryAt = System.currentTimeMillis() + backoffMillis(lane.failures);
+			logger.logError("Error while sending messages.", e);
+		} finally {
+			if (processed < messages.size()) {
+				releaseClaims(messages.subList(processed, messages.size()));
+			}
+			SecurityContextHolder.clearContext();
+			lane.running.set(false);
+			final long delay = lane.retryAt - System.currentTimeMillis();
+			if (delay > 0) {
+				scheduleDelivery(delay);
+			} else {
+				// Es können inzwischen neue Nachrichten für den Dienst vorliegen.
+				requestDelivery();
+			}
 		}
+	}
 
+	/**
+	 * @param failures
+	 *            Anzahl der aufeinanderfolgenden Fehlschläge eines Dienstes, mindestens 1.
+	 * @return Die Wartezeit bis zum nächsten Versuch in Millisekunden.
+	 */
+	long backoffMillis(int failures) {
+		return Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(Math.max(failures - 1, 0), 20));
 	}
 
 	/**
-	 * Speichert eine Nachricht in der Datenbank, welche beim nächsten Intervall verschickt wird.
+	 * Speichert eine Nachricht in der Datenbank und stößt den Versand an.
 	 */
 	@Override
 	public void accept(Table t, ResponseEntity<Object> u) {
@@ -209,18 +396,38 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 			if (topicSpecificMessages != null) {
 
 				// Wenn eine Prozedur ausgeführt wurde, müssen Nachrichten für alle betroffenen Dienste generiert werden.
+				final List<ServiceMessage> messages = new ArrayList<>();
 				for (Map.Entry<String, BiFunction<Table, ResponseEntity<Object>, String>> entry : topicSpecificMessages.entrySet()) {
 
 					String message = entry.getValue().apply(t, u);
-					saveMessage(message, t.getName(), entry.getKey());
+					messages.addAll(createMessages(message, t.getName(), entry.getKey()));
 				}
+				saveMessages(messages);
+				requestDeliveryAfterCommit();
 			}
 
 		}
 	}
 
 	/**
-	 * Speichert eine Nachricht für einen Topic.
+	 * Die Nachrichten dürfen erst gelesen werden, wenn sie in der Datenbank stehen. Läuft eine Spring-Transaktion, wird der Versand daher erst nach deren
+	 * Commit angestoßen.
+	 */
+	private void requestDeliveryAfterCommit() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					requestDelivery();
+				}
+			});
+		} else {
+			requestDelivery();
+		}
+	}
+
+	/**
+	 * Erzeugt die Nachrichten für alle Dienste, welche auf den Topic horchen. Die Dienste kommen aus dem Index des {@link ServiceNotifierService}.
 	 * 
 	 * @param message
 	 *            Die Nachricht, die gespeichert werden soll.
@@ -228,31 +435,42 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	 *            Die Prozedur, wegen welcher die Nachricht erstellt wurde.
 	 * @param topic
 	 *            Das Topic, welches verändert wurde.
+	 * @return Die noch nicht gespeicherten Nachrichten.
 	 */
-	private void saveMessage(String message, String procedureName, String topic) {
-		List<NewsfeedListener> servicesToBeNotified = serviceNotifierService.findViewEntry(null, topic);
+	private List<ServiceMessage> createMessages(String message, String procedureName, String topic) {
+		final List<ServiceMessage> messages = new ArrayList<>();
+		for (NewsfeedListener services : serviceNotifierService.findListeners(topic)) {
+			ServiceMessage serviceMessage = new ServiceMessage();
 
-		for (NewsfeedListener services : servicesToBeNotified) {
-			try {
-				CASServices service = casServiceRepo.findByKeyLong(services.getCasService().getKeyLong()).get();
-				ServiceMessage serviceMessage = new ServiceMessage();
-
-				serviceMessage.setCasService(service);
-				serviceMessage.setMessage(message);
+			serviceMessage.setCasService(services.getCasService());
+			serviceMessage.setMessage(message);
 
-				serviceMessage.setMessageCreationDate(LocalDateTime.now());
+			serviceMessage.setMessageCreationDate(LocalDateTime.now());
+			messages.add(serviceMessage);
 
-				serviceMessageRepo.saveAndFlush(serviceMessage);
-
-				logger.logQueueService("Saving message for " + topic + " for service " + services.getCasService().getKeyText() + "  because of " + procedureName
-						+ ": '" + message + "'");
-				logger.logQueueService("Message saved!");
-			} catch (Exception e) {
-				logger.logError("Error while trying to save message " + message, e);
-				throw new RuntimeException(e);
-			}
+			logger.logQueueService("Saving message for " + topic + " for service " + services.getCasService().getKeyText() + "  because of " + procedureName
+					+ ": '" + message + "'");
 		}
+		return messages;
+	}
 
+	/**
+	 * Speichert alle Nachrichten eines Prozedur-Aufrufs gemeinsam.
+	 * 
+	 * @param messages
+	 *            Die Nachrichten, die gespeichert werden sollen.
+	 */
+	private void saveMessages(List<ServiceMessage> messages) {
+		if (messages.isEmpty()) {
+			return;
+		}
+		try {
+			serviceMessageRepo.saveAllAndFlush(messages);
+			logger.logQueueService(messages.size() + " messages saved!");
+		} catch (Exception e) {
+			logger.logError("Error while trying to save messages " + messages.stream().map(ServiceMessage::getMessage).distinct().toList(), e);
+			throw new RuntimeException(e);
+		}
 	}
 
 	/**
@@ -0,0 +1,332 @@
+package aero.minova.cas.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.PathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import aero.minova.cas.CustomLogger;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Die Zips des Fat-Jar-Modus. Die Ressourcen im Jar ändern sich zur Laufzeit nicht, deshalb wird jede Zip nur einmal gebaut und dann aus dem Cache
+ * ausgeliefert. Der Schlüssel ist die Menge der enthaltenen Ressourcen: Anfragen mit unterschiedlichem Pfad, aber denselben Dateien teilen sich eine Zip.
+ * Beliebige Pfade vom Client vergrößern den Cache also nicht, alle Pfade ohne Ressourcen teilen sich die leere Zip.
+ * <p>
+ * Kleine Zips werden im Speicher gehalten, bis insgesamt {@code files.zip.cache.memory} Bytes belegt sind. Alle weiteren werden unter ihrem MD5-Hash im
+ * Ordner {@code files.zip.cache.dir} abgelegt und von dort gestreamt. Es werden höchstens {@code files.zip.cache.size} Zips gehalten. Wird die am längsten
+ * nicht verwendete Zip verdrängt, wird ihr Speicher freigegeben bzw. ihre Datei gelöscht. Beim Beenden werden alle Dateien gelöscht.
+ */
+@Service
+public class ResourceZipCache {
+
+	@Autowired
+	CustomLogger customLogger;
+
+	// Maximale Größe aller Zips im Speicher in Bytes.
+	@Value("${files.zip.cache.memory:67108864}")
+	long maxMemoryBytes;
+
+	// Ordner für die Zips, welche nicht mehr in den Speicher passen. Ohne Angabe ein Unterordner des temporären Verzeichnisses.
+	@Value("${files.zip.cache.dir:}")
+	String cacheDir;
+
+	// Maximale Anzahl an Zips im Cache.
+	@Value("${files.zip.cache.size:64}")
+	int maxEntries = 64;
+
+	String deployedResourcesPath = "/aero.minova.app.resources/deployed.resources.txt";
+
+	private volatile List<String> deployedResources;
+	// Die Zips nach der Liste ihrer Ressourcen. Eine Zip wird außerhalb der Sperre gebaut, parallele Anfragen warten auf das Future.
+	private final Map<String, CompletableFuture<CachedZip>> zipsByResources = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<CachedZip>> eldest) {
+			if (size() <= maxEntries) {
+				return false;
+			}
+			eldest.getValue().thenAccept(ResourceZipCache.this::release);
+			return true;
+		}
+	};
+	private final AtomicLong memoryBytes = new AtomicLong();
+
+	/**
+	 * Eine fertige Zip mit ihrem MD5-Hash.
+	 */
+	public static final class CachedZip {
+		private final String md5;
+		private final long length;
+		private final byte[] content;
+		private final Path file;
+
+		CachedZip(String md5, long length, byte[] content, Path file) {
+			this.md5 = md5;
+			this.length = length;
+			this.content = content;
+			this.file = file;
+		}
+
+		/**
+		 * @return Der MD5-Hash der Zip als Hex-String, so wie er auch von files/hash geliefert wird.
+		 */
+		public String getMd5() {
+			return md5;
+		}
+
+		/**
+		 * @return Der ETag für HTTP, abgeleitet vom MD5-Hash.
+		 */
+		public String getETag() {
+			return "\"" + md5 + "\"";
+		}
+
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * @return Die Zip als Resource, welche ohne Kopie gestreamt werden kann.
+		 */
+		public Resource toResource() {
+			return content != null ? new ByteArrayResource(content) : new PathResource(file);
+		}
+
+		/**
+		 * @return Den Inhalt der Zip. Darf nicht verändert werden.
+		 */
+		public byte[] readAllBytes() throws IOException {
+			return content != null ? content : Files.readAllBytes(file);
+		}
+	}
+
+	/**
+	 * Liefert die Zip aller Ressourcen, deren Pfad mit dem übergebenen Pfad beginnt. Wird die Zip noch gebaut, warten parallele Anfragen auf das Ergebnis.
+	 *
+	 * @param path
+	 *            Der Pfad innerhalb des Jars, beginnend mit '/'.
+	 * @return Die Zip aus dem Cache.
+	 */
+	public CachedZip get(String path) {
+		final List<String> resources = findResources(path);
+		final String key = String.join("\n", resources);
+		final CompletableFuture<CachedZip> zip;
+		boolean building = false;
+		synchronized (zipsByResources) {
+			CompletableFuture<CachedZip> cached = zipsByResources.get(key);
+			if (cached == null) {
+				cached = new CompletableFuture<>();
+				zipsByResources.put(key, cached);
+				building = true;
+			}
+			zip = cached;
+		}
+		if (building) {
+			try {
+				zip.complete(build(path, resources));
+			} catch (RuntimeException e) {
+				// Die nächste Anfrage versucht es erneut.
+				synchronized (zipsByResources) {
+					zipsByResources.remove(key, zip);
+				}
+				zip.completeExceptionally(e);
+			}
+		}
+		try {
+			return zip.join();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+		}
+	}
+
+	/**
+	 * @return Die Anzahl der Zips im Cache.
+	 */
+	int size() {
+		synchronized (zipsByResources) {
+			return zipsByResources.size();
+		}
+	}
+
+	/**
+	 * Gibt den Speicher einer verdrängten Zip frei bzw. löscht ihre Datei. Wird die Datei gerade noch gestreamt, bleibt sie unter Linux bis zum Ende lesbar.
+	 */
+	private void release(CachedZip zip) {
+		if (zip.content != null) {
+			memoryBytes.addAndGet(-zip.length);
+		} else {
+			deleteQuietly(zip.file);
+		}
+	}
+
+	/**
+	 * Löscht beim Beenden alle ausgelagerten Zips, damit der Ordner nicht mit jedem Neustart wächst.
+	 */
+	@PreDestroy
+	void clear() {
+		final List<CompletableFuture<CachedZip>> zips;
+		synchronized (zipsByResources) {
+			zips = new ArrayList<>(zipsByResources.values());
+			zipsByResources.clear();
+		}
+		for (CompletableFuture<CachedZip> zip : zips) {
+			zip.thenAccept(this::release);
+		}
+	}
+
+	private List<String> findResources(String path) {
+		final List<String> matchingResources = new ArrayList<>();
+		for (String resource : getDeployedResources()) {
+			if (resource.startsWith(path) && !resource.endsWith("/")) {
+				matchingResources.add(resource);
+			}
+		}
+		return matchingResources;
+	}
+
+	/**
+	 * @return Alle Ressourcen aus den Listen der deployed.resources.txt. Die Listen werden nur einmal gelesen.
+	 */
+	private List<String> getDeployedResources() {
+		List<String> resources = deployedResources;
+		if (resources == null) {
+			try {
+				final Set<String> allResources = new LinkedHashSet<>();
+				for (String resourceListPath : readResource(deployedResourcesPath).split("\n")) {
+					if (resourceListPath.isBlank()) {
+						continue;
+					}
+					for (String resource : readResource(resourceListPath).split("\n")) {
+						if (!resource.isBlank()) {
+							allResources.add(resource);
+						}
+					}
+				}
+				resources = List.copyOf(allResources);
+			} catch (IOException e) {
+				throw new RuntimeException("Error while reading " + deployedResourcesPath, e);
+			}
+			deployedResources = resources;
+		}
+		return resources;
+	}
+
+	private String readResource(String path) throws IOException {
+		try (InputStream in = getClass().getResourceAsStream(path)) {
+			if (in == null) {
+				throw new IOException("Resource " + path + " not found");
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private CachedZip build(String path, List<String> resources) {
+		final MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("msg.MD5Error");
+		}
+
+		final Path directory = getCacheDirectory();
+		Path temp = null;
+		String resourcePathLog = null;
+		ZipEntry ze = null;
+		try {
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, "zip", ".tmp");
+			try (OutputStream out = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), md);
+					ZipOutputStream zos = new ZipOutputStream(out)) {
+				for (String resourcePath : resources) {
+					resourcePathLog = resourcePath;
+					ze = new ZipEntry(resourcePath.substring(1));
+
+					// CreationTime der Zip und Änderungs-Zeitpunkt der Zip auf diese festen
+					// Zeitpunkte setzen, da sich sonst jedes Mal der md5 Wert ändert,
+					// wenn die Zip erstellt wird.
+					ze.setCreationTime(FileTime.from(Instant.EPOCH));
+					ze.setTime(0);
+					zos.putNextEntry(ze);
+					try (InputStream in = getClass().getResourceAsStream(resourcePath)) {
+						in.transferTo(zos);
+					}
+					zos.closeEntry();
+				}
+			}
+
+			final String md5 = String.format("%0" + (md.getDigestLength() * 2) + "x", new BigInteger(1, md.digest()));
+			final long length = Files.size(temp);
+			final CachedZip zip;
+			if (memoryBytes.addAndGet(length) <= maxMemoryBytes) {
+				zip = new CachedZip(md5, length, Files.readAllBytes(temp), null);
+				Files.delete(temp);
+			} else {
+				memoryBytes.addAndGet(-length);
+				final Path file = directory.resolve(md5 + ".zip");
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				zip = new CachedZip(md5, length, null, file);
+			}
+			customLogger.logFiles("Zip for " + path + " cached with " + resources.size() + " files, " + length + " bytes, md5 " + md5
+					+ (zip.file != null ? " in " + zip.file : ""));
+			return zip;
+		} catch (Exception e) {
+			deleteQuietly(temp);
+			if (ze != null) {
+				customLogger.logFiles("Error while zipping file " + ze.getName());
+				throw new RuntimeException("msg.ZipError %" + ze.getName());
+			} else {
+				// Landet nur hier, wenn es nicht mal bis in das erste if geschafft hat.
+				customLogger.logFiles("Error while accessing file path for file to zip.");
+				throw new RuntimeException("Error while accessing file path " + resourcePathLog + " for file to zip.", e);
+			}
+		}
+	}
+
+	private Path getCacheDirectory() {
+		if (cacheDir == null || cacheDir.isBlank()) {
+			return Paths.get(System.getProperty("java.io.tmpdir"), "cas-zip-cache");
+		}
+		return Paths.get(cacheDir);
+	}
+
+	private static void deleteQuietly(Path path) {
+		if (path != null) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				// Liegt im temporären Ordner und wird vom Betriebssystem aufgeräumt.
+			}
+		}
+	}
+}
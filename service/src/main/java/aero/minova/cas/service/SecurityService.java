@@ -5,11 +5,22 @@ import static java.util.Arrays.asList;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -24,7 +35,12 @@ import aero.minova.cas.api.domain.ProcedureException;
 import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.api.domain.Table;
 import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.cache.AuthenticationCache;
+import aero.minova.cas.cache.ExpiringCache;
+import aero.minova.cas.service.SecurityTokenDictionary.TokenSet;
 import aero.minova.cas.sql.SystemDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.Setter;
 import lombok.val;
 
@@ -43,6 +59,71 @@ public class SecurityService {
 	@org.springframework.beans.factory.annotation.Value("${login_dataSource:}")
 	private String dataSource;
 
+	// Wie lange (in Sekunden) die Authorities und Privilegien eines Users gecacht werden. 0 schaltet den Cache ab.
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.security.cache.ttl:60}")
+	private long privilegeCacheTtl;
+
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.security.cache.size:1000}")
+	private int privilegeCacheSize;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	@Autowired(required = false)
+	private AuthenticationCache authenticationCache;
+
+	@Autowired(required = false)
+	private PrivilegeTokenTable privilegeTokenTable;
+
+	// Schlüssel: Username und die Authorities aus dem Login, Wert: alle Authorities inklusive der Gruppen-Tokens
+	private ExpiringCache<String, List<String>> authorityCache;
+
+	// Schlüssel: Privileg und die vollständigen Authorities des Users, Wert: das Ergebnis von getPrivilegePermissions
+	private ExpiringCache<String, List<Row>> permissionCache;
+
+	// Schlüssel: Tabellenname in Kleinbuchstaben, Wert: die erlaubten Spalten je SecurityToken (in Kleinbuchstaben) aus der xtcasColumnSecurity
+	private ExpiringCache<String, Map<String, Map<String, Set<String>>>> columnSecurityIndex;
+
+	// Schlüssel: Privileg in Kleinbuchstaben, Wert: die Zeilen [KeyText, TransactionChecker] aus der xtcasUserPrivilege
+	private ExpiringCache<String, Map<String, List<Row>>> transactionCheckerIndex;
+
+	// Tabellen und Views, die bereits gefunden wurden. Fehlende Tabellen werden nicht gemerkt, da sie jederzeit (z.B. per Install-Tool) angelegt werden können.
+	private final Map<String, Boolean> presentTables = new ConcurrentHashMap<>();
+
+	// Nummern der SecurityTokens für die Row-Level-Security der Prozeduren
+	private final SecurityTokenDictionary tokenDictionary = new SecurityTokenDictionary();
+
+	@PostConstruct
+	void initPrivilegeCache() {
+		authorityCache = new ExpiringCache<>("authorities", privilegeCacheTtl * 1000, privilegeCacheSize, meterRegistry);
+		permissionCache = new ExpiringCache<>("privilegePermissions", privilegeCacheTtl * 1000, privilegeCacheSize, meterRegistry);
+		columnSecurityIndex = new ExpiringCache<>("columnSecurity", privilegeCacheTtl * 1000, 1, meterRegistry);
+		transactionCheckerIndex = new ExpiringCache<>("transactionCheckers", privilegeCacheTtl * 1000, 1, meterRegistry);
+	}
+
+	/**
+	 * Verwirft alle gecachten Authorities und Privilegien sowie die gecachten Anmeldungen. Muss aufgerufen werden, wenn sich User, Gruppen oder Privilegien
+	 * ändern.
+	 */
+	public void invalidatePrivilegeCache() {
+		if (authenticationCache != null) {
+			authenticationCache.invalidateAll();
+		}
+		if (authorityCache != null) {
+			authorityCache.invalidateAll();
+		}
+		if (permissionCache != null) {
+			permissionCache.invalidateAll();
+		}
+		if (transactionCheckerIndex != null) {
+			transactionCheckerIndex.invalidateAll();
+		}
+		if (privilegeTokenTable != null) {
+			privilegeTokenTable.markStale();
+		}
+		customLogger.logPrivilege("Privilege cache invalidated");
+	}
+
 	/**
 	 * Prüft, ob die minimal notwendigen Datenbank-Objekte für die Privileg-Prüfung in der Datenbank aufgesetzt wurden. Dazu prüft man, ob die
 	 * `xvcasUserSecurity` vorhanden ist.
@@ -55,12 +136,66 @@ public class SecurityService {
 		return isTablePresent("xvcasusersecurity");
 	}
 
+	/**
+	 * Prüft, ob die Tabelle bzw. View in der Datenbank vorhanden ist. Wurde sie einmal gefunden, wird das Ergebnis ohne Datenbank-Zugriff aus dem Cache
+	 * geliefert, bis {@link #invalidateSchemaCache()} aufgerufen wird.
+	 *
+	 * @param tableName
+	 *            Der Name der Tabelle oder View.
+	 * @return <code>true</code>, wenn die Tabelle vorhanden ist.
+	 * @throws Exception
+	 *             Fehler bei der Ermittlung
+	 */
 	public boolean isTablePresent(String tableName) throws Exception {
+		if (presentTables.containsKey(tableName)) {
+			return true;
+		}
+		final boolean present;
 		try (final Connection connection = systemDatabase.getConnection()) {
-			return connection.getMetaData()//
+			present = connection.getMetaData()//
 					.getTables(null, null, tableName, null)//
 					.next();
 		}
+		if (present) {
+			presentTables.put(tableName, Boolean.TRUE);
+		}
+		return present;
+	}
+
+	/**
+	 * Verwirft die gemerkten Tabellen. Muss aufgerufen werden, wenn sich das Datenbank-Schema ändert, z.B. nach dem Setup.
+	 */
+	public void invalidateSchemaCache() {
+		presentTables.clear();
+		customLogger.logSetup("Schema cache invalidated");
+	}
+
+	/**
+	 * Füllt den Schema-Cache beim Start, damit die ersten Anfragen nicht erst die Metadaten der Datenbank abfragen müssen.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	void initSchemaCache() {
+		for (String tableName : List.of("xvcasusersecurity", "xvcascasservices", "xvcasCASServiceMessage")) {
+			try {
+				isTablePresent(tableName);
+			} catch (Exception e) {
+				customLogger.logError("Could not check whether " + tableName + " is present.", e);
+			}
+		}
+	}
+
+	/**
+	 * Lädt den Index der xtcasColumnSecurity beim Start, damit die erste Abfrage einer View ihn nicht erst laden muss.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	void initColumnSecurityIndex() {
+		try {
+			if (isTablePresent("xtcasColumnSecurity")) {
+				getColumnSecurityIndex();
+			}
+		} catch (Exception e) {
+			customLogger.logError("Could not load column security.", e);
+		}
 	}
 
 	/**
@@ -74,9 +209,111 @@ public class SecurityService {
 	 * @return Enthält alle Gruppen, die ein Recht auf das Privileg haben.
 	 **/
 	public List<Row> getPrivilegePermissions(String privilegeName) {
+		return getPrivilegePermissions(List.of(privilegeName)).get(privilegeName);
+	}
+
+	/**
+	 * Wie {@link #getPrivilegePermissions(String)} für mehrere Privilegien auf einmal, z.B. alle Prozeduren einer x-procedure-Transaktion. Alle Privilegien,
+	 * die noch nicht im Cache liegen, werden mit einer einzigen Abfrage der xvcasUserSecurity geladen.
+	 *
+	 * @param privilegeNames
+	 *            Die Privilegien, für die ein Recht eingefordert wird.
+	 * @return Pro Privileg die Gruppen, die ein Recht darauf haben. Hat der User kein Recht, ist die Liste leer.
+	 */
+	public Map<String, List<Row>> getPrivilegePermissions(Collection<String> privilegeNames) {
 		loadAllPrivileges();
 		@SuppressWarnings("unchecked")
 		List<GrantedAuthority> allUserAuthorities = (List<GrantedAuthority>) SecurityContextHolder.getContext().getAuthentication().getAuthorities();
+
+		final String authorityKey = authorityCacheKey(allUserAuthorities);
+		final Map<String, List<Row>> permissions = new HashMap<>();
+		final Set<String> missingPrivileges = new LinkedHashSet<>();
+		for (String privilegeName : privilegeNames) {
+			List<Row> cachedRows = permissionCache.get(privilegeName + "|" + authorityKey);
+			if (cachedRows != null) {
+				permissions.put(privilegeName, new ArrayList<>(cachedRows));
+			} else {
+				missingPrivileges.add(privilegeName);
+			}
+		}
+		if (missingPrivileges.isEmpty()) {
+			return permissions;
+		}
+
+		final Set<String> authorityNames = new HashSet<>();
+		for (GrantedAuthority ga : allUserAuthorities) {
+			authorityNames.add(ga.getAuthority());
+		}
+
+		final Table userPrivileges;
+		if (canUsePrivilegeTokenTable(missingPrivileges, authorityNames)) {
+			userPrivileges = privilegeTokenQuery(missingPrivileges, authorityNames);
+		} else {
+			userPrivileges = userSecurityQuery(missingPrivileges, allUserAuthorities);
+		}
+
+		// Hier bekommen wir Rows zurück, die in irgendeiner Weise unsere Tokens enthalten.
+		List<Row> queryResult = authorityNames.isEmpty() ? List.of() : unsecurelyGetIndexView(userPrivileges).getRows();
+
+		for (String privilegeName : missingPrivileges) {
+			// Hier filtern wir noch alle SecurityToken raus, die nicht unserem Benutzer gehören.
+			List<Row> returnRows = new ArrayList<>();
+			for (Row r : queryResult) {
+				if (!privilegeName.equalsIgnoreCase(r.getValues().get(0).getStringValue())) {
+					continue;
+				}
+				for (String authority : r.getValues().get(1).getStringValue().split("#")) {
+					if (!authority.isBlank() && authorityNames.contains(authority)) {
+						Row newRow = new Row();
+						newRow.setValues(asList(r.getValues().get(0), new Value(authority, null), r.getValues().get(2)));
+						returnRows.add(newRow);
+					}
+				}
+			}
+
+			permissionCache.put(privilegeName + "|" + authorityKey, List.copyOf(returnRows));
+			permissions.put(privilegeName, returnRows);
+		}
+		return permissions;
+	}
+
+	/**
+	 * @return true, wenn die xtcasPrivilegeToken aktuell ist und alle Namen als IN-Liste abgefragt werden können.
+	 */
+	private boolean canUsePrivilegeTokenTable(Collection<String> privilegeNames, Collection<String> authorityNames) {
+		if (privilegeTokenTable == null || !privilegeTokenTable.isUsable()) {
+			return false;
+		}
+		// Die Werte einer IN-Liste werden durch Kommas getrennt übergeben.
+		for (String name : Stream.concat(privilegeNames.stream(), authorityNames.stream()).toList()) {
+			if (name.contains(",")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sucht die Privilegien und Tokens in der xtcasPrivilegeToken. Beide Spalten werden mit IN abgefragt und können den Index der Tabelle nutzen.
+	 */
+	private static Table privilegeTokenQuery(Collection<String> privilegeNames, Collection<String> authorityNames) {
+		Table privilegeTokens = new Table();
+		privilegeTokens.setName("xtcasPrivilegeToken");
+		privilegeTokens.addColumn(new Column("PrivilegeKeyText", DataType.STRING));
+		privilegeTokens.addColumn(new Column("SecurityToken", DataType.STRING));
+		privilegeTokens.addColumn(new Column("RowLevelSecurity", DataType.BOOLEAN));
+		Row row = new Row();
+		row.addValue(new Value(String.join(",", privilegeNames), "in()"));
+		row.addValue(new Value(String.join(",", authorityNames), "in()"));
+		row.addValue(null);
+		privilegeTokens.addRow(row);
+		return privilegeTokens;
+	}
+
+	/**
+	 * Sucht die Tokens mit LIKE in der xvcasUserSecurity. Wird verwendet, wenn die xtcasPrivilegeToken nicht zur Verfügung steht.
+	 */
+	private static Table userSecurityQuery(Collection<String> privilegeNames, Collection<? extends GrantedAuthority> allUserAuthorities) {
 		Table userPrivileges = new Table();
 		userPrivileges.setName("xvcasUserSecurity");
 		List<Column> columns = new ArrayList<>();
@@ -86,42 +323,87 @@ public class SecurityService {
 		columns.add(Column.AND_FIELD);
 		userPrivileges.setColumns(columns);
 
-		for (GrantedAuthority ga : allUserAuthorities) {
+		for (String privilegeName : privilegeNames) {
+			for (GrantedAuthority ga : allUserAuthorities) {
 
-			// Überprüfen, ob der SecurityToken an irgendeiner Position in der SecurityToken-Spalte auftaucht.
-			Row tableNameAndUserToken = new Row();
+				// Überprüfen, ob der SecurityToken an irgendeiner Position in der SecurityToken-Spalte auftaucht.
+				Row tableNameAndUserToken = new Row();
 
-			// Token ist in der Mitte des Strings.
-			tableNameAndUserToken.setValues(
-					asList(new Value(privilegeName, null), new Value("%#" + ga.getAuthority() + "#%", null), new Value("", null), new Value(false, null)));
-			// Token ist am Ende des Strings
-			tableNameAndUserToken
-					.setValues(asList(new Value(privilegeName, null), new Value("%#" + ga.getAuthority(), null), new Value("", null), new Value(false, null)));
-			userPrivileges.addRow(tableNameAndUserToken);
+				// Token ist in der Mitte des Strings.
+				tableNameAndUserToken.setValues(
+						asList(new Value(privilegeName, null), new Value("%#" + ga.getAuthority() + "#%", null), new Value("", null), new Value(false, null)));
+				// Token ist am Ende des Strings
+				tableNameAndUserToken.setValues(
+						asList(new Value(privilegeName, null), new Value("%#" + ga.getAuthority(), null), new Value("", null), new Value(false, null)));
+				userPrivileges.addRow(tableNameAndUserToken);
+			}
 		}
+		return userPrivileges;
+	}
 
-		// Hier bekommen wir Rows zurück, die in irgendeiner Weise unsere Tokens enthalten.
-		List<Row> queryResult = unsecurelyGetIndexView(userPrivileges).getRows();
+	/**
+	 * Liefert die TransactionChecker der Privilegien aus der xtcasUserPrivilege. Die TransactionChecker sind Konfiguration, deshalb wird die Tabelle nur
+	 * einmal gelesen und bis {@link #invalidatePrivilegeCache()} bzw. für aero.minova.security.cache.ttl Sekunden im Speicher gehalten. Der Vergleich der
+	 * Namen ignoriert die Groß- und Kleinschreibung.
+	 *
+	 * @param privilegeNames
+	 *            Die Privilegien, z.B. die Prozeduren einer x-procedure-Transaktion.
+	 * @return Die Zeilen [KeyText, TransactionChecker] aller gefundenen Privilegien, jedes Privileg nur einmal. Der TransactionChecker kann null sein.
+	 */
+	public List<Row> getTransactionCheckers(Collection<String> privilegeNames) {
+		final Map<String, List<Row>> index;
+		if (transactionCheckerIndex.isEnabled()) {
+			index = transactionCheckerIndex.computeIfAbsent("xtcasUserPrivilege", tableName -> loadTransactionCheckerIndex(tableName, List.of()));
+		} else {
+			// Ohne Cache werden wie bisher nur die angefragten Privilegien gelesen.
+			index = loadTransactionCheckerIndex("xtcasUserPrivilege", privilegeNames);
+		}
+		final List<Row> checkers = new ArrayList<>();
+		final Set<String> seen = new LinkedHashSet<>();
+		for (String privilegeName : privilegeNames) {
+			final String key = privilegeName.toLowerCase(Locale.ROOT);
+			if (seen.add(key)) {
+				checkers.addAll(index.getOrDefault(key, List.of()));
+			}
+		}
+		return checkers;
+	}
 
-		// Hier filtern wir noch alle SecurityToken raus, die nicht unserem Benutzer gehören.
-		List<Row> returnRows = new ArrayList<>();
-		for (Row r : queryResult) {
-			List<String> resultAuthorities = Stream.of(r.getValues().get(1).getStringValue().split("#"))//
-					.map(String::new)//
-					.collect(Collectors.toList());
+	private Map<String, List<Row>> loadTransactionCheckerIndex(String tableName, Collection<String> privilegeNames) {
+		Table privileges = new Table();
+		privileges.setName(tableName);
+		privileges.addColumn(new Column("KeyText", DataType.STRING));
+		privileges.addColumn(new Column("TransactionChecker", DataType.STRING));
+		for (String privilegeName : privilegeNames) {
+			Row row = new Row();
+			row.addValue(new Value(privilegeName, null));
+			row.addValue(null);
+			privileges.addRow(row);
+		}
 
-			for (String authority : resultAuthorities) {
-				if (authority != null && !authority.isBlank() && allUserAuthorities.contains(new SimpleGrantedAuthority(authority))) {
-					r.getValues().set(1, new Value(authority, null));
-					Row newRow = new Row();
-					newRow.setValues(asList(r.getValues().get(0), new Value(authority, null), r.getValues().get(2)));
-					returnRows.add(newRow);
-				}
+		final Map<String, List<Row>> index = new HashMap<>();
+		for (Row row : unsecurelyGetIndexView(privileges).getRows()) {
+			final Value keyText = row.getValues().get(0);
+			if (keyText != null && keyText.getStringValue() != null) {
+				index.computeIfAbsent(keyText.getStringValue().toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(row);
 			}
-
 		}
+		if (privilegeNames.isEmpty()) {
+			customLogger.logPrivilege("Transaction checkers loaded for " + index.size() + " privileges");
+		}
+		return index;
+	}
 
-		return returnRows;
+	/**
+	 * @param authorities
+	 *            Die Authorities eines Users.
+	 * @return Die sortierten Authorities als String, damit die Reihenfolge keinen Einfluss auf den Cache-Schlüssel hat.
+	 */
+	private static String authorityCacheKey(Collection<? extends GrantedAuthority> authorities) {
+		return authorities.stream()//
+				.map(GrantedAuthority::getAuthority)//
+				.sorted()//
+				.collect(Collectors.joining("#"));
 	}
 
 	/**
@@ -131,25 +413,32 @@ public class SecurityService {
 		try {
 			Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 			if (authentication != null) {
-				List<String> userSecurityTokens = new ArrayList<>();
-
-				// Je nachdem, ob per LDAP oder Database autorisiert wird, wird entweder auf der xtcasUser abgefragt oder auf der xtcasUsers.
-				if (dataSource.equalsIgnoreCase("ldap")) {
-					userSecurityTokens = loadLDAPUserTokens(authentication.getName());
-				} else if (dataSource.equalsIgnoreCase("database")) {
-					userSecurityTokens = loadDatabaseUserTokens(authentication.getName());
-				}
-
 				List<GrantedAuthority> oldAuthorities = (List<GrantedAuthority>) authentication.getAuthorities();
 
-				// Hier werden die SecurityTokens der Gruppen ausgelesen.
-				List<GrantedAuthority> grantedAuthorities = loadUserGroupPrivileges(authentication.getName(), userSecurityTokens, oldAuthorities);
+				final String cacheKey = authentication.getName() + "|" + authorityCacheKey(oldAuthorities);
+				List<String> authorityNames = authorityCache.get(cacheKey);
+				if (authorityNames == null) {
+					List<String> userSecurityTokens = new ArrayList<>();
+
+					// Je nachdem, ob per LDAP oder Database autorisiert wird, wird entweder auf der xtcasUser abgefragt oder auf der xtcasUsers.
+					if (dataSource.equalsIgnoreCase("ldap")) {
+						userSecurityTokens = loadLDAPUserTokens(authentication.getName());
+					} else if (dataSource.equalsIgnoreCase("database")) {
+						userSecurityTokens = loadDatabaseUserTokens(authentication.getName());
+					}
+
+					// Hier werden die SecurityTokens der Gruppen ausgelesen.
+					List<GrantedAuthority> grantedAuthorities = loadUserGroupPrivileges(authentication.getName(), userSecurityTokens, oldAuthorities);
+					authorityNames = grantedAuthorities.stream()//
+							.map(GrantedAuthority::getAuthority)//
+							.toList();
+					authorityCache.put(cacheKey, authorityNames);
+				}
 
 				// GrantedAuthorities zu SimpleGrantedAuthorities ummappen, da Typecasting in diesem Fall nicht funktioniert.
 				List<SimpleGrantedAuthority> updatedAuthorities = new ArrayList<>();
-				for (GrantedAuthority ga : grantedAuthorities) {
-					SimpleGrantedAuthority authority = new SimpleGrantedAuthority(ga.getAuthority());
-					updatedAuthorities.add(authority);
+				for (String authorityName : authorityNames) {
+					updatedAuthorities.add(new SimpleGrantedAuthority(authorityName));
 				}
 
 				// Neue Authentication mit den alten Logindaten erstellen und in den Context setzen.
@@ -182,16 +471,9 @@ public class SecurityService {
 	 * <p>
 	 * TODO Idee: Man sollte eine neue Tabelle erstellen, statt die Eingabe abzuändern, da die Methoden-Signature impliziert, dass die InputTable nicht geändert
 	 * wird.<br>
-	 * Die Sql-Abfrage hat folgendes Format:<br>
-	 * <code>
-	 * select TableName, ColumnName, SecurityToken from xtcasColumnSecurity where (TableName =
-	 * inputTableName and SecurityToken = UserSecurityToken1) or (TableName = inputTableName and SecurityToken = UserSecurityToken2) or ...
-	 * </code> <br>
-	 * ToDo: kann man nicht schreiben: Select ... from where tableName = inputTableName and SecurityToken in ( token1, token2, ... ) <br>
-	 * Die Rows der zurückgelieferten Table haben folgendes Format:<br>
-	 * Row r = [Tabellenname,ColumnName,SecurityToken],<br>
-	 * Beispiel: Row r = ["tTestTabelle","Spalte1","User1"]<br>
-	 * Row r = ["tTestTabelle","Spalte2","User1"]
+	 * Die erlaubten Spalten kommen aus dem Index der xtcasColumnSecurity (siehe {@link #getColumnSecurityIndex()}), es wird pro Anfrage keine Abfrage mehr
+	 * ausgeführt. Gibt es für ein SecurityToken des Nutzers keinen Eintrag zu dieser Tabelle, darf der Nutzer alle Spalten sehen. Sonst sind die Spalten
+	 * aller Tokens zusammen erlaubt.
 	 *
 	 * @param inputTable
 	 *            Enthält den Tabellen-Namen und die Spalten, welche von einem Nutzer angefragt werden.
@@ -201,56 +483,57 @@ public class SecurityService {
 	 * @author weber
 	 */
 	public Table columnSecurity(Table inputTable, List<Row> userGroups) {
-		Table columnSec = new Table();
-		columnSec.setName("xtcasColumnSecurity");
-		List<Column> columns = new ArrayList<>();
-		columns.add(new Column("TableName", DataType.STRING));
-		columns.add(new Column("ColumnName", DataType.STRING));
-		columns.add(new Column("SecurityToken", DataType.STRING));
-		columnSec.setColumns(columns);
-
-		List<Row> columnRestrictionsForThisUserAndThisTable = new ArrayList<>();
+		Map<String, Set<String>> columnsByToken = null;
+		final Set<String> grantedColumns = new LinkedHashSet<>();
 		for (Row row : userGroups) {
 			// Hier wird darauf abgefragt, welche UserGruppen für die angeforderte Tabelle autorisiert sind. Hierbei sollte die Schreibweise der Tabelle/View
 			// egal sein.
 			if (row.getValues().get(0).getStringValue().equalsIgnoreCase(inputTable.getName())) {
-				Row bar = new Row();
-				bar.setValues(asList(new Value(inputTable.getName(), null), new Value("", null), new Value(row.getValues().get(1).getStringValue(), null)));
-				List<Row> checkRow = new ArrayList<>();
-				checkRow.add(bar);
-				columnSec.setRows(checkRow);
-				List<Row> tokenSpecificAuthorities = unsecurelyGetIndexView(columnSec).getRows();
+				if (columnsByToken == null) {
+					columnsByToken = getColumnSecurityIndex().getOrDefault(inputTable.getName().toLowerCase(Locale.ROOT), Map.of());
+				}
+				// Wie die Tabelle wird auch das SecurityToken unabhängig von der Schreibweise verglichen, so wie zuvor die Abfrage auf der Datenbank.
+				final String token = row.getValues().get(1).getStringValue();
+				Set<String> tokenSpecificColumns = token == null ? null : columnsByToken.get(token.toLowerCase(Locale.ROOT));
 				// wenn es in der tColumnSecurity keinen Eintrag für diese Tabelle gibt, dann darf der User jede Spalte ansehen
-				if (tokenSpecificAuthorities.isEmpty())
+				if (tokenSpecificColumns == null) {
 					return inputTable;
-				columnRestrictionsForThisUserAndThisTable.addAll(tokenSpecificAuthorities);
-			}
-		}
-		List<String> grantedColumns = new ArrayList<>();
-		// die Spaltennamen, welche wir durch den Select erhalten haben, in eine List packen, dabei darauf achten,
-		// dass verschiedene SecurityTokens dieselbe Erlaubnis haben können, deshalb Doppelte rausfiltern
-		for (Row row : columnRestrictionsForThisUserAndThisTable) {
-			String grantedColumnFromtColumnSecurity = row.getValues().get(1).getStringValue();
-			if (!grantedColumns.contains(grantedColumnFromtColumnSecurity)) {
-				grantedColumns.add(grantedColumnFromtColumnSecurity);
+				}
+				// verschiedene SecurityTokens können dieselbe Erlaubnis haben, das Set filtert die Doppelten heraus
+				grantedColumns.addAll(tokenSpecificColumns);
 			}
 		}
 
 		// wenn SELECT *, dann ist wantedColumns leer
-		List<Column> wantedColumns = new ArrayList<>(inputTable.getColumns());
-		if (wantedColumns.isEmpty())
+		if (inputTable.getColumns().isEmpty()) {
 			for (String s : grantedColumns) {
 				inputTable.addColumn(new Column(s, DataType.STRING));
 			}
+		}
 
 		// Hier wird herausgefiltert, welche der angeforderten Spalten(wantedColumns) genehmigt werden können(grantedColumns)
-		for (Column column : wantedColumns) {
-			if (!grantedColumns.contains(column.getName())) {
-				for (Row r : inputTable.getRows()) {
-					r.getValues().remove(inputTable.getColumns().indexOf(column));
+		final List<Column> wantedColumns = inputTable.getColumns();
+		final List<Integer> keptPositions = new ArrayList<>(wantedColumns.size());
+		for (int i = 0; i < wantedColumns.size(); i++) {
+			if (grantedColumns.contains(wantedColumns.get(i).getName())) {
+				keptPositions.add(i);
+			}
+		}
+		if (keptPositions.size() < wantedColumns.size()) {
+			for (Row r : inputTable.getRows()) {
+				final List<Value> values = new ArrayList<>(keptPositions.size());
+				for (int position : keptPositions) {
+					if (position < r.getValues().size()) {
+						values.add(r.getValues().get(position));
+					}
 				}
-				inputTable.getColumns().remove(column);
+				r.setValues(values);
+			}
+			final List<Column> keptColumns = new ArrayList<>(keptPositions.size());
+			for (int position : keptPositions) {
+				keptColumns.add(wantedColumns.get(position));
 			}
+			inputTable.setColumns(keptColumns);
 		}
 
 		// falls die Spalten der inputTable danach leer sind, darf wohl keine Spalte gesehen werden
@@ -263,6 +546,48 @@ public class SecurityService {
 		return inputTable;
 	}
 
+	/**
+	 * Liefert den Inhalt der xtcasColumnSecurity als Index: Tabellenname in Kleinbuchstaben -> SecurityToken in Kleinbuchstaben -> erlaubte Spalten. Der Index wird wie die
+	 * Privilegien für aero.minova.security.cache.ttl Sekunden gehalten und über {@link #invalidateColumnSecurity()} neu geladen.
+	 *
+	 * @return Der Index, niemals null.
+	 */
+	Map<String, Map<String, Set<String>>> getColumnSecurityIndex() {
+		return columnSecurityIndex.computeIfAbsent("xtcasColumnSecurity", this::loadColumnSecurityIndex);
+	}
+
+	private Map<String, Map<String, Set<String>>> loadColumnSecurityIndex(String tableName) {
+		Table columnSec = new Table();
+		columnSec.setName(tableName);
+		columnSec.addColumn(new Column("TableName", DataType.STRING));
+		columnSec.addColumn(new Column("ColumnName", DataType.STRING));
+		columnSec.addColumn(new Column("SecurityToken", DataType.STRING));
+
+		final Map<String, Map<String, Set<String>>> index = new HashMap<>();
+		for (Row row : unsecurelyGetIndexView(columnSec).getRows()) {
+			final String table = row.getValues().get(0).getStringValue();
+			final String token = row.getValues().get(2) == null ? null : row.getValues().get(2).getStringValue();
+			if (table == null || token == null) {
+				// Einträge ohne SecurityToken wurden nie über den Token gefunden
+				continue;
+			}
+			index.computeIfAbsent(table.toLowerCase(Locale.ROOT), t -> new HashMap<>())//
+					.computeIfAbsent(token.toLowerCase(Locale.ROOT), t -> new LinkedHashSet<>())//
+					.add(row.getValues().get(1) == null ? null : row.getValues().get(1).getStringValue());
+		}
+		customLogger.logPrivilege("Column security loaded for " + index.size() + " tables");
+		return index;
+	}
+
+	/**
+	 * Verwirft den Index der xtcasColumnSecurity. Muss aufgerufen werden, wenn Einträge der xtcasColumnSecurity geändert werden.
+	 */
+	public void invalidateColumnSecurity() {
+		if (columnSecurityIndex != null) {
+			columnSecurityIndex.invalidateAll();
+		}
+	}
+
 	/**
 	 * Fügt an das Ende der Where-Klausel die Abfrage nach den SecurityTokens des momentan eingeloggten Users und dessen Gruppen an Der resultierende String hat
 	 * dann folgendes Format: [and/where] ((SecurityToken IS NULL) or (SecurityToken IN (UserSecurityToken1, UserSecurityToken2, ...))
@@ -274,6 +599,24 @@ public class SecurityService {
 	 * @return einen String, der entweder an das Ende der vorhandenen Where-Klausel angefügt wird oder die Where-Klausel selbst ist
 	 */
 	public static String rowLevelSecurity(boolean isFirstWhereClause, List<Row> requestingAuthorities) {
+		return rowLevelSecurity(isFirstWhereClause, requestingAuthorities, false);
+	}
+
+	/**
+	 * Wie {@link #rowLevelSecurity(boolean, List)}. Ist bindTokens gesetzt, stehen statt der SecurityTokens nur '?' in der IN-Liste. Die Werte dazu liefert
+	 * {@link #rowLevelSecurityParameters(List)}, sie müssen nach allen anderen Parametern der Where-Klausel gebunden werden. Die Anzahl der '?' wird auf die
+	 * nächste Zweierpotenz aufgerundet. Dadurch entsteht für Nutzer mit unterschiedlichen Tokens derselbe SQL-String und die Datenbank kann den Ausführungsplan
+	 * wiederverwenden.
+	 *
+	 * @param isFirstWhereClause
+	 *            Abhängig davon, ob bereits eine where-Klausel besteht oder nicht, muss 'where' oder 'and' vorne angefügt werden
+	 * @param requestingAuthorities
+	 *            Die Rollen des Nutzers, welche ein Recht auf einen Zugriff haben.
+	 * @param bindTokens
+	 *            true, wenn die SecurityTokens als Parameter gebunden werden
+	 * @return einen String, der entweder an das Ende der vorhandenen Where-Klausel angefügt wird oder die Where-Klausel selbst ist
+	 */
+	public static String rowLevelSecurity(boolean isFirstWhereClause, List<Row> requestingAuthorities, boolean bindTokens) {
 		List<String> requestingRoles = new ArrayList<>();
 		if (!requestingAuthorities.isEmpty()) {
 			requestingRoles = extractUserTokens(requestingAuthorities);
@@ -283,7 +626,7 @@ public class SecurityService {
 			}
 		}
 
-		final StringBuffer rowSec = new StringBuffer();
+		final StringBuilder rowSec = new StringBuilder();
 		// Falls where-Klausel bereits vorhanden 'where' anfügen, wenn nicht, dann 'and'
 		if (isFirstWhereClause) {
 			rowSec.append("\r\nwhere (");
@@ -295,16 +638,50 @@ public class SecurityService {
 
 		if (!requestingRoles.isEmpty()) {
 			rowSec.append("\r\nor ( SecurityToken IN (");
-			for (String r : requestingRoles) {
-				rowSec.append("'").append(r.replace('#', ' ').trim()).append("',");
+			if (bindTokens) {
+				rowSec.append(String.join(",", Collections.nCopies(bucketSize(requestingRoles.size()), "?")));
+			} else {
+				for (String r : requestingRoles) {
+					rowSec.append("'").append(r.replace('#', ' ').trim()).append("',");
+				}
+				rowSec.deleteCharAt(rowSec.length() - 1);
 			}
-			rowSec.deleteCharAt(rowSec.length() - 1);
 			rowSec.append(") )");
 		}
 		rowSec.append(" )");
 		return rowSec.toString();
 	}
 
+	/**
+	 * Liefert die Werte für die '?' aus {@link #rowLevelSecurity(boolean, List, boolean)}. Die Liste wird bis zur Größe des Buckets mit dem letzten Token
+	 * aufgefüllt, doppelte Werte ändern am Ergebnis der IN-Abfrage nichts.
+	 *
+	 * @param requestingAuthorities
+	 *            Die Rollen des Nutzers, welche ein Recht auf einen Zugriff haben.
+	 * @return Die zu bindenden SecurityTokens in der richtigen Reihenfolge oder eine leere Liste, falls keine gebunden werden müssen.
+	 */
+	public static List<String> rowLevelSecurityParameters(List<Row> requestingAuthorities) {
+		if (requestingAuthorities.isEmpty()) {
+			return new ArrayList<>();
+		}
+		final List<String> parameters = new ArrayList<>();
+		for (String r : extractUserTokens(requestingAuthorities)) {
+			parameters.add(r.replace('#', ' ').trim());
+		}
+		final int bucketSize = bucketSize(parameters.size());
+		while (!parameters.isEmpty() && parameters.size() < bucketSize) {
+			parameters.add(parameters.get(parameters.size() - 1));
+		}
+		return parameters;
+	}
+
+	/**
+	 * @return Die nächste Zweierpotenz, welche größer oder gleich der Anzahl ist.
+	 */
+	private static int bucketSize(int count) {
+		return count <= 1 ? count : Integer.highestOneBit(count - 1) << 1;
+	}
+
 	/**
 	 * @param requestingAuthorities
 	 *            eine Liste an Rows im Format: eine Row = ("ProzedurName","UserSecurityToken","RowLevelSecurity-Bit").
@@ -314,6 +691,7 @@ public class SecurityService {
 	 */
 	public static List<String> extractUserTokens(List<Row> requestingAuthorities) {
 		List<String> requestingRoles = new ArrayList<>();
+		final Set<String> seen = new HashSet<>();
 
 		for (Row authority : requestingAuthorities) {
 			/*
@@ -325,7 +703,7 @@ public class SecurityService {
 			}
 			// Hier sind die Rollen/UserSecurityToken, welche autorisiert sind, auf die Tabelle zuzugreifen.
 			String value = authority.getValues().get(1).getStringValue().trim().toLowerCase();
-			if (!value.isEmpty() && !requestingRoles.contains(value)) {
+			if (!value.isEmpty() && seen.add(value)) {
 				requestingRoles.add(authority.getValues().get(1).getStringValue().toLowerCase());
 			}
 		}
@@ -376,6 +754,36 @@ public class SecurityService {
 		}
 	}
 
+	/**
+	 * Erzeugt aus den Berechtigungen einer Prozedur das TokenSet für {@link #isRowAccessValid(TokenSet, Row, int)}. Wird einmal pro Aufruf der Prozedur
+	 * erzeugt, die Prüfung der einzelnen Rows legt dann keine Strings mehr an.
+	 *
+	 * @param requestingAuthorities
+	 *            eine Liste an Rows im Format: eine Row = ("ProzedurName","UserSecurityToken","RowLevelSecurity-Bit").
+	 * @return Die SecurityTokens des Users als TokenSet.
+	 */
+	public TokenSet getUserTokenSet(List<Row> requestingAuthorities) {
+		return tokenDictionary.tokenSet(extractUserTokens(requestingAuthorities));
+	}
+
+	/**
+	 * Wie {@link #isRowAccessValid(List, Row, int)}, nur mit den SecurityTokens des Users als TokenSet.
+	 *
+	 * @param userSecurityTokens
+	 *            Das TokenSet aus {@link #getUserTokenSet(List)}.
+	 * @param rowToBeChecked
+	 *            Die Row aus dem SqlProcedureResult, welche überprüft werden muss.
+	 * @param securityTokenInColumn
+	 *            Die Spalte als int, in welcher der SecurityToken liegt.
+	 * @return True, falls der SecurityToken der Row zum User gehört (oder keine Row-Level-Security gilt), andernfalls False.
+	 */
+	public boolean isRowAccessValid(TokenSet userSecurityTokens, Row rowToBeChecked, int securityTokenInColumn) {
+		if (userSecurityTokens.isUnrestricted()) {
+			return true;
+		}
+		return userSecurityTokens.allows(rowToBeChecked.getValues().get(securityTokenInColumn).getStringValue());
+	}
+
 	/**
 	 * Updatet die Rollen, welche momentan im SecurityContext für den eingeloggten User hinterlegt sind, anhand folgender Abfrage:<br>
 	 * <code>select
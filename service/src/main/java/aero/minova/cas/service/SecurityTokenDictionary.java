@@ -0,0 +1,103 @@
+package aero.minova.cas.service;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Vergibt für jeden SecurityToken eine feste Nummer. Die SecurityTokens eines Users werden damit als {@link TokenSet} (ein BitSet über diese Nummern)
+ * abgelegt. Die Prüfung einer Row aus dem Ergebnis einer Prozedur ist dann nur noch ein Nachschlagen in der Map und ein Bit-Test, ohne für jede Row einen
+ * neuen String anzulegen.
+ * <p>
+ * Groß- und Kleinschreibung wird wie bisher ignoriert. Nummern werden nur für die Tokens der User vergeben, Tokens aus den Rows werden nur nachgeschlagen.
+ * Die Anzahl der Einträge ist damit durch die Tokens in der Datenbank begrenzt.
+ */
+public class SecurityTokenDictionary {
+
+	/**
+	 * Die SecurityTokens eines Users als BitSet. Darf nach dem Erzeugen nicht mehr verändert werden und kann deshalb von mehreren Threads gelesen werden.
+	 */
+	public static final class TokenSet {
+		private final SecurityTokenDictionary dictionary;
+		private final BitSet tokens;
+		private final boolean unrestricted;
+
+		private TokenSet(SecurityTokenDictionary dictionary, BitSet tokens, boolean unrestricted) {
+			this.dictionary = dictionary;
+			this.tokens = tokens;
+			this.unrestricted = unrestricted;
+		}
+
+		/**
+		 * @return true, falls keine Row-Level-Security gilt und der User alle Rows sehen darf.
+		 */
+		public boolean isUnrestricted() {
+			return unrestricted;
+		}
+
+		/**
+		 * @param securityToken
+		 *            Der SecurityToken einer Row, kann null sein.
+		 * @return true, falls der User die Row sehen darf. Rows ohne SecurityToken darf jeder sehen.
+		 */
+		public boolean allows(String securityToken) {
+			if (unrestricted || securityToken == null) {
+				return true;
+			}
+			final int id = dictionary.lookup(securityToken);
+			return id >= 0 && tokens.get(id);
+		}
+	}
+
+	// Schlüssel: SecurityToken in Kleinbuchstaben, Wert: die vergebene Nummer
+	private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+	// Schlüssel: SecurityToken in der Schreibweise aus der Datenbank, falls diese von den Kleinbuchstaben abweicht, Wert: die Nummer des Tokens
+	private final Map<String, Integer> spellings = new ConcurrentHashMap<>();
+
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	/**
+	 * Erzeugt das TokenSet eines Users.
+	 *
+	 * @param userSecurityTokens
+	 *            Die SecurityTokens, wie sie {@link SecurityService#extractUserTokens(java.util.List)} liefert. Ist die Liste leer, darf der User alle Rows
+	 *            sehen.
+	 * @return Das TokenSet des Users.
+	 */
+	public TokenSet tokenSet(Collection<String> userSecurityTokens) {
+		final BitSet tokens = new BitSet();
+		for (String token : userSecurityTokens) {
+			tokens.set(intern(token));
+		}
+		return new TokenSet(this, tokens, userSecurityTokens.isEmpty());
+	}
+
+	/**
+	 * @return Die Nummer des Tokens. Ist der Token noch unbekannt, wird eine neue Nummer vergeben.
+	 */
+	int intern(String token) {
+		return ids.computeIfAbsent(token.toLowerCase(), t -> nextId.getAndIncrement());
+	}
+
+	/**
+	 * @return Die Nummer des Tokens oder -1, falls der Token keinem User gehört. Nur beim ersten Auftreten einer abweichenden Schreibweise wird der Token in
+	 *         Kleinbuchstaben umgewandelt.
+	 */
+	int lookup(String token) {
+		Integer id = ids.get(token);
+		if (id == null) {
+			id = spellings.get(token);
+		}
+		if (id == null) {
+			id = ids.get(token.toLowerCase());
+			if (id == null) {
+				return -1;
+			}
+			spellings.put(token, id);
+		}
+		return id;
+	}
+}
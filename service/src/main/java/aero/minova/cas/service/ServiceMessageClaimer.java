@@ -0,0 +1,218 @@
+package aero.minova.cas.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.sql.SystemDatabase;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Reserviert offene Nachrichten der xtcasServiceMessage für diesen CAS-Knoten, damit mehrere Knoten an derselben Datenbank eine Nachricht nicht mehrfach
+ * verschicken. Eine Reservierung (ClaimedBy/ClaimedUntil) gilt für {@code aero.minova.queue.lease} Sekunden. Fällt ein Knoten aus, können die anderen
+ * Knoten seine Nachrichten nach Ablauf der Reservierung übernehmen.
+ * <p>
+ * Die Nachrichten eines Dienstes werden in der Reihenfolge ihrer Erstellung verschickt. Eine Nachricht wird deshalb nicht reserviert, solange eine ältere
+ * Nachricht desselben Dienstes von irgendeinem Knoten reserviert ist. Schlägt der Versand fehl, bleibt die Nachricht bis zum nächsten Versuch reserviert
+ * (siehe {@link QueueService#deliverMessages}). So warten alle Knoten die Wartezeit ab, bevor sie den Dienst erneut ansprechen.
+ * <p>
+ * Bei Postgres werden die Zeilen mit FOR UPDATE SKIP LOCKED und bei MSSQL mit den Hints UPDLOCK und READPAST gelesen, sodass gleichzeitig reservierende
+ * Knoten sich gegenseitig überspringen statt zu warten. Bei allen anderen Datenbanken (z.B. H2) schützt nur die Bedingung auf ClaimedUntil im Update: Ein
+ * Knoten erhält nur die Zeilen, welche er selbst geändert hat.
+ */
+@Component
+public class ServiceMessageClaimer {
+
+	private static final String PENDING_CONDITION = "IsSent = ? and Failed = ? and LastAction > 0 and (ClaimedUntil is null or ClaimedUntil < ?)";
+
+	// Eine ältere, noch nicht verschickte Nachricht desselben Dienstes ist reserviert.
+	private static final String EARLIER_MESSAGE_CLAIMED = "exists (select 1 from xtcasServiceMessage earlier where earlier.CASServiceKey = "
+			+ "xtcasServiceMessage.CASServiceKey and earlier.KeyLong < xtcasServiceMessage.KeyLong and earlier.IsSent = ? and earlier.Failed = ? "
+			+ "and earlier.LastAction > 0 and earlier.ClaimedUntil >= ?)";
+
+	@Autowired
+	CustomLogger logger;
+
+	@Autowired
+	SystemDatabase systemDatabase;
+
+	// Die Kennung dieses Knotens in ClaimedBy. Ist sie leer, wird beim Start eine zufällige Kennung vergeben.
+	@Value("${aero.minova.queue.node:}")
+	String nodeId;
+
+	// Wie lange eine Reservierung in Sekunden gilt. Muss länger sein, als das Verschicken der reservierten Nachrichten dauert.
+	@Value("${aero.minova.queue.lease:300}")
+	long leaseSeconds;
+
+	// Der Dialekt ändert sich zur Laufzeit nicht.
+	boolean mssql;
+	boolean postgres;
+
+	@PostConstruct
+	void init() {
+		mssql = systemDatabase.isSQLDatabase();
+		postgres = systemDatabase.isPostgresDatabase();
+		if (nodeId == null || nodeId.isBlank()) {
+			nodeId = UUID.randomUUID().toString();
+		}
+	}
+
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Reserviert die ältesten offenen Nachrichten für diesen Knoten.
+	 *
+	 * @param limit
+	 *            Die maximale Anzahl an Nachrichten.
+	 * @param excludedServices
+	 *            Die KeyLongs der Dienste, deren Nachrichten gerade nicht reserviert werden sollen, z.B. weil der Dienst nicht erreichbar ist.
+	 * @return Die KeyLongs der reservierten Nachrichten in der Reihenfolge ihrer Erstellung. Kann bei einem Fehler leer sein, dann wird es beim nächsten
+	 *         Durchlauf erneut versucht.
+	 */
+	public List<Integer> claim(int limit, Collection<Integer> excludedServices) {
+		final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		final Timestamp leaseEnd = Timestamp.valueOf(LocalDateTime.now().plusSeconds(leaseSeconds));
+		final Connection connection = systemDatabase.getConnection();
+		try {
+			final List<Integer> candidates = new ArrayList<>();
+			try (PreparedStatement select = connection.prepareStatement(selectCandidatesString(excludedServices.size()))) {
+				int parameterIndex = 1;
+				if (mssql) {
+					select.setInt(parameterIndex++, limit);
+				}
+				for (int i = 0; i < 2; i++) {
+					// PENDING_CONDITION und EARLIER_MESSAGE_CLAIMED
+					select.setBoolean(parameterIndex++, false);
+					select.setBoolean(parameterIndex++, false);
+					select.setTimestamp(parameterIndex++, now);
+				}
+				for (Integer serviceKey : excludedServices) {
+					select.setInt(parameterIndex++, serviceKey);
+				}
+				if (!mssql) {
+					select.setInt(parameterIndex, limit);
+				}
+				try (ResultSet resultSet = select.executeQuery()) {
+					while (resultSet.next()) {
+						candidates.add(resultSet.getInt(1));
+					}
+				}
+			}
+			if (candidates.isEmpty()) {
+				connection.commit();
+				return Collections.emptyList();
+			}
+
+			try (PreparedStatement update = connection.prepareStatement(
+					"update xtcasServiceMessage set ClaimedBy = ?, ClaimedUntil = ? where KeyLong = ? and (ClaimedUntil is null or ClaimedUntil < ?)")) {
+				for (Integer messageKey : candidates) {
+					update.setString(1, nodeId);
+					update.setTimestamp(2, leaseEnd);
+					update.setInt(3, messageKey);
+					update.setTimestamp(4, now);
+					update.addBatch();
+				}
+				update.executeBatch();
+			}
+			// Manche Treiber liefern für einen Batch nur SUCCESS_NO_INFO statt der geänderten Zeilen. Welche Nachrichten dieser Knoten gewonnen hat, wird
+			// deshalb in derselben Transaktion nachgelesen.
+			final List<Integer> claimed = new ArrayList<>(candidates.size());
+			try (PreparedStatement select = connection.prepareStatement("select KeyLong from xtcasServiceMessage where ClaimedBy = ? and KeyLong in ("
+					+ String.join(",", Collections.nCopies(candidates.size(), "?")) + ") order by KeyLong")) {
+				select.setString(1, nodeId);
+				for (int i = 0; i < candidates.size(); i++) {
+					select.setInt(i + 2, candidates.get(i));
+				}
+				try (ResultSet resultSet = select.executeQuery()) {
+					while (resultSet.next()) {
+						claimed.add(resultSet.getInt(1));
+					}
+				}
+			}
+			connection.commit();
+			if (!claimed.isEmpty()) {
+				logger.logQueueService("Node " + nodeId + " claimed " + claimed.size() + " messages");
+			}
+			return claimed;
+		} catch (SQLException e) {
+			rollback(connection);
+			logger.logError("Could not claim messages for node " + nodeId + ".", e);
+			return Collections.emptyList();
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+
+	/**
+	 * Gibt die Reservierung von Nachrichten dieses Knotens wieder frei, damit sie sofort von einem anderen Knoten verschickt werden können.
+	 *
+	 * @param messageKeys
+	 *            Die KeyLongs der Nachrichten.
+	 */
+	public void release(Collection<Integer> messageKeys) {
+		if (messageKeys.isEmpty()) {
+			return;
+		}
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement update = connection
+				.prepareStatement("update xtcasServiceMessage set ClaimedBy = null, ClaimedUntil = null where KeyLong = ? and ClaimedBy = ?")) {
+			for (Integer messageKey : messageKeys) {
+				update.setInt(1, messageKey);
+				update.setString(2, nodeId);
+				update.addBatch();
+			}
+			update.executeBatch();
+			connection.commit();
+		} catch (SQLException e) {
+			rollback(connection);
+			// Die Reservierung läuft nach aero.minova.queue.lease Sekunden von selbst ab.
+			logger.logError("Could not release messages " + messageKeys + " of node " + nodeId + ".", e);
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+
+	String selectCandidatesString(int excludedServices) {
+		final StringBuilder sb = new StringBuilder();
+		if (mssql) {
+			sb.append("select top (?) KeyLong from xtcasServiceMessage with (updlock, readpast, rowlock) where ");
+		} else {
+			sb.append("select KeyLong from xtcasServiceMessage where ");
+		}
+		sb.append(PENDING_CONDITION).append(" and not ").append(EARLIER_MESSAGE_CLAIMED);
+		if (excludedServices > 0) {
+			sb.append(" and CASServiceKey not in (").append(String.join(",", Collections.nCopies(excludedServices, "?"))).append(")");
+		}
+		sb.append(" order by KeyLong");
+		if (!mssql) {
+			sb.append(" limit ?");
+		}
+		if (postgres) {
+			sb.append(" for update skip locked");
+		}
+		return sb.toString();
+	}
+
+	private void rollback(Connection connection) {
+		try {
+			connection.rollback();
+		} catch (SQLException e) {
+			logger.logError("Connection '" + connection + "' could not be rolled back: ", e);
+		}
+	}
+}
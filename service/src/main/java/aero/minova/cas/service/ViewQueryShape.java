@@ -0,0 +1,111 @@
+package aero.minova.cas.service;
+
+import java.util.List;
+import java.util.Objects;
+
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.DataType;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.Value;
+
+/**
+ * Baut den Schlüssel für den SQL-Cache des {@link ViewService}. Der generierte SQL-String hängt nicht von den konkreten Werten ab, sondern nur von der
+ * "Form" der Anfrage: View-Name, Spalten, pro Zelle Regel und Art des Werts, die AND-Flags, Limit/Seite und die Anzahl der gebundenen SecurityTokens der
+ * RowLevelSecurity. Die Werte und die SecurityTokens selbst werden erst über {@link aero.minova.cas.sql.SqlUtils#fillPreparedViewString} gebunden.
+ * <p>
+ * Alle Strings werden mit ihrer Länge vorangestellt in den Schlüssel geschrieben, damit sich zwei unterschiedliche Anfragen nie denselben Schlüssel teilen.
+ */
+final class ViewQueryShape {
+
+	private ViewQueryShape() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @param kind
+	 *            Art der Abfrage, z.B. "view", "paged" oder "count".
+	 * @param params
+	 *            Die Anfrage-Tabelle.
+	 * @param maxRows
+	 *            Limit bzw. maxRows der Abfrage.
+	 * @param page
+	 *            Die angefragte Seite, 0 falls nicht relevant.
+	 * @param authorities
+	 *            Die Authorities für die RowLevelSecurity.
+	 * @return Den Schlüssel oder null, falls die Anfrage nicht gecacht werden darf (z.B. weil sie ungültig ist und der Fehler beim Aufbau geworfen werden
+	 *         muss).
+	 */
+	static String of(String kind, Table params, int maxRows, int page, List<Row> authorities) {
+		if (params.getName() == null || params.getName().isBlank()) {
+			return null;
+		}
+		final StringBuilder key = new StringBuilder(128);
+		append(key, kind);
+		append(key, params.getName());
+		key.append(maxRows).append('/').append(page).append('|');
+
+		for (Column column : params.getColumns()) {
+			append(key, column.getName());
+			key.append(column.getType()).append(';');
+		}
+		key.append('|');
+
+		final int andIndex = params.findColumnPosition(Column.AND_FIELD_NAME);
+		for (Row row : params.getRows()) {
+			if (row.getValues().size() > params.getColumns().size()) {
+				return null;
+			}
+			key.append('[');
+			for (int i = 0; i < row.getValues().size(); i++) {
+				final Value value = row.getValues().get(i);
+				if (i == andIndex) {
+					key.append(value != null && Boolean.TRUE.equals(value.getBooleanValue()) ? 'A' : 'O');
+				} else if (!appendCell(key, value)) {
+					return null;
+				}
+			}
+			key.append(']');
+		}
+		key.append('|');
+
+		// Siehe SecurityService#rowLevelSecurity: ohne Authorities wird nur nach SecurityToken IS NULL gefiltert, sonst hängt der String nur von der
+		// Anzahl der gebundenen Tokens ab.
+		if (authorities.isEmpty()) {
+			key.append('-');
+		} else {
+			key.append('t').append(SecurityService.rowLevelSecurityParameters(authorities).size());
+		}
+		return key.toString();
+	}
+
+	private static boolean appendCell(StringBuilder key, Value value) {
+		if (value == null) {
+			key.append('n');
+			return true;
+		}
+		if (value.getValue() == null) {
+			return false;
+		}
+		final String rule = value.getRule();
+		final String stringValue = value.getValue().toString();
+		key.append(value.getType()).append(':');
+		append(key, Objects.toString(rule, ""));
+		// MssqlViewService prüft mit trim, JOOQViewService mit isBlank auf leere Werte. Die beiden unterscheiden sich bei Steuer- und Unicode-Zeichen.
+		key.append(stringValue.trim().isEmpty() ? 'e' : '-').append(stringValue.isBlank() ? 'b' : '-');
+		if (rule != null && (rule.contains("in") || rule.contains("between"))) {
+			// Für jeden Wert der Liste gibt es ein eigenes Fragezeichen. MssqlViewService zählt die Werte nach einem trim, JOOQViewService davor.
+			key.append('l').append(stringValue.trim().split(",").length).append('/').append(stringValue.split(",").length);
+		} else if (value.getType() == DataType.STRING && (stringValue.contains("%") || stringValue.contains("_"))) {
+			key.append('w');
+		} else {
+			key.append('v');
+		}
+		key.append(';');
+		return true;
+	}
+
+	private static void append(StringBuilder key, String value) {
+		key.append(value.length()).append(':').append(value);
+	}
+}
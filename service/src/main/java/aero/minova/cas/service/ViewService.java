@@ -1,22 +1,38 @@
 package aero.minova.cas.service;
 
+import java.io.Writer;
+import java.lang.reflect.Type;
 import java.sql.CallableStatement;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
 import aero.minova.cas.CustomLogger;
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.ErrorMessage;
 import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.api.domain.Table;
 import aero.minova.cas.api.domain.TableException;
 import aero.minova.cas.api.domain.TableMetaData;
 import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.cache.ExpiringCache;
+import aero.minova.cas.sql.SqlTrace;
 import aero.minova.cas.sql.SqlUtils;
 import aero.minova.cas.sql.SystemDatabase;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
@@ -25,6 +41,11 @@ import lombok.val;
 @Service
 public class ViewService {
 
+	// So viele Zeilen holt der Treiber beim Streamen auf einmal aus der Datenbank.
+	private static final int STREAMING_FETCH_SIZE = 500;
+
+	private static final Type COLUMN_LIST_TYPE = new TypeToken<List<Column>>() {}.getType();
+
 	ViewServiceInterface viewService;
 
 	@Autowired
@@ -39,6 +60,18 @@ public class ViewService {
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.sql.cache.ttl:3600}")
+	private long sqlCacheTtl;
+
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.sql.cache.size:2000}")
+	private int sqlCacheSize;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	// Schlüssel: die Form der Anfrage (siehe ViewQueryShape), Wert: der fertige SQL-String mit '?' für die Werte
+	private ExpiringCache<String, String> sqlCache;
+
 	@PostConstruct
 	private void init() {
 		if (systemDatabase.isSQLDatabase()) {
@@ -46,79 +79,241 @@ public class ViewService {
 		} else {
 			viewService = new JOOQViewService(systemDatabase, customLogger);
 		}
+		sqlCache = new ExpiringCache<>("viewSql", sqlCacheTtl * 1000, sqlCacheSize, meterRegistry);
 		securityService.setViewService(this);
 	}
 
 	public Table executeView(Table inputTable, List<Row> authoritiesForThisTable) throws TableException {
 		final val connection = systemDatabase.getConnection();
 		Table result = new Table();
-		StringBuilder sb = new StringBuilder();
+		SqlTrace trace = new SqlTrace();
 		try {
 			inputTable = securityService.columnSecurity(inputTable, authoritiesForThisTable);
-			TableMetaData inputMetaData = inputTable.getMetaData();
-			if (inputTable.getMetaData() == null) {
-				inputMetaData = new TableMetaData();
-			}
-			final int page;
-			final int limit;
-			// falls nichts als page angegeben wurde, wird angenommen, dass die erste Seite ausgegeben werden soll
-			if (inputMetaData.getPage() == null) {
-				page = 1;
-			} else if (inputMetaData.getPage() <= 0) {
-				throw new IllegalArgumentException("msg.PageError");
-			} else {
-				page = inputMetaData.getPage();
-			}
-			// falls nichts als Size/maxRows angegeben wurde, wird angenommen, dass alles ausgegeben werden soll; alles = 0
-			if (inputMetaData.getLimited() == null) {
-				limit = 0;
-			} else if (inputMetaData.getLimited() < 0) {
-				throw new IllegalArgumentException("msg.LimitError");
-			} else {
-				limit = inputMetaData.getLimited();
-			}
+			final int page = readPage(inputTable);
+			final int limit = readLimit(inputTable);
 
-			// POSTGRE SQL verwendet RowCount als Funktion, wesewegen es nicht so genutzt werden kann, wie wir es bei der pagingWithSeek-Methode verwenden.
-			// Deshalb verwenden wir stattdessen die prepareViewString-Methode, welche minimal langsamer ist.
-			// Die pagingWithSeek-Methode benötigt immer einen KeyLong in der Anfrage. Es gibt allerdings auch einige Anfragen, die keinen KeyLong benötigen,
-			// weswegen dann Fehlermeldungen geworfen werden. Deshalb wird ab jetzt einfach die prepareViewString-Methode verwendet.
-			String viewQuery = viewService.prepareViewString(inputTable, false, 0, authoritiesForThisTable);
-			val preparedStatement = connection.prepareCall(viewQuery);
-			try (PreparedStatement preparedViewStatement = fillPreparedViewString(inputTable, preparedStatement, viewQuery, sb)) {
-				customLogger.logSql("Executing statements: " + sb);
+			final String viewQuery = prepareQuery(inputTable, limit, page, authoritiesForThisTable);
+			try (CallableStatement preparedStatement = connection.prepareCall(viewQuery);
+					PreparedStatement preparedViewStatement = fillPreparedViewString(inputTable, preparedStatement, viewQuery, trace,
+							authoritiesForThisTable)) {
 				try (ResultSet resultSet = preparedViewStatement.executeQuery()) {
-
 					result = SqlUtils.convertSqlResultToTable(inputTable, resultSet, customLogger.userLogger, this);
+				}
+			}
 
-					int totalResults = 0;
-					if (!result.getRows().isEmpty()) {
-						totalResults = result.getRows().size();
-					}
+			final int totalResults = calculateTotalResults(connection, inputTable, authoritiesForThisTable, limit, page, result.getRows().size(), trace);
+			result.fillMetaData(result, limit, totalResults, page);
+			customLogger.logSql("Executed statements: ", trace);
+		} catch (Throwable e) {
+			customLogger.logError("Statement could not be executed: " + trace, e);
+			throw new TableException(e);
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+		return result;
+	}
 
-					// Falls es ein Limit gibt, müssen die auszugebenden Rows begrenzt werden.
-					if (limit > 0) {
-						List<Row> resultRows = new ArrayList<>();
-						for (int i = 0; i < limit; i++) {
-							int rowPointer = i + (limit * (page - 1));
-							if (rowPointer < result.getRows().size()) {
-								resultRows.add(result.getRows().get(rowPointer));
-							}
+	/**
+	 * Wie {@link #executeView(Table, List)}, nur dass die Zeilen direkt aus dem ResultSet in den Writer geschrieben werden, ohne vorher eine komplette
+	 * {@link Table} aufzubauen. Der Speicherverbrauch ist dadurch unabhängig von der Anzahl der Zeilen. Das JSON hat dasselbe Format wie eine per Gson
+	 * serialisierte Table, die Values werden also auch über den {@link aero.minova.cas.api.domain.ValueSerializer} geschrieben. Einziger Unterschied: die
+	 * metaData stehen am Ende, da die Anzahl der Zeilen erst dann bekannt ist.
+	 * <p>
+	 * Name und columns werden vor den Zeilen geschrieben. Schlägt die Abfrage fehl, nachdem die ersten Zeichen geschrieben wurden, ist der Status 200 bereits
+	 * verschickt. Dann wird das rows-Array geschlossen und statt der metaData eine returnErrorMessage angehängt, damit der Client den Abbruch erkennt. Die
+	 * Exception wird trotzdem weitergeworfen, sodass die Verbindung abgebrochen wird.
+	 *
+	 * @param inputTable
+	 *            die Table, welche vom getIndexView aufgerufen wurde
+	 * @param authoritiesForThisTable
+	 *            Eine Liste an autorisierten UserGruppen. Wird für die RowLevelSecurity benötigt.
+	 * @param gson
+	 *            Das Gson mit den Value-(De-)Serializern.
+	 * @param out
+	 *            Der Writer, in den das Ergebnis geschrieben wird.
+	 * @throws TableException
+	 *             Falls die Abfrage nicht ausgeführt werden konnte. Wurden bereits Zeilen geschrieben, endet die Antwort mit der returnErrorMessage.
+	 */
+	public void streamView(Table inputTable, List<Row> authoritiesForThisTable, Gson gson, Writer out) throws TableException {
+		final val connection = systemDatabase.getConnection();
+		SqlTrace trace = new SqlTrace();
+		final JsonWriter json = gson.newJsonWriter(out);
+		boolean started = false;
+		boolean rowsOpen = false;
+		boolean rowOpen = false;
+		try {
+			inputTable = securityService.columnSecurity(inputTable, authoritiesForThisTable);
+			final int page = readPage(inputTable);
+			final int limit = readLimit(inputTable);
+
+			Table outputTable = new Table();
+			outputTable.setName(inputTable.getName());
+			outputTable.setColumns(inputTable.getColumns().stream()//
+					.filter(column -> !Objects.equals(column.getName(), Column.AND_FIELD_NAME))//
+					.collect(Collectors.toList()));
+
+			int rowCount = 0;
+			final String viewQuery = prepareQuery(inputTable, limit, page, authoritiesForThisTable);
+			try (CallableStatement preparedStatement = connection.prepareCall(viewQuery);
+					PreparedStatement preparedViewStatement = fillPreparedViewString(inputTable, preparedStatement, viewQuery, trace,
+							authoritiesForThisTable)) {
+				// Ohne FetchSize laden manche Treiber (z.B. Postgres) das komplette Ergebnis in den Speicher.
+				preparedViewStatement.setFetchSize(STREAMING_FETCH_SIZE);
+				try (ResultSet resultSet = preparedViewStatement.executeQuery()) {
+					started = true;
+					json.beginObject();
+					json.name("name").value(outputTable.getName());
+					json.name("columns");
+					gson.toJson(outputTable.getColumns(), COLUMN_LIST_TYPE, json);
+					json.name("rows").beginArray();
+					rowsOpen = true;
+					while (resultSet.next()) {
+						Row row = SqlUtils.convertSqlResultToRow(outputTable, resultSet, customLogger.userLogger, this);
+						json.beginObject().name("values").beginArray();
+						rowOpen = true;
+						for (Value value : row.getValues()) {
+							gson.toJson(value, Value.class, json);
 						}
-						result.setRows(resultRows);
+						json.endArray().endObject();
+						rowOpen = false;
+						rowCount++;
 					}
-
-					result.fillMetaData(result, limit, totalResults, page);
+					json.endArray();
+					rowsOpen = false;
 				}
-			} finally {
-				preparedStatement.close();
 			}
+
+			final int totalResults = calculateTotalResults(connection, inputTable, authoritiesForThisTable, limit, page, rowCount, trace);
+			outputTable.fillMetaData(outputTable, limit, totalResults, page);
+			json.name("metaData");
+			gson.toJson(outputTable.getMetaData(), TableMetaData.class, json);
+			json.endObject();
+			json.flush();
+			customLogger.logSql("Executed statements: ", trace);
 		} catch (Throwable e) {
-			customLogger.logError("Statement could not be executed: " + sb, e);
+			customLogger.logError("Statement could not be executed: " + trace, e);
+			if (started) {
+				writeStreamError(gson, json, rowsOpen, rowOpen, e);
+			}
 			throw new TableException(e);
 		} finally {
 			systemDatabase.closeConnection(connection);
 		}
-		return result;
+	}
+
+	/**
+	 * Schließt die angefangene Zeile und das rows-Array und hängt statt der metaData die returnErrorMessage an. Dadurch ist das JSON vollständig und der
+	 * Client erkennt, dass die Zeilen nicht vollständig sind.
+	 */
+	private void writeStreamError(Gson gson, JsonWriter json, boolean rowsOpen, boolean rowOpen, Throwable e) {
+		try {
+			if (rowOpen) {
+				json.endArray().endObject();
+			}
+			if (rowsOpen) {
+				json.endArray();
+			}
+			ErrorMessage error = new ErrorMessage();
+			error.setErrorMessage(new Exception(e.getMessage(), e));
+			json.name("returnErrorMessage");
+			gson.toJson(error, ErrorMessage.class, json);
+			json.endObject();
+			json.flush();
+		} catch (Exception writeError) {
+			// Z.B. wenn der Client die Verbindung bereits geschlossen hat. Dann bleibt nur der Abbruch der Verbindung.
+			customLogger.logError("Error could not be written to the stream.", writeError);
+		}
+	}
+
+	/**
+	 * Falls nichts als page angegeben wurde, wird angenommen, dass die erste Seite ausgegeben werden soll.
+	 */
+	private int readPage(Table inputTable) {
+		TableMetaData inputMetaData = inputTable.getMetaData();
+		if (inputMetaData == null || inputMetaData.getPage() == null) {
+			return 1;
+		} else if (inputMetaData.getPage() <= 0) {
+			throw new IllegalArgumentException("msg.PageError");
+		}
+		return inputMetaData.getPage();
+	}
+
+	/**
+	 * Falls nichts als Size/maxRows angegeben wurde, wird angenommen, dass alles ausgegeben werden soll; alles = 0
+	 */
+	private int readLimit(Table inputTable) {
+		TableMetaData inputMetaData = inputTable.getMetaData();
+		if (inputMetaData == null || inputMetaData.getLimited() == null) {
+			return 0;
+		} else if (inputMetaData.getLimited() < 0) {
+			throw new IllegalArgumentException("msg.LimitError");
+		}
+		return inputMetaData.getLimited();
+	}
+
+	private String prepareQuery(Table inputTable, int limit, int page, List<Row> authoritiesForThisTable) {
+		// POSTGRE SQL verwendet RowCount als Funktion, wesewegen es nicht so genutzt werden kann, wie wir es bei der pagingWithSeek-Methode verwenden.
+		// Die pagingWithSeek-Methode benötigt immer einen KeyLong in der Anfrage. Es gibt allerdings auch einige Anfragen, die keinen KeyLong benötigen,
+		// weswegen dann Fehlermeldungen geworfen werden. Deshalb wird bei einem Limit die preparePagedViewString-Methode (OFFSET/FETCH) verwendet, sodass
+		// nur die angefragte Seite aus der Datenbank gelesen wird.
+		if (limit > 0) {
+			return cachedSql("paged", inputTable, limit, page, authoritiesForThisTable,
+					() -> viewService.preparePagedViewString(inputTable, false, limit, page, authoritiesForThisTable));
+		}
+		return cachedSql("view", inputTable, 0, 0, authoritiesForThisTable,
+				() -> viewService.prepareViewString(inputTable, false, 0, false, authoritiesForThisTable, true));
+	}
+
+	/**
+	 * Liefert den SQL-String für die Anfrage aus dem Cache oder baut ihn über den builder. Da der String nur '?' statt der Werte enthält, kann er für alle
+	 * Anfragen derselben Form wiederverwendet werden. Darf nur für Anfragen ohne autoLike verwendet werden, da autoLike die Werte der Anfrage verändert.
+	 */
+	private String cachedSql(String kind, Table inputTable, int maxRows, int page, List<Row> authorities, Supplier<String> builder) {
+		if (!sqlCache.isEnabled()) {
+			return builder.get();
+		}
+		final String key = ViewQueryShape.of(kind, inputTable, maxRows, page, authorities);
+		if (key == null) {
+			return builder.get();
+		}
+		return sqlCache.computeIfAbsent(key, k -> builder.get());
+	}
+
+	private int calculateTotalResults(Connection connection, Table inputTable, List<Row> authorities, int limit, int page, int rowCount, SqlTrace trace)
+			throws SQLException {
+		if (limit <= 0) {
+			return rowCount;
+		} else if (rowCount > 0 && rowCount < limit) {
+			// Die Seite ist nicht voll, also ist sie die letzte. Die Anzahl lässt sich ohne weitere Abfrage bestimmen.
+			return (page - 1) * limit + rowCount;
+		} else if (rowCount == 0 && page == 1) {
+			return 0;
+		}
+		return countViewResults(connection, inputTable, authorities, trace);
+	}
+
+	/**
+	 * Zählt die Ergebnisse der Anfrage über eine separate count-Abfrage, damit nicht alle Zeilen für die totalResults geladen werden müssen.
+	 *
+	 * @param connection
+	 *            Die Connection, über welche auch die eigentliche Abfrage ausgeführt wurde.
+	 * @param inputTable
+	 *            die Table, welche vom getIndexView aufgerufen wurde
+	 * @param authorities
+	 *            Eine Liste an autorisierten UserGruppen. Wird für die RowLevelSecurity benötigt.
+	 * @param trace
+	 *            Der SqlTrace der Anfrage, an welchen die count-Abfrage angehängt wird.
+	 * @return Die Anzahl aller Zeilen, welche die Anfrage ohne Limit liefern würde.
+	 */
+	private int countViewResults(Connection connection, Table inputTable, List<Row> authorities, SqlTrace trace) throws SQLException {
+		final String countQuery = cachedSql("count", inputTable, 0, 0, authorities,
+				() -> viewService.prepareViewString(inputTable, false, 0, true, authorities, true));
+		try (CallableStatement preparedStatement = connection.prepareCall(countQuery);
+				PreparedStatement preparedCountStatement = fillPreparedViewString(inputTable, preparedStatement, countQuery, trace, authorities)) {
+			try (ResultSet resultSet = preparedCountStatement.executeQuery()) {
+				return resultSet.next() ? resultSet.getInt(1) : 0;
+			}
+		}
 	}
 
 	/**
@@ -130,12 +325,32 @@ public class ViewService {
 	 *            das Prepared Statement, welches nur noch befüllt werden muss
 	 * @param query
 	 *            Das bereits fertig aufgebaute Sql Statement, welches statt der Werte '?' enthält. Diese werden hier 'ersetzt'.
-	 * @param sb
-	 *            Ein StringBuilder zum Loggen der inputParameter.
+	 * @param trace
+	 *            Der SqlTrace zum Loggen der inputParameter.
 	 */
+	public PreparedStatement fillPreparedViewString(Table inputTable, CallableStatement preparedStatement, String query, SqlTrace trace) {
+		return SqlUtils.fillPreparedViewString(inputTable, preparedStatement, query, trace, customLogger.errorLogger);
+	}
+
+	/**
+	 * Wie {@link #fillPreparedViewString(Table, CallableStatement, String, SqlTrace)}, die Parameter werden als Text an den StringBuilder gehängt.
+	 */
+	@Deprecated
 	public PreparedStatement fillPreparedViewString(Table inputTable, CallableStatement preparedStatement, String query, StringBuilder sb) {
 		return SqlUtils.fillPreparedViewString(inputTable, preparedStatement, query, sb, customLogger.errorLogger);
+	}
 
+	/**
+	 * Wie {@link #fillPreparedViewString(Table, CallableStatement, String, SqlTrace)}, nur für Abfragen, deren RowLevelSecurity mit gebundenen
+	 * SecurityTokens aufgebaut wurde. Diese werden nach den Werten der inputTable gebunden.
+	 *
+	 * @param authorities
+	 *            Eine Liste an autorisierten UserGruppen, mit welchen die Abfrage aufgebaut wurde.
+	 */
+	private PreparedStatement fillPreparedViewString(Table inputTable, CallableStatement preparedStatement, String query, SqlTrace trace,
+			List<Row> authorities) {
+		return SqlUtils.fillPreparedViewString(inputTable, preparedStatement, query, trace, customLogger.errorLogger,
+				SecurityService.rowLevelSecurityParameters(authorities));
 	}
 
 	@Deprecated
@@ -188,7 +403,7 @@ public class ViewService {
 	 * @return Das Ergebnis der Abfrage.
 	 */
 	public Table unsecurelyGetIndexView(Table inputTable) {
-		StringBuilder sb = new StringBuilder();
+		SqlTrace trace = new SqlTrace();
 		List<Row> userGroups = new ArrayList<>();
 		Row inputRow = new Row();
 		inputRow.addValue(new Value("", null));
@@ -197,17 +412,17 @@ public class ViewService {
 		userGroups.add(inputRow);
 		Table result = new Table();
 		final val connection = systemDatabase.getConnection();
-		final String viewQuery = prepareViewString(inputTable, false, ViewServiceInterface.IF_LESS_THAN_ZERO_THEN_MAX_ROWS, false, userGroups);
+		final String viewQuery = cachedSql("view", inputTable, ViewServiceInterface.IF_LESS_THAN_ZERO_THEN_MAX_ROWS, 0, userGroups,
+				() -> viewService.prepareViewString(inputTable, false, ViewServiceInterface.IF_LESS_THAN_ZERO_THEN_MAX_ROWS, false, userGroups, true));
 		try (final var preparedStatement = connection.prepareCall(viewQuery)) {
-			try (PreparedStatement preparedViewStatement = SqlUtils.fillPreparedViewString(inputTable, preparedStatement, viewQuery, sb,
-					customLogger.errorLogger)) {
-				customLogger.logPrivilege("Executing SQL-statement for view: " + sb);
+			try (PreparedStatement preparedViewStatement = fillPreparedViewString(inputTable, preparedStatement, viewQuery, trace, userGroups)) {
 				try (ResultSet resultSet = preparedViewStatement.executeQuery()) {
 					result = SqlUtils.convertSqlResultToTable(inputTable, resultSet, customLogger.userLogger, this);
 				}
 			}
+			customLogger.logPrivilege("Executed SQL-statement for view: ", trace);
 		} catch (Exception e) {
-			customLogger.logError("Statement could not be executed: " + sb, e);
+			customLogger.logError("Statement could not be executed: " + trace, e);
 			throw new RuntimeException(e);
 		} finally {
 			systemDatabase.closeConnection(connection);
@@ -2,6 +2,7 @@ package aero.minova.cas.service;
 
 import java.util.List;
 
+import aero.minova.cas.api.domain.Column;
 import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.api.domain.Table;
 
@@ -30,6 +31,41 @@ public interface ViewServiceInterface {
 	 */
 	public String pagingWithSeek(Table params, boolean autoLike, int maxRows, boolean count, int page, List<Row> authorities);
 
+	/**
+	 * Baut eine Abfrage, welche nur die angefragte Seite aus der Datenbank liest (OFFSET/FETCH bzw. LIMIT/OFFSET). Im Gegensatz zu
+	 * {@link #pagingWithSeek(Table, boolean, int, boolean, int, List)} wird kein KeyLong in der View vorausgesetzt. Ist ein KeyLong in den angefragten Spalten
+	 * enthalten, wird danach sortiert, damit die Seiten stabil bleiben und die Datenbank den Index nutzen kann. Ohne KeyLong wird keine eigene Sortierung
+	 * erzwungen (MSSQL: order by (select null)), da eine Sortierung nach beliebigen Spalten teuer ist, bei text/ntext/image/xml fehlschlägt und die
+	 * Reihenfolge der ersten Seite ändert. Die Seiten entsprechen dann der Reihenfolge, in der die Datenbank die Zeilen liefert, wie beim Lesen ohne Limit.
+	 * Die SecurityTokens der RowLevelSecurity werden als Parameter gebunden, siehe {@link SecurityService#rowLevelSecurityParameters(List)}.
+	 *
+	 * @param params
+	 *            Suchzeilen (z.B. Suchparameter), wobei auch ein Spezialfeld mit dem Namen 'AND' genutzt werden kann, um die Kriterien zu verknüpfen
+	 * @param autoLike
+	 *            wenn true, dann werden alle String-Parameter, die noch kein % haben, mit einem '%' am Ende versehen
+	 * @param limit
+	 *            Anzahl der Zeilen pro Seite, muss größer als 0 sein
+	 * @param page
+	 *            Die Seite, welche man zurückerhalten möchte, beginnend bei 1.
+	 * @param authorities
+	 *            Eine Liste an autorisierten UserGruppen. Wird für die RowLevelSecurity benötigt.
+	 * @return Präparierter View-String, der ausgeführt werden kann
+	 */
+	public String preparePagedViewString(Table params, boolean autoLike, int limit, int page, List<Row> authorities);
+
+	/**
+	 * @param params
+	 *            Die Anfrage-Tabelle.
+	 * @return Den Namen der KeyLong-Spalte, falls diese in den angefragten Spalten enthalten ist, sonst null.
+	 */
+	static String findOrderKey(Table params) {
+		return params.getColumns().stream()//
+				.map(Column::getName)//
+				.filter(name -> "KeyLong".equalsIgnoreCase(name))//
+				.findFirst()//
+				.orElse(null);
+	}
+
 	/**
 	 * @param params
 	 *            Suchzeilen (z.B. Suchparameter), wobei auch ein Spezialfeld mit dem Namen 'AND' genutzt werden kann, um die Kriterien zu verknüpfen
@@ -46,5 +82,17 @@ public interface ViewServiceInterface {
 	 * @throws IllegalArgumentException
 	 * @author wild
 	 */
-	public String prepareViewString(Table params, boolean autoLike, int maxRows, boolean count, List<Row> authorities);
+	default String prepareViewString(Table params, boolean autoLike, int maxRows, boolean count, List<Row> authorities) {
+		return prepareViewString(params, autoLike, maxRows, count, authorities, false);
+	}
+
+	/**
+	 * Wie {@link #prepareViewString(Table, boolean, int, boolean, List)}.
+	 *
+	 * @param bindRowLevelSecurity
+	 *            true, wenn die SecurityTokens der RowLevelSecurity als Parameter gebunden werden sollen. Dann müssen die Werte aus
+	 *            {@link SecurityService#rowLevelSecurityParameters(List)} nach den Werten der Where-Klausel gebunden werden.
+	 * @return Präparierter View-String, der ausgeführt werden kann
+	 */
+	public String prepareViewString(Table params, boolean autoLike, int maxRows, boolean count, List<Row> authorities, boolean bindRowLevelSecurity);
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package aero.minova.cas.service.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Die xvcasUserSecurity mit einer Zeile pro Privileg und einzelnem SecurityToken. Wird vom {@link aero.minova.cas.service.PrivilegeTokenTable} gepflegt und
+ * darf nicht direkt geändert werden.
+ */
+@Entity
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+@Table(name = "xtcasPrivilegeToken", indexes = { @Index(name = "UQ_xtcasPrivilegeToken", columnList = "PrivilegeKeyText, SecurityToken", unique = true) })
+public class PrivilegeToken extends DataEntity {
+
+	@NotNull
+	@Size(max = 200)
+	@Column(name = "PrivilegeKeyText", length = 200)
+	private String privilegeKeyText;
+
+	@NotNull
+	@Size(max = 250)
+	@Column(name = "SecurityToken", length = 250)
+	private String securityToken;
+
+	@NotNull
+	@Column(name = "RowLevelSecurity")
+	private boolean rowLevelSecurity = false;
+}
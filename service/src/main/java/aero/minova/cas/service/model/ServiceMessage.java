@@ -9,6 +9,7 @@ import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -45,4 +46,12 @@ public class ServiceMessage extends DataEntity {
 	@NotNull
 	@Column(name = "Failed")
 	private boolean failed = false;
+
+	// Der CAS-Knoten, welcher die Nachricht gerade verschickt. Siehe ServiceMessageClaimer.
+	@Size(max = 100)
+	@Column(name = "ClaimedBy", length = 100)
+	private String claimedBy;
+
+	@Column(name = "ClaimedUntil")
+	private LocalDateTime claimedUntil;
 }
\ No newline at end of file
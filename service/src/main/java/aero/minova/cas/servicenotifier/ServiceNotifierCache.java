@@ -15,6 +15,7 @@ import jakarta.annotation.PostConstruct;
 
 // @Component - Der Cache wird bisher nicht verwendet, da er momentan auch noch nicht benötigt wird.
 // Außerdem würde er, wenn er angeschalten ist, zu Testfehlern führen (aufgrund der PostConstruct-Annotation), welche schwierig zu lösen sind und wofür wir momentan keine Zeit haben.
+// Die Maps werden inzwischen von ServiceNotifierService#rebuildIndex beim Start aus der Datenbank aufgebaut.
 @Deprecated
 public class ServiceNotifierCache {
 
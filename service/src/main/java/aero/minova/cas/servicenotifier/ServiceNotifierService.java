@@ -1,11 +1,15 @@
 package aero.minova.cas.servicenotifier;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -55,12 +59,20 @@ public class ServiceNotifierService {
 	/**
 	 * Enthält Tupel aus Prozedurenamen und Tabellennamen. Wird eine der enthaltenen Prozeduren ausgeführt, muss der dazugehörige Dienst angetriggert werden.
 	 */
-	protected Map<String, List<String>> servicenotifier = new HashMap<>();
+	protected Map<String, List<String>> servicenotifier = new ConcurrentHashMap<>();
 
 	/**
 	 * Enthält Tupel aus Dienstnamen und Topics. Wird eine der enthaltenen Topics verändert, muss der dazugehörige Dienst angetriggert werden.
 	 */
-	protected Map<String, List<String>> newsfeeds = new HashMap<>();
+	protected Map<String, List<String>> newsfeeds = new ConcurrentHashMap<>();
+
+	/**
+	 * Die aktiven NewsfeedListener (inklusive CASServices) pro Topic. Die Listen werden nie verändert, sondern bei jeder Änderung ersetzt. Damit kann der
+	 * QueueService ohne Sperre und ohne Datenbank-Zugriff lesen. Wird beim Start aus der Datenbank aufgebaut und von den (Un)Register-Methoden aktuell
+	 * gehalten. Änderungen über andere CAS-Knoten kommen erst mit dem nächsten {@link #rebuildIndex()} aus dem Intervall des QueueService
+	 * (aero.minova.check.message.intervall) an.
+	 */
+	private volatile Map<String, List<NewsfeedListener>> topicIndex = new ConcurrentHashMap<>();
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@PostConstruct
@@ -74,6 +86,7 @@ public class ServiceNotifierService {
 			logger.logError("Standard values could not be inserted in table xtcasServiceMessageReceiverLoginType.", e);
 		}
 
+		// Die Extensions legen Einträge in der Datenbank an und verändern die Maps. Sie sind deshalb nicht threadsicher und werden serialisiert.
 		spc.registerExtension("xpcasRegisterService", inputTable -> {
 			try {
 				int keyLong = registerService(inputTable);
@@ -81,7 +94,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, true);
 		spc.registerExtension("xpcasUnregisterService", inputTable -> {
 			try {
 				unregisterService(inputTable);
@@ -89,7 +102,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, true);
 		spc.registerExtension("xpcasRegisterProcedureNewsfeed", inputTable -> {
 			try {
 				registerProcedureNewsfeed(inputTable);
@@ -97,7 +110,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, true);
 		spc.registerExtension("xpcasUnregisterProcedureNewsfeed", inputTable -> {
 			try {
 				unregisterProcedureNewsfeed(inputTable);
@@ -105,7 +118,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, true);
 		spc.registerExtension("xpcasUnregisterProcedureNewsfeedCompletely", inputTable -> {
 			try {
 				unregisterProcedureNewsfeedCompletely(inputTable);
@@ -113,7 +126,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, true);
 		spc.registerExtension("xpcasRegisterNewsfeedListener", inputTable -> {
 			try {
 				registerNewsfeedListener(inputTable);
@@ -121,7 +134,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, true);
 		spc.registerExtension("xpcasUnregisterNewsfeedListener", inputTable -> {
 			try {
 				unregisterNewsfeedListener(inputTable);
@@ -129,9 +142,85 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
+		}, true);
+	}
+
+	/**
+	 * Baut die Maps und den Index der Topics beim Start aus der Datenbank auf, da diese sonst bis zur nächsten Registrierung leer wären.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	void initIndex() {
+		try {
+			rebuildIndex();
+		} catch (Exception e) {
+			logger.logError("Error while trying to initialize the newsfeed index!", e);
+		}
+	}
+
+	/**
+	 * Liest alle aktiven ProcedureNewsfeeds und NewsfeedListener aus der Datenbank und ersetzt damit die Maps und den Index der Topics.
+	 */
+	public synchronized void rebuildIndex() {
+		final Map<String, List<NewsfeedListener>> newIndex = new ConcurrentHashMap<>();
+		final Map<String, List<String>> newNewsfeeds = new ConcurrentHashMap<>();
+		for (NewsfeedListener listener : newsfeedListenerRepo.findAllByLastActionGreaterThan(0)) {
+			if (listener.getCasService() == null || (listener.getCasService().getLastAction() != null && listener.getCasService().getLastAction() <= 0)) {
+				continue;
+			}
+			newIndex.computeIfAbsent(listener.getTopic(), k -> new ArrayList<>()).add(listener);
+			addIfAbsent(newNewsfeeds, listener.getCasService().getKeyText(), listener.getTopic());
+		}
+		newIndex.replaceAll((topic, listeners) -> List.copyOf(listeners));
+
+		final Map<String, List<String>> newServicenotifier = new ConcurrentHashMap<>();
+		for (ProcedureNewsfeed procedureNewsfeed : procedureNewsfeedRepo.findByLastActionGreaterThan(0)) {
+			addIfAbsent(newServicenotifier, procedureNewsfeed.getKeyText(), procedureNewsfeed.getTopic());
+		}
+
+		topicIndex = newIndex;
+		newsfeeds = newNewsfeeds;
+		servicenotifier = newServicenotifier;
+		logger.logQueueService("Newsfeed index rebuilt with " + newIndex.size() + " topics");
+	}
+
+	private static void addIfAbsent(Map<String, List<String>> map, String key, String topic) {
+		final List<String> topics = map.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>());
+		if (!topics.contains(topic)) {
+			topics.add(topic);
+		}
+	}
+
+	/**
+	 * Liefert die Dienste, welche bei einer Änderung des Topics benachrichtigt werden müssen, ohne auf die Datenbank zuzugreifen.
+	 *
+	 * @param topic
+	 *            Der Name des Topics.
+	 * @return Die aktiven NewsfeedListener des Topics. Die Liste darf nicht verändert werden.
+	 */
+	public List<NewsfeedListener> findListeners(String topic) {
+		return topicIndex.getOrDefault(topic, List.of());
+	}
+
+	private synchronized void addToIndex(NewsfeedListener listener) {
+		topicIndex.compute(listener.getTopic(), (topic, listeners) -> {
+			final List<NewsfeedListener> newListeners = listeners == null ? new ArrayList<>() : new ArrayList<>(listeners);
+			newListeners.removeIf(existing -> Objects.equals(existing.getKeyLong(), listener.getKeyLong()));
+			newListeners.add(listener);
+			return List.copyOf(newListeners);
 		});
 	}
 
+	private synchronized void removeFromIndex(String topic, Integer casServiceKey) {
+		for (String indexedTopic : topic == null ? List.copyOf(topicIndex.keySet()) : List.of(topic)) {
+			topicIndex.computeIfPresent(indexedTopic, (t, listeners) -> {
+				final List<NewsfeedListener> newListeners = listeners.stream()//
+						.filter(listener -> !Objects.equals(listener.getCasService().getKeyLong(), casServiceKey))//
+						.toList();
+				return newListeners.isEmpty() ? null : newListeners;
+			});
+		}
+	}
+
 	/**
 	 * Findet Einträge im ServiceMessageReceiverLoginTypeRepository oder legt sie an, falls diese nicht existieren.
 	 * 
@@ -206,6 +295,9 @@ public class ServiceNotifierService {
 			toDelete.setLastAction(-1);
 			casServiceRepo.saveAndFlush(toDelete);
 
+			// Ein abgemeldeter Dienst erhält keine Nachrichten mehr.
+			removeFromIndex(null, toDelete.getKeyLong());
+
 			// Hier wird der Eintrag aus der Datenbank-Tabelle gelöscht.
 		} catch (Exception e) {
 			logger.logError("The service " + serviceName + " could not be unregistered!", e);
@@ -354,6 +446,7 @@ public class ServiceNotifierService {
 				newListener.setTopic(topic);
 
 				newsfeedListenerRepo.saveAndFlush(newListener);
+				addToIndex(newListener);
 			}
 		} catch (Exception e) {
 			logger.logError("Error while trying to register a new newsfeed: ", e);
@@ -385,6 +478,7 @@ public class ServiceNotifierService {
 					toDelete.setLastAction(-1);
 					// Hier wird der Eintrag aus der Datenbank-Tabelle gelöscht. LastAction wird einfach nur auf -1 gesetzt.
 					newsfeedListenerRepo.saveAndFlush(toDelete);
+					removeFromIndex(toDelete.getTopic(), toDelete.getCasService().getKeyLong());
 				}
 			}
 		} catch (Exception e) {
@@ -500,9 +594,9 @@ public class ServiceNotifierService {
 	 * @param topic
 	 *            Der Name der Tabelle, welche durch die Prozedur verändert werden soll.
 	 */
-	public void registerServicenotifier(String procedureName, String topic) {
+	public synchronized void registerServicenotifier(String procedureName, String topic) {
 		if (!servicenotifier.containsKey(procedureName)) {
-			List<String> tables = new ArrayList<>();
+			List<String> tables = new CopyOnWriteArrayList<>();
 			tables.add(topic);
 			servicenotifier.put(procedureName, tables);
 		} else if (servicenotifier.containsKey(procedureName) && !servicenotifier.get(procedureName).contains(topic)) {
@@ -518,7 +612,7 @@ public class ServiceNotifierService {
 	 * @param topic
 	 *            Der Tabellenname, zu welchem die Prozedur entfernt werden soll.
 	 */
-	public void unregisterServicenotifier(String procedureName, String topic) {
+	public synchronized void unregisterServicenotifier(String procedureName, String topic) {
 		if ((servicenotifier.containsKey(procedureName) && servicenotifier.get(procedureName).contains(topic))) {
 			servicenotifier.get(procedureName).remove(topic);
 		}
@@ -533,9 +627,9 @@ public class ServiceNotifierService {
 	 * @param topic
 	 *            Der Name der Tabelle, auf welche gehorcht werden soll
 	 */
-	public void registerNewsfeed(String serviceName, String topic) {
+	public synchronized void registerNewsfeed(String serviceName, String topic) {
 		if (!newsfeeds.containsKey(serviceName)) {
-			List<String> tables = new ArrayList<>();
+			List<String> tables = new CopyOnWriteArrayList<>();
 			tables.add(topic);
 			newsfeeds.put(serviceName, tables);
 		} else if (newsfeeds.containsKey(serviceName) && !newsfeeds.get(serviceName).contains(topic)) {
@@ -551,7 +645,7 @@ public class ServiceNotifierService {
 	 * @param topic
 	 *            Der Name des zu löschenden Topics als String.
 	 */
-	public void unregisterNewsfeed(String serviceName, String topic) {
+	public synchronized void unregisterNewsfeed(String serviceName, String topic) {
 		if ((newsfeeds.containsKey(serviceName) && newsfeeds.get(serviceName).contains(topic))) {
 			newsfeeds.get(serviceName).remove(topic);
 		}
@@ -0,0 +1,150 @@
+package aero.minova.cas.sql;
+
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import aero.minova.cas.CustomLogger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Setzt {@link ExecuteStrategy#DEADLOCK_TRY_AGAIN} um: Wird eine Transaktion als Deadlock-Opfer (MSSQL 1205) oder wegen eines Serialisierungsfehlers
+ * (SQLState 40001, Postgres 40P01) abgebrochen, wird sie nach einer kurzen, zufällig gestreuten und exponentiell wachsenden Pause erneut ausgeführt. Die
+ * Transaktion muss vom Aufrufer vollständig in der übergebenen Funktion gekapselt werden, da die Datenbank sie bereits zurückgerollt hat.
+ * <p>
+ * Die Versuche werden unter 'cas.database.deadlock' mit dem Tag 'outcome' gezählt: retry (erneuter Versuch), recovered (nach einem erneuten Versuch
+ * erfolgreich) und exhausted (alle Versuche aufgebraucht).
+ */
+@Component
+public class DeadlockRetry {
+
+	private static final int MSSQL_DEADLOCK_VICTIM = 1205;
+	private static final String SERIALIZATION_FAILURE = "40001";
+	private static final String POSTGRES_DEADLOCK_DETECTED = "40P01";
+
+	@Autowired
+	CustomLogger customLogger;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	// Wie oft eine Transaktion nach einem Deadlock höchstens wiederholt wird. 0 schaltet die Wiederholung ab.
+	@Value("${aero.minova.database.deadlock.retries:3}")
+	int maxRetries;
+
+	// Die Pause vor dem ersten Wiederholen in Millisekunden. Sie verdoppelt sich mit jedem Versuch bis zum Maximum.
+	@Value("${aero.minova.database.deadlock.backoff:50}")
+	long initialBackoffMillis;
+
+	@Value("${aero.minova.database.deadlock.backoff.max:1000}")
+	long maxBackoffMillis;
+
+	private Counter retries;
+	private Counter recovered;
+	private Counter exhausted;
+
+	@PostConstruct
+	void initMetrics() {
+		if (meterRegistry != null) {
+			retries = Counter.builder("cas.database.deadlock").tag("outcome", "retry").register(meterRegistry);
+			recovered = Counter.builder("cas.database.deadlock").tag("outcome", "recovered").register(meterRegistry);
+			exhausted = Counter.builder("cas.database.deadlock").tag("outcome", "exhausted").register(meterRegistry);
+		}
+	}
+
+	/**
+	 * @return true, wenn Transaktionen nach einem Deadlock wiederholt werden.
+	 */
+	public boolean isEnabled() {
+		return maxRetries > 0;
+	}
+
+	/**
+	 * Führt die Transaktion aus und wiederholt sie, falls sie als Deadlock-Opfer abgebrochen wurde. Alle anderen Fehler werden sofort weitergeworfen.
+	 *
+	 * @param name
+	 *            Der Name der Transaktion für das Log, z.B. der Name der Prozedur.
+	 * @param transaction
+	 *            Die vollständige Transaktion, inklusive Öffnen der Connection und Commit.
+	 * @return Das Ergebnis der Transaktion.
+	 * @throws Exception
+	 *             Der Fehler der Transaktion bzw. des letzten Versuchs.
+	 */
+	public <T> T execute(String name, Callable<T> transaction) throws Exception {
+		for (int attempt = 0;; attempt++) {
+			try {
+				final T result = transaction.call();
+				if (attempt > 0) {
+					count(recovered);
+					customLogger.logSql("Transaction " + name + " succeeded after " + attempt + " deadlock retries");
+				}
+				return result;
+			} catch (Exception e) {
+				if (!isDeadlock(e)) {
+					throw e;
+				}
+				if (attempt >= maxRetries) {
+					if (maxRetries > 0) {
+						count(exhausted);
+					}
+					throw e;
+				}
+				count(retries);
+				final long backoff = backoffMillis(attempt, initialBackoffMillis, maxBackoffMillis);
+				customLogger.logSql("Transaction " + name + " was chosen as deadlock victim, retrying in " + backoff + " ms");
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					e.addSuppressed(interrupted);
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Prüft die Exception und ihre Ursachen auf einen Deadlock oder Serialisierungsfehler.
+	 *
+	 * @param throwable
+	 *            Der aufgetretene Fehler.
+	 * @return true, wenn die Transaktion wiederholt werden kann.
+	 */
+	public static boolean isDeadlock(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+			if (cause instanceof SQLException sqlException) {
+				for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+					if (next.getErrorCode() == MSSQL_DEADLOCK_VICTIM || SERIALIZATION_FAILURE.equals(next.getSQLState())
+							|| POSTGRES_DEADLOCK_DETECTED.equals(next.getSQLState())) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Die Pause wächst exponentiell und wird zufällig zwischen der Hälfte und dem vollen Wert gestreut, damit die beteiligten Transaktionen nicht wieder
+	 * gleichzeitig starten.
+	 */
+	static long backoffMillis(int attempt, long initialBackoffMillis, long maxBackoffMillis) {
+		final long exponential = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 20));
+		if (exponential <= 1) {
+			return Math.max(exponential, 0);
+		}
+		return exponential / 2 + ThreadLocalRandom.current().nextLong(exponential / 2 + 1);
+	}
+
+	private static void count(Counter counter) {
+		if (counter != null) {
+			counter.increment();
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package aero.minova.cas.sql;
+
+import java.util.Arrays;
+
+/**
+ * Merkt sich die ausgeführten SQL-Statements und die gebundenen Parameter für das Log. Bisher wurde für jeden Parameter " ; Position: i, Value: v" an einen
+ * StringBuffer gehängt, auch wenn der SqlLogger ausgeschaltet war. Hier werden nur Position und Referenz des Wertes in Arrays abgelegt. Der Text wird erst
+ * in {@link #toString()} erzeugt, also nur, wenn die Meldung tatsächlich geschrieben wird (siehe
+ * {@link aero.minova.cas.CustomLogger#logSql(String, SqlTrace)}) oder ein Fehler auftritt.
+ * <p>
+ * Die Werte werden nicht kopiert. Es dürfen deshalb nur Werte übergeben werden, die sich danach nicht mehr ändern, z.B.
+ * {@link aero.minova.cas.api.domain.Value#getValue()}. Ein SqlTrace gehört zu genau einer Anfrage und ist nicht thread-safe.
+ */
+public final class SqlTrace {
+
+	private static final byte STATEMENT = 0;
+	private static final byte VALUE = 1;
+	private static final byte SECURITY_TOKEN = 2;
+
+	private byte[] kinds = new byte[16];
+	private int[] positions = new int[16];
+	private Object[] values = new Object[16];
+	private int size = 0;
+	private long start = System.nanoTime();
+
+	/**
+	 * Ein neues Statement. Die folgenden Parameter gehören zu diesem Statement.
+	 */
+	public void statement(String sql) {
+		add(STATEMENT, 0, sql);
+	}
+
+	/**
+	 * @param position
+	 *            Die Position des Parameters im Statement.
+	 * @param value
+	 *            Der gebundene Wert, kann null sein.
+	 */
+	public void bind(int position, Object value) {
+		add(VALUE, position, value);
+	}
+
+	/**
+	 * Wie {@link #bind(int, Object)}, nur für die SecurityTokens der RowLevelSecurity.
+	 */
+	public void bindSecurityToken(int position, String securityToken) {
+		add(SECURITY_TOKEN, position, securityToken);
+	}
+
+	private void add(byte kind, int position, Object value) {
+		if (size == kinds.length) {
+			final int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		kinds[size] = kind;
+		positions[size] = position;
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * @return Der aktuelle Stand, auf welchen mit {@link #reset(int)} zurückgesetzt werden kann.
+	 */
+	public int mark() {
+		return size;
+	}
+
+	/**
+	 * Verwirft alle Einträge nach dem mark, z.B. wenn ein Batch fehlschlägt und die Zeilen einzeln ausgeführt werden.
+	 */
+	public void reset(int mark) {
+		Arrays.fill(values, mark, size, null);
+		size = mark;
+	}
+
+	/**
+	 * Verwirft alle Einträge und startet die Zeitmessung neu, z.B. wenn eine Transaktion nach einem Deadlock wiederholt wird.
+	 */
+	public void clear() {
+		reset(0);
+		start = System.nanoTime();
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return Die Millisekunden seit dem Erzeugen bzw. dem letzten {@link #clear()}.
+	 */
+	public long elapsedMillis() {
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	/**
+	 * Erzeugt den Text im bisherigen Format. Mehrere Statements stehen in eigenen Zeilen.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			switch (kinds[i]) {
+			case STATEMENT:
+				if (sb.length() > 0) {
+					sb.append('\n');
+				}
+				sb.append(values[i]);
+				break;
+			case SECURITY_TOKEN:
+				sb.append(" ; Position: ").append(positions[i]).append(", SecurityToken: ").append(values[i]);
+				break;
+			default:
+				sb.append(" ; Position: ").append(positions[i]).append(", Value: ").append(values[i]);
+				break;
+			}
+		}
+		return sb.toString();
+	}
+}
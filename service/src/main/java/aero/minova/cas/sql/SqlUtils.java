@@ -161,16 +161,53 @@ public class SqlUtils {
 	 *            das Prepared Statement, welches nur noch befüllt werden muss
 	 * @param query
 	 *            Das bereits fertig aufgebaute Sql Statement, welches statt der Werte '?' enthält. Diese werden hier 'ersetzt'.
-	 * @param sb
-	 *            Ein StringBuilder zum Loggen der inputParameter.
+	 * @param trace
+	 *            Der SqlTrace, in welchem das Statement und die gebundenen Parameter für das Log vermerkt werden.
 	 * @param Logger
 	 *            Ein Logger, welcher bei Fehlern die Exception loggen kann.
 	 * @return das befüllte, ausführbare Prepared Statement
 	 */
+	public static PreparedStatement fillPreparedViewString(Table inputTable, CallableStatement preparedStatement, String query, SqlTrace trace,
+			Logger logger) {
+		return fillPreparedViewString(inputTable, preparedStatement, query, trace, logger, List.of());
+	}
+
+	/**
+	 * Wie {@link #fillPreparedViewString(Table, CallableStatement, String, SqlTrace, Logger)}, die Parameter werden als Text an den StringBuilder gehängt.
+	 */
+	@Deprecated
 	public static PreparedStatement fillPreparedViewString(Table inputTable, CallableStatement preparedStatement, String query, StringBuilder sb,
 			Logger logger) {
+		return fillPreparedViewString(inputTable, preparedStatement, query, sb, logger, List.of());
+	}
+
+	/**
+	 * Wie {@link #fillPreparedViewString(Table, CallableStatement, String, SqlTrace, Logger, List)}, die Parameter werden als Text an den StringBuilder
+	 * gehängt.
+	 */
+	@Deprecated
+	public static PreparedStatement fillPreparedViewString(Table inputTable, CallableStatement preparedStatement, String query, StringBuilder sb,
+			Logger logger, List<String> rowLevelSecurityParameters) {
+		final SqlTrace trace = new SqlTrace();
+		try {
+			return fillPreparedViewString(inputTable, preparedStatement, query, trace, logger, rowLevelSecurityParameters);
+		} finally {
+			sb.append(trace).append("\n");
+		}
+	}
+
+	/**
+	 * Wie {@link #fillPreparedViewString(Table, CallableStatement, String, SqlTrace, Logger)}. Zusätzlich werden nach den Werten der inputTable die
+	 * rowLevelSecurityParameters gebunden, siehe {@link aero.minova.cas.service.SecurityService#rowLevelSecurityParameters(List)}.
+	 *
+	 * @param rowLevelSecurityParameters
+	 *            Die SecurityTokens, welche als letzte Parameter gebunden werden.
+	 * @return das befüllte, ausführbare Prepared Statement
+	 */
+	public static PreparedStatement fillPreparedViewString(Table inputTable, CallableStatement preparedStatement, String query, SqlTrace trace,
+			Logger logger, List<String> rowLevelSecurityParameters) {
 		int parameterOffset = 1;
-		sb.append(query);
+		trace.statement(query);
 
 		List<Value> inputValues = new ArrayList<>();
 		for (Row row : inputTable.getRows()) {
@@ -192,7 +229,7 @@ public class SqlUtils {
 						inBetweenValues = Stream.of(iVal.getStringValue().split(","))//
 								.collect(Collectors.toList());
 						for (String string : inBetweenValues) {
-							sb.append(" ; Position: " + (i + parameterOffset) + ", Value:" + string);
+							trace.bind(i + parameterOffset, string);
 							preparedStatement.setString(i + parameterOffset, string);
 							parameterOffset++;
 						}
@@ -204,10 +241,10 @@ public class SqlUtils {
 								.collect(Collectors.toList());
 						// bei between vertrauen wir nicht darauf, dass der Nutzer wirklich nur zwei Werte einträgt,
 						// sondern nehmen den ersten und den letzten Wert
-						sb.append(" ; Position: " + (i + parameterOffset) + ", Value:" + inBetweenValues.get(0));
+						trace.bind(i + parameterOffset, inBetweenValues.get(0));
 						preparedStatement.setString(i + parameterOffset, inBetweenValues.get(0));
 						parameterOffset++;
-						sb.append(" ; Position: " + (i + parameterOffset) + ", Value:" + inBetweenValues.get(inBetweenValues.size() - 1));
+						trace.bind(i + parameterOffset, inBetweenValues.get(inBetweenValues.size() - 1));
 						preparedStatement.setString(i + parameterOffset, inBetweenValues.get(inBetweenValues.size() - 1));
 					} else {
 						if (!stringValue.trim().isEmpty()) {
@@ -244,7 +281,7 @@ public class SqlUtils {
 								preparedStatement.setString(i + parameterOffset, (String) usedValue);
 								break;
 							}
-							sb.append(" ; Position: " + (i + parameterOffset) + ", Value:" + usedValue);
+							trace.bind(i + parameterOffset, usedValue);
 						} else {
 							parameterOffset--;
 						}
@@ -253,11 +290,21 @@ public class SqlUtils {
 					parameterOffset--;
 				}
 			} catch (Exception e) {
-				logger.error("Statement could not be filled: " + sb.toString(), e);
+				logger.error("Statement could not be filled: " + trace, e);
 				throw new RuntimeException("msg.ParseError %" + (i + parameterOffset));
 			}
 		}
-		sb.append("\n");
+		int position = inputValues.size() + parameterOffset;
+		for (String token : rowLevelSecurityParameters) {
+			try {
+				trace.bindSecurityToken(position, token);
+				preparedStatement.setString(position, token);
+				position++;
+			} catch (Exception e) {
+				logger.error("Statement could not be filled: " + trace, e);
+				throw new RuntimeException("msg.ParseError %" + position);
+			}
+		}
 		return preparedStatement;
 	}
 }
@@ -1,5 +1,7 @@
 package aero.minova.cas.sql;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Map;
@@ -21,6 +23,23 @@ public class SystemDatabase {
 	private final EntityManager entityManager;
 	private final CustomLogger customLogger;
 	private static final String MSSQLDIALECT = "SQLServer";
+	private static final String POSTGRESQLDIALECT = "PostgreSQL";
+
+	/**
+	 * Eine geöffnete {@link #shareConnection()}-Klammer. Beim Schließen wird die gemeinsame Connection zurückgerollt und an den Pool zurückgegeben.
+	 */
+	public interface SharedConnection extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	// Die Connection, welche sich alle Aufrufe von getConnection im aktuellen Thread teilen. Wird erst beim ersten Zugriff aus dem Pool geholt.
+	private static final class Shared {
+		Connection connection;
+		Connection nonClosing;
+	}
+
+	private final ThreadLocal<Shared> sharedConnection = new ThreadLocal<>();
 
 	private HikariDataSource dataSource() {
 		Map<String, Object> properties = entityManager.getEntityManagerFactory().getProperties();
@@ -28,6 +47,26 @@ public class SystemDatabase {
 	}
 
 	public Connection getConnection() {
+		final Shared shared = sharedConnection.get();
+		if (shared == null) {
+			return openConnection();
+		}
+		if (shared.connection == null) {
+			shared.connection = openConnection();
+			shared.nonClosing = nonClosing(shared.connection);
+		}
+		return shared.nonClosing;
+	}
+
+	/**
+	 * Holt immer eine eigene Connection aus dem Pool, auch innerhalb einer {@link #shareConnection()}-Klammer. Für schreibende Zugriffe, deren Commit nicht
+	 * die Transaktion des Aufrufers betreffen darf. Muss mit {@link #closeConnection(Connection)} zurückgegeben werden.
+	 */
+	public Connection getDedicatedConnection() {
+		return openConnection();
+	}
+
+	private Connection openConnection() {
 		try {
 			Connection connection = dataSource().getConnection();
 			connection.setAutoCommit(false);
@@ -37,6 +76,57 @@ public class SystemDatabase {
 		}
 	}
 
+	/**
+	 * Bis zum Schließen der zurückgegebenen Klammer liefert {@link #getConnection()} im aktuellen Thread immer dieselbe Connection und damit auch dieselbe
+	 * Transaktion. {@link #closeConnection(Connection)} und {@link Connection#close()} haben auf diese Connection keine Wirkung. Damit müssen z.B. die
+	 * Sicherheitsabfragen und die eigentliche Abfrage einer View nicht jeweils eine eigene Connection aus dem Pool holen.
+	 * <p>
+	 * Darf nur für lesende Abfragen verwendet werden, da am Ende immer ein Rollback ausgeführt wird. Ist im aktuellen Thread bereits eine Klammer offen, wird
+	 * diese weiterverwendet.
+	 *
+	 * @return Die Klammer, welche mit try-with-resources geschlossen werden muss.
+	 */
+	public SharedConnection shareConnection() {
+		if (sharedConnection.get() != null) {
+			return () -> {};
+		}
+		final Shared shared = new Shared();
+		sharedConnection.set(shared);
+		return () -> {
+			sharedConnection.remove();
+			if (shared.connection != null) {
+				try {
+					shared.connection.rollback();
+				} catch (SQLException e) {
+					customLogger.logError("Shared connection '" + shared.connection + "' could not be rolled back: ", e);
+				}
+				closeConnection(shared.connection);
+			}
+		};
+	}
+
+	/**
+	 * @return Die Connection, deren close-Methode keine Wirkung hat. Alle anderen Aufrufe werden an die übergebene Connection weitergeleitet.
+	 */
+	private static Connection nonClosing(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "close":
+				return null;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			default:
+				try {
+					return method.invoke(connection, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+			}
+		});
+	}
+
 	public void closeConnection(Connection connection) {
 		try {
 			if (connection != null) {
@@ -62,4 +152,14 @@ public class SystemDatabase {
 		final String dialect = sessionFactory.getJdbcServices().getDialect().toString();
 		return dialect.contains(MSSQLDIALECT);
 	}
+
+	/**
+	 * @return Gibt wahr zurück, wenn der JDBC-Dialekt-ID den String "PostgreSQL" beinhaltet.
+	 */
+	public boolean isPostgresDatabase() {
+		final Session session = (Session) entityManager.getDelegate();
+		final SessionFactoryImpl sessionFactory = (SessionFactoryImpl) session.getSessionFactory();
+		final String dialect = sessionFactory.getJdbcServices().getDialect().toString();
+		return dialect.contains(POSTGRESQLDIALECT);
+	}
 }
\ No newline at end of file
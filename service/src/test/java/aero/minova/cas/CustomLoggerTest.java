@@ -1,20 +1,92 @@
 package aero.minova.cas;
 
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.DataType;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.Value;
 import aero.minova.cas.api.restapi.ClientRestAPI;
 import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.system.CapturedOutput;
 import org.springframework.boot.test.system.OutputCaptureExtension;
 
+import java.lang.management.ManagementFactory;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @Slf4j
 @SpringBootTest(classes = { CustomLogger.class, ClientRestAPI.class, Gson.class }, properties = { "PROPERY_SAMPLE1=/opt/hostedtoolcache/CodeQL/2.16.0/x64/codeql/tools/linux64/${LIB}_${PLATFORM}_trace.so"})
 @ExtendWith(OutputCaptureExtension.class)
 class CustomLoggerTest {
+
+	@Autowired
+	CustomLogger customLogger;
+
+	private static Table bigTable(int rows) {
+		Table table = new Table();
+		table.setName("xpcorTest");
+		table.addColumn(new Column("KeyLong", DataType.INTEGER));
+		table.addColumn(new Column("Description", DataType.STRING));
+		for (int i = 0; i < rows; i++) {
+			Row row = new Row();
+			row.addValue(new Value(i, null));
+			row.addValue(new Value("Description of row " + i, null));
+			table.addRow(row);
+		}
+		return table;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	@DisplayName("Große Anfragen werden nach der maximalen Länge abgeschnitten")
+	@Test
+	void testToJsonTruncated() {
+		Table table = bigTable(1000);
+
+		String truncated = customLogger.toJson(table, 100);
+
+		assertThat(truncated).hasSize(100 + "... (truncated)".length()).endsWith("... (truncated)");
+		assertThat(customLogger.toJson(table, 0)).startsWith(truncated.substring(0, 100)).hasSizeGreaterThan(10000);
+		assertThat(customLogger.toJson(table, 1000000)).isEqualTo(customLogger.toJson(table, 0));
+	}
+
+	/**
+	 * Ersetzt den JMH-Benchmark: Vergleicht die pro Anfrage allozierten Bytes mit dem bisherigen gson.toJson bei ausgeschaltetem UserLogger.
+	 */
+	@DisplayName("Bei ausgeschaltetem UserLogger wird der Inhalt der Anfrage nicht erzeugt")
+	@Test
+	void testLogUserRequestIsLazy() {
+		Table table = bigTable(1000);
+		Logger userLogger = customLogger.userLogger;
+		customLogger.userLogger = NOPLogger.NOP_LOGGER;
+		try {
+			long start = allocatedBytes();
+			for (int i = 0; i < 100; i++) {
+				customLogger.logUserRequest("data/procedure: ", table);
+			}
+			long lazy = allocatedBytes() - start;
+
+			start = allocatedBytes();
+			for (int i = 0; i < 100; i++) {
+				customLogger.toJson(table, 0);
+			}
+			long eager = allocatedBytes() - start;
+
+			assertThat(lazy).isLessThan(eager / 100);
+		} finally {
+			customLogger.userLogger = userLogger;
+		}
+	}
 	/**
 	 * Hier wird getestet, dass eine Property mit Variablen nicht dazu führt, dass CAS abstürzt,
 	 * was in der Vergangenheit bspw. bei Code-QL-Workflows zu Problemen geführt hat.
@@ -0,0 +1,80 @@
+package aero.minova.cas.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+class AuthenticationCacheTest {
+
+	private final BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+
+	@DisplayName("Eine erfolgreiche Prüfung wird nur einmal ausgeführt")
+	@Test
+	void test_matchesIsCached() {
+		AuthenticationCache cache = new AuthenticationCache(60_000, 10, null);
+		String encoded = bcrypt.encode("secret");
+		AtomicInteger verifications = new AtomicInteger();
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(cache.matches("secret", encoded, raw -> {
+				verifications.incrementAndGet();
+				return bcrypt.matches(raw, encoded);
+			})).isTrue();
+		}
+		assertThat(verifications.get()).isEqualTo(1);
+	}
+
+	@DisplayName("Falsche Passwörter werden nie aus dem Cache akzeptiert")
+	@Test
+	void test_wrongPasswordIsNotCached() {
+		AuthenticationCache cache = new AuthenticationCache(60_000, 10, null);
+		String encoded = bcrypt.encode("secret");
+
+		assertThat(cache.matches("secret", encoded, raw -> bcrypt.matches(raw, encoded))).isTrue();
+		assertThat(cache.matches("wrong", encoded, raw -> bcrypt.matches(raw, encoded))).isFalse();
+		assertThat(cache.matches("wrong", encoded, raw -> bcrypt.matches(raw, encoded))).isFalse();
+		// Neuer Hash nach Passwort-Änderung: der alte Eintrag passt nicht mehr
+		String changed = bcrypt.encode("other");
+		assertThat(cache.matches("secret", changed, raw -> bcrypt.matches(raw, changed))).isFalse();
+	}
+
+	@DisplayName("Nach invalidate wird wieder geprüft")
+	@Test
+	void test_invalidate() {
+		AuthenticationCache cache = new AuthenticationCache(60_000, 10, null);
+		AtomicInteger verifications = new AtomicInteger();
+
+		cache.matches("secret", "hash", raw -> verifications.incrementAndGet() > 0);
+		cache.invalidate("admin");
+		cache.matches("secret", "hash", raw -> verifications.incrementAndGet() > 0);
+
+		assertThat(verifications.get()).isEqualTo(2);
+	}
+
+	@DisplayName("Benutzer werden als Kopie herausgegeben")
+	@Test
+	void test_loadUserReturnsCopies() {
+		AuthenticationCache cache = new AuthenticationCache(60_000, 10, null);
+		AtomicInteger loads = new AtomicInteger();
+
+		UserDetails first = cache.loadUser("admin", name -> {
+			loads.incrementAndGet();
+			return User.withUsername(name).password("hash").authorities("admin").build();
+		});
+		((User) first).eraseCredentials();
+		UserDetails second = cache.loadUser("admin", name -> {
+			loads.incrementAndGet();
+			return null;
+		});
+
+		assertThat(loads.get()).isEqualTo(1);
+		assertThat(second.getPassword()).isEqualTo("hash");
+		assertThat(second.getAuthorities()).hasSize(1);
+	}
+}
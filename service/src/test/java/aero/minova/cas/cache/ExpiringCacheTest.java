@@ -0,0 +1,61 @@
+package aero.minova.cas.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ExpiringCacheTest {
+
+	@DisplayName("Treffer und Fehlschläge werden gezählt")
+	@Test
+	void test_hitAndMissMetrics() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		ExpiringCache<String, String> cache = new ExpiringCache<>("test", 60_000, 10, registry);
+
+		assertThat(cache.get("a")).isNull();
+		cache.put("a", "1");
+		assertThat(cache.get("a")).isEqualTo("1");
+		assertThat(cache.computeIfAbsent("a", k -> "2")).isEqualTo("1");
+
+		assertThat(registry.get("cas.cache.gets").tag("result", "hit").counter().count()).isEqualTo(2);
+		assertThat(registry.get("cas.cache.gets").tag("result", "miss").counter().count()).isEqualTo(1);
+	}
+
+	@DisplayName("Die maximale Größe wird eingehalten, der älteste Eintrag fliegt raus")
+	@Test
+	void test_sizeBound() {
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>("test", 60_000, 2, null);
+		cache.put(1, 1);
+		cache.put(2, 2);
+		cache.put(3, 3);
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.get(1)).isNull();
+		assertThat(cache.get(3)).isEqualTo(3);
+	}
+
+	@DisplayName("Abgelaufene Einträge und invalidateAll")
+	@Test
+	void test_expiryAndInvalidation() throws InterruptedException {
+		ExpiringCache<String, String> cache = new ExpiringCache<>("test", 20, 10, null);
+		cache.put("a", "1");
+		Thread.sleep(50);
+		assertThat(cache.get("a")).isNull();
+
+		cache.put("b", "2");
+		cache.invalidateAll();
+		assertThat(cache.get("b")).isNull();
+	}
+
+	@DisplayName("Mit TTL 0 ist der Cache abgeschaltet")
+	@Test
+	void test_disabled() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>("test", 0, 10, new SimpleMeterRegistry());
+		cache.put("a", "1");
+		assertThat(cache.isEnabled()).isFalse();
+		assertThat(cache.get("a")).isNull();
+	}
+}
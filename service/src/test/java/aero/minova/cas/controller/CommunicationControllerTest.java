@@ -19,10 +19,7 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 
 import aero.minova.cas.CoreApplicationSystemApplication;
-import aero.minova.cas.service.model.Authorities;
-import aero.minova.cas.service.model.UserGroup;
-import aero.minova.cas.service.repository.AuthoritiesRepository;
-import aero.minova.cas.service.repository.UserGroupRepository;
+import aero.minova.cas.service.AuthorizationService;
 import aero.minova.cas.service.repository.UsersRepository;
 import jakarta.servlet.http.HttpServletResponse;
 
@@ -40,10 +37,7 @@ public class CommunicationControllerTest extends BaseTest {
 	CommunicationController communicationController;
 
 	@Autowired
-	AuthoritiesRepository authoritiesRepository;
-
-	@Autowired
-	UserGroupRepository userGroupRepository;
+	AuthorizationService authorizationService;
 
 	@Autowired
 	UsersRepository usersRepository;
@@ -78,15 +72,9 @@ public class CommunicationControllerTest extends BaseTest {
 		assertEquals(1, oldAuthorities.size());
 		assertEquals("admin", oldAuthorities.get(0).getAuthority());
 
-		UserGroup group = new UserGroup();
-		group.setKeyText("test");
-		group.setSecurityToken("#test");
-		userGroupRepository.save(group);
-
-		Authorities authority = new Authorities();
-		authority.setAuthority("test");
-		authority.setUsername(oldAuthorities.get(0).getAuthority());
-		authoritiesRepository.save(authority);
+		// Über den AuthorizationService, damit auch die gecachten Authorities verworfen werden.
+		authorizationService.createOrUpdateUserGroup("test", "#test");
+		authorizationService.findOrCreateAuthority(oldAuthorities.get(0).getAuthority(), "test");
 
 		communicationController.loadPrivileges();
 		List<GrantedAuthority> newAuthorities = (List<GrantedAuthority>) SecurityContextHolder.getContext().getAuthentication().getAuthorities();
@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Assertions;
@@ -20,6 +21,9 @@ import org.junit.rules.TemporaryFolder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.PathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
 
 import aero.minova.cas.BaseTest;
 import aero.minova.cas.CustomLogger;
@@ -199,6 +203,33 @@ class FilesControllerTest extends BaseTest {
 		filesController.hashAll();
 	}
 
+	@Test
+	void testZipAllAndHashAllIncremental() throws Exception {
+		Path file = programFilesFolder.resolve("AFIS").resolve("AFIS.xbs");
+		Path zip = zipsFolder.resolve("Shared Data").resolve("Program Files").resolve("AFIS.zip");
+		Path md5 = md5Folder.resolve("Shared Data").resolve("Program Files").resolve("AFIS").resolve("AFIS.xbs.md5");
+		Files.write(file, "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+
+		filesController.zipAll();
+		filesController.hashAll();
+		assertThat(md5Folder.resolve("files.manifest")).exists();
+		assertThat(md5Folder.resolve("zips.manifest")).exists();
+
+		// Unveränderte Dateien werden beim nächsten Start nicht angefasst.
+		Files.write(zip, "unchanged".getBytes(StandardCharsets.UTF_8));
+		Files.write(md5, "unchanged".getBytes(StandardCharsets.UTF_8));
+		filesController.zipAll();
+		filesController.hashAll();
+		assertThat(zip).hasContent("unchanged");
+		assertThat(md5).hasContent("unchanged");
+
+		Files.write(file, "<preferences/>".getBytes(StandardCharsets.UTF_8));
+		filesController.zipAll();
+		filesController.hashAll();
+		assertThat(Files.readString(zip, StandardCharsets.ISO_8859_1)).isNotEqualTo("unchanged");
+		assertThat(md5).hasContent(filesController.fileService.md5(file));
+	}
+
 	@Test
 	void getZipBackCompatability() throws Exception {
 		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
@@ -207,6 +238,43 @@ class FilesControllerTest extends BaseTest {
 		assertThat(filesController.getFile("Shared Data/Program Files/AFIS.zip")).isEqualTo(filesController.getZip("Shared Data/Program Files/AFIS"));
 	}
 
+	@Test
+	void testStreamFileWithETag() throws Exception {
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		filesController.hashFile(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs"));
+
+		ResponseEntity<Resource> response = filesController.streamFile("Shared Data/Program Files/AFIS/AFIS.xbs");
+
+		assertThat(response.getHeaders().getETag()).isEqualTo("\"093544245ba5b8739014ac4e5a273520\"");
+		assertThat(response.getBody()).isInstanceOf(PathResource.class);
+		assertThat(response.getBody().getInputStream().readAllBytes()).isEqualTo("<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testStreamFileWithOutdatedHash() throws Exception {
+		Path file = programFilesFolder.resolve("AFIS").resolve("AFIS.xbs");
+		Files.write(file, "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		filesController.hashFile(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs"));
+		Files.write(file, "<preferences/>".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+
+		assertThat(filesController.streamFile("Shared Data/Program Files/AFIS/AFIS.xbs").getHeaders().getETag()).isNull();
+	}
+
+	@Test
+	void testStreamZipWithETag() throws Exception {
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		filesController.createZip(Paths.get("Shared Data/Program Files/AFIS"));
+		filesController.hashFile(Paths.get("Internal/Zips/Shared Data/Program Files/AFIS.zip"));
+
+		ResponseEntity<Resource> response = filesController.streamZip("Shared Data/Program Files/AFIS");
+		String hash = new String(filesController.getHash("Shared Data/Program Files/AFIS.zip"), StandardCharsets.UTF_8);
+
+		assertThat(response.getHeaders().getETag()).isEqualTo("\"" + hash + "\"");
+		assertThat(filesController.streamHash("Shared Data/Program Files/AFIS.zip").getHeaders().getETag()).isEqualTo("\"" + hash + "\"");
+		assertThat(response.getBody().getInputStream().readAllBytes()).isEqualTo(filesController.getZip("Shared Data/Program Files/AFIS"));
+	}
+
 	// Hilfsmethode
 	private File findFile(String file, File directory) {
 		File[] list = directory.listFiles();
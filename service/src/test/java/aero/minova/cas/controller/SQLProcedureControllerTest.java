@@ -10,6 +10,15 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jooq.SQLDialect;
 import org.jooq.impl.DSL;
@@ -18,6 +27,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.DirtiesContext;
@@ -67,6 +77,83 @@ public class SQLProcedureControllerTest extends BaseTest {
 
 	}
 
+	@DisplayName("Extensionnamen sind case insensitive.")
+	@Test
+	void testDoubleExtensionWithDifferentCase() throws Exception {
+
+		spc.registerExtension("caseTest", null);
+
+		Throwable exception = assertThrows(IllegalArgumentException.class, () -> spc.registerExtension("CASETEST", null));
+		assertThat(exception).hasMessage("Cannot register two extensions with the same name: CASETEST");
+	}
+
+	@DisplayName("Voneinander unabhängige Extensions laufen parallel.")
+	@Test
+	void testUnrelatedExtensionsRunInParallel() throws Exception {
+		// Jede Extension wartet, bis beide gestartet sind. Mit einer gemeinsamen Sperre würde das nie passieren.
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		spc.registerExtension("xpcasParallelTestA", inputTable -> awaitOther(bothStarted));
+		spc.registerExtension("xpcasParallelTestB", inputTable -> awaitOther(bothStarted));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> a = executor.submit(() -> spc.checkForExtension(tableNamed("xpcasParallelTestA")));
+			Future<?> b = executor.submit(() -> spc.checkForExtension(tableNamed("xpcasParalleltestb")));
+			a.get(10, TimeUnit.SECONDS);
+			b.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(0, bothStarted.getCount());
+	}
+
+	@DisplayName("Serialisierte Extensions laufen nie gleichzeitig.")
+	@Test
+	void testSerializedExtensionRunsAlone() throws Exception {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		spc.registerExtension("xpcasSerializedTest", inputTable -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			return new ResponseEntity<>(HttpStatus.OK);
+		}, true);
+
+		Callable<Optional<ResponseEntity>> call = () -> spc.checkForExtension(tableNamed("xpcasSerializedTest"));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (Future<?> future : executor.invokeAll(Collections.nCopies(8, call))) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, maxRunning.get());
+	}
+
+	private static ResponseEntity awaitOther(CountDownLatch bothStarted) {
+		bothStarted.countDown();
+		try {
+			if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Extensions were not executed in parallel.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	private static Table tableNamed(String name) {
+		Table table = new Table();
+		table.setName(name);
+		return table;
+	}
+
 	public static String testInt(Connection connection, int keyLong) throws SQLException {
 		// Translate your T-SQL statements to jOOQ statements
 		return DSL.using(connection, SQLDialect.H2).select(DSL.field("PrivilegeKeyText")).from(SECURITYVIEW).where(DSL.field("KeyLong").eq(keyLong)).fetchOne(0,
@@ -85,6 +85,23 @@ class JOOQViewServiceTest extends ViewServiceBaseTest<JOOQViewService> {
 				.isEqualTo("select count(*) from vWorkingTimeIndex2 where cast(EmployeeText as varchar) ilike ?");
 	}
 
+	@DisplayName("Nur die angefragte Seite wird über LIMIT/OFFSET gelesen.")
+	@Test
+	void testPreparePagedViewString() {
+		Table inputTable = new Table();
+		inputTable.setName("vWorkingTimeIndex2");
+		inputTable.addColumn(new Column("KeyLong", DataType.INTEGER));
+		assertThat(testSubject.preparePagedViewString(inputTable, false, 50, 3, userGroups))//
+				.isEqualTo("select KeyLong from vWorkingTimeIndex2\r\norder by KeyLong\r\nlimit 50 offset 100");
+
+		// Ohne KeyLong wird nicht nach den angefragten Spalten sortiert.
+		inputTable.getColumns().clear();
+		inputTable.addColumn(new Column("EmployeeText", DataType.STRING));
+		inputTable.addColumn(new Column("CustomerText", DataType.STRING));
+		assertThat(testSubject.preparePagedViewString(inputTable, false, 50, 1, userGroups))//
+				.isEqualTo("select EmployeeText, CustomerText from vWorkingTimeIndex2\r\nlimit 50 offset 0");
+	}
+
 	@DisplayName("Wähle Einträge ohne Einschränkungen aus.")
 	@Test
 	void testPrepareViewString_withStarSelect() {
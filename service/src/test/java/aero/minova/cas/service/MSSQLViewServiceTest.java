@@ -198,6 +198,50 @@ class MSSQLViewServiceTest extends ViewServiceBaseTest<MssqlViewService> {
 				.isEqualTo("select top 1000 EmployeeText, CustomerText from vWorkingTimeIndex2\r\nwhere ((EmployeeText like ?))");
 	}
 
+	@DisplayName("Nur die angefragte Seite wird über OFFSET/FETCH gelesen, sortiert nach KeyLong, falls vorhanden.")
+	@Test
+	void testPreparePagedViewString() {
+		Table inputTable = new Table();
+		inputTable.setName("vWorkingTimeIndex2");
+		inputTable.addColumn(new Column("KeyLong", DataType.INTEGER));
+		inputTable.addColumn(new Column("EmployeeText", DataType.STRING));
+		List<Row> userGroups = new ArrayList<>();
+		Row inputRow = new Row();
+		inputRow.addValue(new Value("", null));
+		inputRow.addValue(new Value("", null));
+		inputRow.addValue(new Value(false, null));
+		userGroups.add(inputRow);
+		assertThat(testSubject.preparePagedViewString(inputTable, false, 50, 3, userGroups))//
+				.isEqualTo("select KeyLong, EmployeeText from vWorkingTimeIndex2\r\norder by KeyLong\r\noffset 100 rows fetch next 50 rows only");
+
+		// Ohne KeyLong wird nicht nach den angefragten Spalten sortiert, diese können z.B. vom Typ text sein.
+		inputTable.getColumns().remove(0);
+		inputTable.addColumn(new Column("CustomerText", DataType.STRING));
+		assertThat(testSubject.preparePagedViewString(inputTable, false, 50, 1, userGroups))//
+				.isEqualTo("select EmployeeText, CustomerText from vWorkingTimeIndex2\r\norder by (select null)\r\noffset 0 rows fetch next 50 rows only");
+
+		inputTable.getColumns().clear();
+		assertThat(testSubject.preparePagedViewString(inputTable, false, 50, 1, userGroups))//
+				.isEqualTo("select * from vWorkingTimeIndex2\r\norder by (select null)\r\noffset 0 rows fetch next 50 rows only");
+	}
+
+	@DisplayName("Die SecurityTokens werden bei Seiten als Parameter gebunden.")
+	@Test
+	void testPreparePagedViewStringWithBoundTokens() {
+		Table inputTable = new Table();
+		inputTable.setName("vWorkingTimeIndex2");
+		inputTable.addColumn(new Column("KeyLong", DataType.INTEGER));
+		List<Row> userGroups = new ArrayList<>();
+		Row inputRow = new Row();
+		inputRow.addValue(new Value("vWorkingTimeIndex2", null));
+		inputRow.addValue(new Value("dispatcher", null));
+		inputRow.addValue(new Value(true, null));
+		userGroups.add(inputRow);
+		assertThat(testSubject.preparePagedViewString(inputTable, false, 50, 1, userGroups))//
+				.isEqualTo("select KeyLong from vWorkingTimeIndex2\r\nwhere ( ( SecurityToken IS NULL )\r\nor ( SecurityToken IN (?) ) )"
+						+ "\r\norder by KeyLong\r\noffset 0 rows fetch next 50 rows only");
+	}
+
 	@Test
 	void testAllDataTypes() throws Exception {
 		val outputTable = new Table();
@@ -0,0 +1,206 @@
+package aero.minova.cas.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.jdbc.Sql;
+
+import aero.minova.cas.CoreApplicationSystemApplication;
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.service.model.UserGroup;
+import aero.minova.cas.service.model.UserPrivilege;
+import aero.minova.cas.sql.SystemDatabase;
+
+/**
+ * Läuft in einer eigenen H2-Datenbank, damit die Gruppen und Privilegien keine anderen Tests beeinflussen. Der Cache ist eingeschaltet, damit
+ * {@link SecurityService} die Tabelle verwendet.
+ */
+@SpringBootTest(classes = CoreApplicationSystemApplication.class, properties = { "spring.datasource.url=jdbc:h2:mem:privilegetokentest;DATABASE_TO_LOWER=TRUE",
+		"application.runner.enabled=false", "aero.minova.security.cache.ttl=60",
+		// Der Abgleich wird im Test selbst angestoßen.
+		"aero.minova.security.token.refresh=3600" })
+@Sql({ "/xvcasUserSecurityForTest.sql" })
+class PrivilegeTokenTableTest {
+
+	@Autowired
+	AuthorizationService authorizationService;
+
+	@Autowired
+	SystemDatabase systemDatabase;
+
+	@Autowired
+	CustomLogger logger;
+
+	@Autowired
+	SecurityService securityService;
+
+	// Die Instanz, welche auch der SecurityService verwendet
+	@Autowired
+	PrivilegeTokenTable sharedPrivilegeTokenTable;
+
+	private PrivilegeTokenTable privilegeTokenTable;
+
+	@BeforeEach
+	void setUp() {
+		privilegeTokenTable = new PrivilegeTokenTable();
+		privilegeTokenTable.logger = logger;
+		privilegeTokenTable.systemDatabase = systemDatabase;
+		privilegeTokenTable.refreshSeconds = 60;
+	}
+
+	/**
+	 * @return Pro SecurityToken des Privilegs: KeyLong und RowLevelSecurity
+	 */
+	private Map<String, String> tokensOf(String privilegeName) throws Exception {
+		final Map<String, String> tokens = new TreeMap<>();
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement select = connection
+				.prepareStatement("select SecurityToken, KeyLong, RowLevelSecurity from xtcasPrivilegeToken where PrivilegeKeyText = ?")) {
+			select.setString(1, privilegeName);
+			try (ResultSet resultSet = select.executeQuery()) {
+				while (resultSet.next()) {
+					tokens.put(resultSet.getString(1), resultSet.getInt(2) + "/" + resultSet.getBoolean(3));
+				}
+			}
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+		return tokens;
+	}
+
+	@DisplayName("Die Tokens der Gruppen werden einzeln eingetragen und nur Änderungen geschrieben")
+	@Test
+	void test_refresh() throws Exception {
+		UserPrivilege privilege = authorizationService.findOrCreateUserPrivilege("xpTokenTest");
+		UserGroup dispatchers = authorizationService.createOrUpdateUserGroup("dispatchers", "#dispatcher#ROLE_user");
+		authorizationService.findOrCreateLuUserPrivilegeUserGroup(dispatchers, privilege);
+
+		assertThat(privilegeTokenTable.refreshNow()).isTrue();
+		Map<String, String> tokens = tokensOf("xpTokenTest");
+		assertThat(tokens).containsOnlyKeys("dispatcher", "ROLE_user");
+
+		// Ohne Änderung bleiben die Zeilen erhalten.
+		privilegeTokenTable.markStale();
+		assertThat(privilegeTokenTable.refreshNow()).isTrue();
+		assertThat(tokensOf("xpTokenTest")).isEqualTo(tokens);
+
+		// Tokens mehrerer Gruppen werden zusammengefasst.
+		UserGroup admins = authorizationService.createOrUpdateUserGroup("admins", "#admin#dispatcher");
+		authorizationService.findOrCreateLuUserPrivilegeUserGroup(admins, privilege);
+		privilegeTokenTable.markStale();
+		assertThat(privilegeTokenTable.refreshNow()).isTrue();
+		Map<String, String> updated = tokensOf("xpTokenTest");
+		assertThat(updated).containsOnlyKeys("admin", "dispatcher", "ROLE_user");
+		assertThat(updated.get("dispatcher")).isEqualTo(tokens.get("dispatcher"));
+		assertThat(updated.get("ROLE_user")).isEqualTo(tokens.get("ROLE_user"));
+	}
+
+	@DisplayName("Nach der ttl wird nur abgeglichen, wenn sich Gruppen, Privilegien oder Zuordnungen geändert haben")
+	@Test
+	void test_changeMarker() throws Exception {
+		UserPrivilege privilege = authorizationService.findOrCreateUserPrivilege("xpMarkerTest");
+		UserGroup group = authorizationService.createOrUpdateUserGroup("markers", "#marker");
+		authorizationService.findOrCreateLuUserPrivilegeUserGroup(group, privilege);
+		assertThat(privilegeTokenTable.refreshNow()).isTrue();
+
+		// Diese Zeile würde bei einem Abgleich wieder gelöscht.
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement insert = connection
+				.prepareStatement("insert into xtcasPrivilegeToken (PrivilegeKeyText, SecurityToken, RowLevelSecurity, LastAction) values (?, ?, false, 1)")) {
+			insert.setString(1, "xpMarkerTest");
+			insert.setString(2, "foreign");
+			insert.execute();
+			connection.commit();
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+
+		privilegeTokenTable.lastRefresh = 0;
+		privilegeTokenTable.refreshIfNeeded();
+		assertThat(privilegeTokenTable.isUsable()).isTrue();
+		assertThat(tokensOf("xpMarkerTest")).containsOnlyKeys("foreign", "marker");
+
+		// Eine Änderung, von der diese Instanz nichts mitbekommt, z.B. von einem anderen CAS-Knoten.
+		authorizationService.createOrUpdateUserGroup("markers", "#other");
+		privilegeTokenTable.lastRefresh = 0;
+		privilegeTokenTable.refreshIfNeeded();
+		assertThat(tokensOf("xpMarkerTest")).containsOnlyKeys("marker", "other");
+	}
+
+	@DisplayName("Die Privilegien werden über die xtcasPrivilegeToken gefunden, nach einer Änderung bis zum nächsten Abgleich über die View")
+	@WithMockUser(username = "tokenuser", roles = { "tokentest" })
+	@Test
+	void test_getPrivilegePermissions() throws Exception {
+		UserPrivilege privilege = authorizationService.findOrCreateUserPrivilege("xpTokenLookup");
+		UserGroup group = authorizationService.createOrUpdateUserGroup("tokenlookup", "#ROLE_tokentest");
+		authorizationService.findOrCreateLuUserPrivilegeUserGroup(group, privilege);
+		assertThat(sharedPrivilegeTokenTable.isUsable()).isFalse();
+		assertThat(sharedPrivilegeTokenTable.refreshNow()).isTrue();
+		assertThat(sharedPrivilegeTokenTable.isUsable()).isTrue();
+
+		// Steht nur in der Tabelle und kann deshalb nur über die Tabelle gefunden werden.
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement insert = connection.prepareStatement("insert into xtcasPrivilegeToken (PrivilegeKeyText, SecurityToken, RowLevelSecurity, "
+				+ "LastAction) values ('xpOnlyInTokenTable', 'ROLE_tokentest', false, 1)")) {
+			insert.executeUpdate();
+			connection.commit();
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+
+		Map<String, List<Row>> permissions = securityService.getPrivilegePermissions(List.of("xpTokenLookup", "xpOnlyInTokenTable", "xpTokenUnknown"));
+		assertThat(permissions.get("xpTokenLookup")).hasSize(1);
+		assertThat(permissions.get("xpTokenLookup").get(0).getValues().get(1).getStringValue()).isEqualTo("ROLE_tokentest");
+		assertThat(permissions.get("xpOnlyInTokenTable")).hasSize(1);
+		assertThat(permissions.get("xpTokenUnknown")).isEmpty();
+		assertThat(securityService.getPrivilegePermissions("xpOnlyInTokenTable")).hasSize(1);
+
+		// Nach einer Änderung wird bis zum nächsten Abgleich die View gelesen.
+		securityService.invalidatePrivilegeCache();
+		assertThat(sharedPrivilegeTokenTable.isUsable()).isFalse();
+		assertThat(securityService.getPrivilegePermissions("xpOnlyInTokenTable")).isEmpty();
+		assertThat(securityService.getPrivilegePermissions("xpTokenLookup")).hasSize(1);
+
+		// Der Abgleich entfernt die Zeile, welche nicht in der View steht.
+		securityService.invalidatePrivilegeCache();
+		sharedPrivilegeTokenTable.refreshIfNeeded();
+		assertThat(sharedPrivilegeTokenTable.isUsable()).isTrue();
+		assertThat(tokensOf("xpOnlyInTokenTable")).isEmpty();
+		assertThat(securityService.getPrivilegePermissions("xpTokenLookup")).hasSize(1);
+	}
+
+	@DisplayName("Eine vergebene Berechtigung gilt sofort, auch wenn die Ablehnung bereits gecacht war")
+	@WithMockUser(username = "grantuser", roles = { "granttest" })
+	@Test
+	void test_grantInvalidatesCache() throws Exception {
+		UserPrivilege privilege = authorizationService.findOrCreateUserPrivilege("xpGrantTest");
+		UserGroup group = authorizationService.createOrUpdateUserGroup("granttest", "#ROLE_granttest");
+		assertThat(securityService.getPrivilegePermissions("xpGrantTest")).isEmpty();
+
+		authorizationService.findOrCreateLuUserPrivilegeUserGroup(group, privilege);
+		assertThat(securityService.getPrivilegePermissions("xpGrantTest")).hasSize(1);
+	}
+
+	@DisplayName("Ohne Cache wird die Tabelle nicht verwendet")
+	@Test
+	void test_disabled() {
+		privilegeTokenTable.refreshSeconds = 0;
+
+		assertThat(privilegeTokenTable.isEnabled()).isFalse();
+		privilegeTokenTable.refreshIfNeeded();
+		assertThat(privilegeTokenTable.isUsable()).isFalse();
+	}
+}
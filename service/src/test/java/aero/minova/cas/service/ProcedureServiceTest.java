@@ -2,6 +2,18 @@ package aero.minova.cas.service;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Set;
 
 import aero.minova.cas.BaseTest;
 import aero.minova.cas.CoreApplicationSystemApplication;
@@ -12,7 +24,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import aero.minova.cas.api.domain.Column;
 import aero.minova.cas.api.domain.DataType;
 import aero.minova.cas.api.domain.OutputType;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.SqlProcedureResult;
 import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.sql.ExecuteStrategy;
+import aero.minova.cas.sql.SqlTrace;
 import lombok.val;
 
 //benötigt, damit JUnit-Tests nicht abbrechen
@@ -33,4 +50,92 @@ class ProcedureServiceTest extends BaseTest {
 		val testProduct = testSubject.prepareProcedureString(testParameter);
 		assertThat(testProduct).isEqualTo("{call testProcedure(?,?,?)}");
 	}
-}
\ No newline at end of file
+
+	@Test
+	void test_returnCodes() throws Exception {
+		val connection = mock(Connection.class);
+		val statement = mock(CallableStatement.class);
+		when(connection.prepareCall("{? = call xpcasTestRows(?,?)}")).thenReturn(statement);
+		when(statement.getUpdateCount()).thenReturn(-1);
+		// Die Prozedur liefert für jede Zeile einen ReturnCode ungleich 0.
+		when(statement.getObject(1)).thenReturn(5);
+		when(statement.getInt(1)).thenReturn(5);
+
+		val result = executeRows(connection, testSubject.getExecuteStrategies());
+
+		verify(statement, times(2)).execute();
+		assertThat(result.getReturnCodes()).containsExactly(5, 5);
+	}
+
+	@Test
+	void test_returnCodeIgnored() throws Exception {
+		val connection = mock(Connection.class);
+		val statement = mock(CallableStatement.class);
+		when(connection.prepareCall("{call xpcasTestRows(?,?)}")).thenReturn(statement);
+		when(statement.getUpdateCount()).thenReturn(-1);
+
+		val result = executeRows(connection, Set.of(ExecuteStrategy.RETURN_CODE_IGNORE));
+
+		verify(statement, times(2)).execute();
+		// Ohne ReturnCode-Strategie beginnen die Parameter bei 1.
+		verify(statement, never()).registerOutParameter(1, Types.INTEGER);
+		verify(statement).setInt(1, 0);
+		verify(statement).setInt(1, 1);
+		assertThat(result.getReturnCodes()).isEmpty();
+	}
+
+	@Test
+	void test_nocount() throws Exception {
+		val connection = mock(Connection.class);
+		val procedureStatement = mock(CallableStatement.class);
+		when(connection.prepareCall(anyString())).thenReturn(procedureStatement);
+		when(procedureStatement.getUpdateCount()).thenReturn(-1);
+
+		val inputTable = new Table();
+		inputTable.setName("xpcasTestNocount");
+		inputTable.addColumn(new Column("KeyLong", DataType.INTEGER));
+		Row row = new Row();
+		row.addValue(new Value(1, null));
+		inputTable.addRow(row);
+
+		testSubject.nocountSupported = true;
+		try {
+			testSubject.calculateSqlProcedureResult(inputTable, new ArrayList<>(), connection, new SqlProcedureResult(), new SqlTrace());
+		} finally {
+			testSubject.nocountSupported = false;
+		}
+
+		// NOCOUNT wird im selben Batch gesetzt und gilt nur dort, es gibt keine zusätzlichen Statements.
+		verify(connection).prepareCall("SET NOCOUNT ON; EXEC ? = xpcasTestNocount ?");
+		verify(connection, never()).createStatement();
+		verify(procedureStatement).execute();
+	}
+
+	@Test
+	void test_nocountProcedureString() {
+		val inputTable = new Table();
+		inputTable.setName("xpcasTestNocount");
+		assertThat(testSubject.prepareNocountProcedureString(inputTable, Set.of(ExecuteStrategy.RETURN_CODE_IGNORE))).isEqualTo("{call xpcasTestNocount()}");
+		assertThat(testSubject.prepareNocountProcedureString(inputTable, Set.of(ExecuteStrategy.RETURN_CODE_IS_ERROR_IF_NOT_0)))
+				.isEqualTo("SET NOCOUNT ON; EXEC ? = xpcasTestNocount");
+
+		inputTable.addColumn(new Column("KeyLong", DataType.INTEGER));
+		inputTable.addColumn(new Column("KeyText", DataType.STRING));
+		assertThat(testSubject.prepareNocountProcedureString(inputTable, Set.of(ExecuteStrategy.RETURN_CODE_IGNORE)))
+				.isEqualTo("SET NOCOUNT ON; EXEC xpcasTestNocount ?,?");
+	}
+
+	private SqlProcedureResult executeRows(Connection connection, Set<ExecuteStrategy> executeStrategies) throws Exception {
+		val inputTable = new Table();
+		inputTable.setName("xpcasTestRows");
+		inputTable.addColumn(new Column("KeyLong", DataType.INTEGER));
+		inputTable.addColumn(new Column("KeyText", DataType.STRING));
+		for (int i = 0; i < 2; i++) {
+			Row row = new Row();
+			row.addValue(new Value(i, null));
+			row.addValue(new Value("Text" + i, null));
+			inputTable.addRow(row);
+		}
+		return testSubject.calculateSqlProcedureResult(inputTable, new ArrayList<>(), connection, new SqlProcedureResult(), new SqlTrace(), executeStrategies);
+	}
+}
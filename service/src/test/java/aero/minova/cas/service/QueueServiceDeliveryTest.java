@@ -0,0 +1,154 @@
+package aero.minova.cas.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.controller.SqlProcedureController;
+import aero.minova.cas.service.model.CASServices;
+import aero.minova.cas.service.model.ServiceMessage;
+import aero.minova.cas.service.repository.ServiceMessageRepository;
+import aero.minova.cas.servicenotifier.ServiceNotifierService;
+
+class QueueServiceDeliveryTest {
+
+	private QueueService queueService;
+	private ServiceMessageRepository serviceMessageRepo;
+	private RestTemplate restTemplate;
+	private ServiceMessageClaimer serviceMessageClaimer;
+	private ServiceNotifierService serviceNotifierService;
+
+	@BeforeEach
+	void setUp() {
+		queueService = new QueueService();
+		serviceMessageRepo = mock(ServiceMessageRepository.class);
+		restTemplate = mock(RestTemplate.class);
+		serviceMessageClaimer = mock(ServiceMessageClaimer.class);
+		serviceNotifierService = mock(ServiceNotifierService.class);
+		SecurityService securityService = mock(SecurityService.class);
+		when(securityService.isTablePresent("xvcasCASServiceMessage")).thenReturn(true);
+
+		ReflectionTestUtils.setField(queueService, "logger", mock(CustomLogger.class));
+		ReflectionTestUtils.setField(queueService, "securityService", securityService);
+		ReflectionTestUtils.setField(queueService, "spc", mock(SqlProcedureController.class));
+		ReflectionTestUtils.setField(queueService, "serviceMessageRepo", serviceMessageRepo);
+		ReflectionTestUtils.setField(queueService, "serviceMessageClaimer", serviceMessageClaimer);
+		ReflectionTestUtils.setField(queueService, "serviceNotifierService", serviceNotifierService);
+		queueService.restTemplate = restTemplate;
+		queueService.allowedMessageAge = 7;
+		queueService.allowedNumberOfAttempts = 10;
+		queueService.deliveryThreads = 2;
+		queueService.deliveryBatchSize = 100;
+		queueService.initialBackoffMillis = 60000;
+		queueService.maxBackoffMillis = 300000;
+		queueService.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		queueService.shutdown();
+	}
+
+	private static CASServices service(int key, String url) {
+		CASServices service = new CASServices();
+		service.setKeyLong(key);
+		service.setKeyText("Service" + key);
+		service.setServiceUrl(url);
+		return service;
+	}
+
+	private static ServiceMessage message(int key, CASServices service) {
+		ServiceMessage message = new ServiceMessage();
+		message.setKeyLong(key);
+		message.setCasService(service);
+		message.setMessage("message" + key);
+		return message;
+	}
+
+	@DisplayName("Ein nicht erreichbarer Dienst hält die Nachrichten der anderen Dienste nicht auf")
+	@Test
+	void test_unreachableServiceDoesNotBlockOthers() {
+		CASServices unreachable = service(1, "http://unreachable");
+		CASServices reachable = service(2, "http://reachable");
+		ServiceMessage first = message(1, unreachable);
+		ServiceMessage second = message(2, unreachable);
+		ServiceMessage third = message(3, reachable);
+		ServiceMessage fourth = message(4, reachable);
+
+		when(serviceMessageClaimer.claim(eq(100), any())).thenReturn(List.of(1, 2, 3, 4)).thenReturn(List.of());
+		when(serviceMessageRepo.findAllById(List.of(1, 2, 3, 4))).thenReturn(List.of(fourth, third, second, first));
+		doAnswer(invocation -> {
+			if ("http://unreachable".equals(invocation.getArgument(0))) {
+				throw new RestClientException("Connection refused");
+			}
+			return ResponseEntity.ok().build();
+		}).when(restTemplate).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class), eq(Void.class));
+
+		queueService.requestDelivery();
+
+		verify(serviceMessageRepo, timeout(5000)).delete(third);
+		verify(serviceMessageRepo, timeout(5000)).delete(fourth);
+		verify(serviceMessageRepo, timeout(5000)).saveAndFlush(first);
+
+		// Nach dem Fehlschlag wartet der Dienst, die zweite Nachricht wird für andere Knoten freigegeben.
+		verify(serviceMessageClaimer, timeout(5000)).release(List.of(2));
+		verify(serviceMessageRepo, after(500).never()).saveAndFlush(second);
+		verify(serviceMessageRepo, never()).delete(first);
+		assertThat(first.getNumberOfAttempts()).isEqualTo(1);
+		assertThat(first.getClaimedUntil()).isAfter(LocalDateTime.now());
+
+		// Solange der Dienst wartet, werden seine Nachrichten nicht reserviert.
+		verify(serviceMessageClaimer, timeout(5000)).claim(100, List.of(1));
+		assertThat(queueService.lanes.get(1).failures).isEqualTo(1);
+		assertThat(queueService.lanes.get(1).retryAt).isGreaterThan(System.currentTimeMillis());
+		assertThat(queueService.lanes.get(2).failures).isZero();
+	}
+
+	@DisplayName("Die Wartezeit verdoppelt sich bis zum Maximum")
+	@Test
+	void test_backoff() {
+		queueService.initialBackoffMillis = 1000;
+		queueService.maxBackoffMillis = 300000;
+		assertThat(queueService.backoffMillis(1)).isEqualTo(1000);
+		assertThat(queueService.backoffMillis(2)).isEqualTo(2000);
+		assertThat(queueService.backoffMillis(5)).isEqualTo(16000);
+		assertThat(queueService.backoffMillis(100)).isEqualTo(300000);
+	}
+
+	@DisplayName("Das Intervall liest den Index der Listener neu und verschickt auch bei einem Fehler dabei die Nachrichten")
+	@Test
+	void test_sendQueueMessageRebuildsIndex() {
+		when(serviceMessageClaimer.claim(eq(100), any())).thenReturn(List.of());
+		doAnswer(invocation -> {
+			throw new IllegalStateException("database not reachable");
+		}).when(serviceNotifierService).rebuildIndex();
+
+		queueService.sendQueueMessage();
+
+		verify(serviceNotifierService).rebuildIndex();
+		verify(serviceMessageClaimer, timeout(5000)).claim(eq(100), any());
+	}
+}
@@ -0,0 +1,122 @@
+package aero.minova.cas.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.core.io.PathResource;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.service.ResourceZipCache.CachedZip;
+
+class ResourceZipCacheTest {
+
+	@TempDir
+	Path cacheDir;
+
+	private ResourceZipCache zipCache;
+
+	@BeforeEach
+	void setUp() {
+		zipCache = new ResourceZipCache();
+		zipCache.customLogger = Mockito.mock(CustomLogger.class);
+		zipCache.deployedResourcesPath = "/zipcache/deployed.resources.txt";
+		zipCache.cacheDir = cacheDir.toString();
+		zipCache.maxMemoryBytes = 1024 * 1024;
+	}
+
+	private static List<String> entries(byte[] zip) throws Exception {
+		final List<String> names = new ArrayList<>();
+		try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+			for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+				names.add(entry.getName());
+			}
+		}
+		return names;
+	}
+
+	private static String md5(byte[] content) throws Exception {
+		return String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(content)));
+	}
+
+	@DisplayName("Die Zip wird einmal gebaut und enthält alle Dateien unterhalb des Pfads")
+	@Test
+	void test_buildOnce() throws Exception {
+		CachedZip zip = zipCache.get("/zipcache/forms");
+
+		assertThat(zipCache.get("/zipcache/forms")).isSameAs(zip);
+		assertThat(entries(zip.readAllBytes())).containsExactly("zipcache/forms/a.xml", "zipcache/forms/b.xml");
+		assertThat(zip.getLength()).isEqualTo(zip.readAllBytes().length);
+		assertThat(zip.getMd5()).isEqualTo(md5(zip.readAllBytes()));
+		assertThat(zip.getETag()).isEqualTo("\"" + zip.getMd5() + "\"");
+		assertThat(cacheDir).isEmptyDirectory();
+	}
+
+	@DisplayName("Pfade mit denselben Dateien teilen sich eine Zip")
+	@Test
+	void test_contentAddressed() {
+		assertThat(zipCache.get("/zipcache/forms/")).isSameAs(zipCache.get("/zipcache/forms"));
+		assertThat(zipCache.get("/zipcache")).isNotSameAs(zipCache.get("/zipcache/forms"));
+	}
+
+	@DisplayName("Beliebige Pfade ohne Ressourcen vergrößern den Cache nicht")
+	@Test
+	void test_unknownPathsShareOneZip() throws Exception {
+		CachedZip empty = zipCache.get("/zipcache/unknown0");
+		for (int i = 1; i < 100; i++) {
+			assertThat(zipCache.get("/zipcache/unknown" + i)).isSameAs(empty);
+		}
+		assertThat(zipCache.size()).isEqualTo(1);
+		assertThat(entries(empty.readAllBytes())).isEmpty();
+	}
+
+	@DisplayName("Die am längsten nicht verwendete Zip wird verdrängt und ihre Datei gelöscht")
+	@Test
+	void test_evictionDeletesFile() {
+		zipCache.maxMemoryBytes = 0;
+		zipCache.maxEntries = 1;
+		CachedZip all = zipCache.get("/zipcache");
+		Path allFile = cacheDir.resolve(all.getMd5() + ".zip");
+		assertThat(allFile).exists();
+
+		CachedZip forms = zipCache.get("/zipcache/forms");
+		assertThat(zipCache.size()).isEqualTo(1);
+		assertThat(allFile).doesNotExist();
+		assertThat(cacheDir.resolve(forms.getMd5() + ".zip")).exists();
+
+		// Beim Beenden wird auch die letzte Datei gelöscht.
+		zipCache.clear();
+		assertThat(cacheDir).isEmptyDirectory();
+	}
+
+	@DisplayName("Ist der Speicher voll, wird die Zip in eine Datei ausgelagert")
+	@Test
+	void test_spillToDisk() throws Exception {
+		byte[] inMemory = zipCache.get("/zipcache").readAllBytes();
+
+		ResourceZipCache smallCache = new ResourceZipCache();
+		smallCache.customLogger = zipCache.customLogger;
+		smallCache.deployedResourcesPath = zipCache.deployedResourcesPath;
+		smallCache.cacheDir = cacheDir.toString();
+		smallCache.maxMemoryBytes = 0;
+		CachedZip spilled = smallCache.get("/zipcache");
+
+		assertThat(spilled.toResource()).isInstanceOf(PathResource.class);
+		assertThat(Files.exists(cacheDir.resolve(spilled.getMd5() + ".zip"))).isTrue();
+		assertThat(spilled.readAllBytes()).isEqualTo(inMemory);
+		assertThat(entries(inMemory)).containsExactly("zipcache/forms/a.xml", "zipcache/forms/b.xml", "zipcache/images/logo.txt");
+	}
+}
@@ -7,10 +7,15 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -19,6 +24,9 @@ import org.mockito.MockitoAnnotations;
 import org.mockito.Spy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.test.context.support.WithMockUser;
 
 import aero.minova.cas.CoreApplicationSystemApplication;
@@ -29,6 +37,7 @@ import aero.minova.cas.api.domain.ProcedureException;
 import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.api.domain.Table;
 import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.sql.SystemDatabase;
 import lombok.val;
 
 //benötigt, damit JUnit-Tests nicht abbrechen
@@ -37,6 +46,9 @@ class SecurityServiceTests {
 	@Autowired
 	private SecurityService securityService;
 
+	@Autowired
+	private SystemDatabase systemDatabase;
+
 	@Spy
 	private SecurityService spySecurityService;
 
@@ -44,6 +56,16 @@ class SecurityServiceTests {
 	void setUp() {
 		MockitoAnnotations.initMocks(this);
 		spySecurityService = spy(securityService);
+		invalidateCaches();
+	}
+
+	/**
+	 * Der Spy teilt sich die Caches mit dem SecurityService. Die Testdaten der Spy-Tests dürfen nicht in anderen Tests auftauchen.
+	 */
+	@AfterEach
+	void invalidateCaches() {
+		securityService.invalidatePrivilegeCache();
+		securityService.invalidateColumnSecurity();
 	}
 
 	@DisplayName("Row-Level-Security ohne Rollen")
@@ -86,6 +108,28 @@ class SecurityServiceTests {
 				.isEqualTo("\r\nwhere ( ( SecurityToken IS NULL )" + "\r\nor ( SecurityToken IN ('user','dispatcher','codemonkey') ) )");
 	}
 
+	@DisplayName("Row-Level-Security mit gebundenen SecurityTokens")
+	@Test
+	void test_rowLevelSecurityWithBoundTokens() {
+		List<Row> userGroups = new ArrayList<>();
+		for (String token : List.of("user", "dispatcher", "#codemonkey")) {
+			Row inputRow = new Row();
+			inputRow.addValue(new Value("", null));
+			inputRow.addValue(new Value(token, null));
+			inputRow.addValue(new Value(true, null));
+			userGroups.add(inputRow);
+		}
+		// 3 Tokens werden auf 4 Parameter aufgerundet, damit Nutzer mit 3 oder 4 Tokens denselben SQL-String bekommen
+		assertThat(SecurityService.rowLevelSecurity(false, userGroups, true))//
+				.isEqualTo("\r\nand ( ( SecurityToken IS NULL )" + "\r\nor ( SecurityToken IN (?,?,?,?) ) )");
+		assertThat(SecurityService.rowLevelSecurityParameters(userGroups))//
+				.containsExactly("user", "dispatcher", "codemonkey", "codemonkey");
+
+		assertThat(SecurityService.rowLevelSecurity(true, new ArrayList<>(), true))//
+				.isEqualTo("\r\nwhere ( ( SecurityToken IS NULL ) )");
+		assertThat(SecurityService.rowLevelSecurityParameters(new ArrayList<>())).isEmpty();
+	}
+
 	@DisplayName("Row-Level-Security mit mehreren Rollen, aber eine darf alle Spalten sehen")
 	@WithMockUser(username = "user", roles = { "user", "dispatcher", "codemonkey" })
 	@Test
@@ -263,6 +307,85 @@ class SecurityServiceTests {
 
 	}
 
+	@DisplayName("Spalten-Berechtigungen mehrerer Tokens werden mit einer Abfrage ermittelt")
+	@WithMockUser(username = "admin", roles = { "admin", "dispo" })
+	@Test
+	void test_columnSecurityIndex() {
+		Table columnSecurity = new Table();
+		columnSecurity.addColumn(new Column("TableName", DataType.STRING));
+		columnSecurity.addColumn(new Column("ColumnName", DataType.STRING));
+		columnSecurity.addColumn(new Column("SecurityToken", DataType.STRING));
+		for (String[] entry : new String[][] { { "vJournalIndexTest", "OrderReceiverKey", "admin" }, { "VJOURNALINDEXTEST", "ChargedQuantity", "dispo" },
+				{ "vJournalIndexTest", "OrderReceiverKey", "dispo" }, { "vOtherIndex", "ServiceKey", "admin" } }) {
+			Row row = new Row();
+			row.addValue(new Value(entry[0], null));
+			row.addValue(new Value(entry[1], null));
+			row.addValue(new Value(entry[2], null));
+			columnSecurity.addRow(row);
+		}
+		doReturn(columnSecurity).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+
+		val inputTable = new Table();
+		inputTable.setName("vJournalIndexTest");
+		inputTable.addColumn(new Column("OrderReceiverKey", DataType.INTEGER));
+		inputTable.addColumn(new Column("ServiceKey", DataType.STRING));
+		inputTable.addColumn(new Column("ChargedQuantity", DataType.STRING));
+		Value orderReceiverKey = new Value(1, null);
+		Row inputRow = new Row();
+		inputRow.addValue(orderReceiverKey);
+		inputRow.addValue(new Value("blocked", null));
+		inputRow.addValue(null);
+		inputTable.addRow(inputRow);
+
+		List<Row> userGroups = new ArrayList<>();
+		for (String token : List.of("admin", "dispo")) {
+			Row group = new Row();
+			group.addValue(new Value("vjournalindextest", null));
+			group.addValue(new Value(token, null));
+			group.addValue(new Value(false, null));
+			userGroups.add(group);
+		}
+
+		Table result = spySecurityService.columnSecurity(inputTable, userGroups);
+		assertThat(result.getColumns()).extracting(Column::getName).containsExactly("OrderReceiverKey", "ChargedQuantity");
+		assertThat(result.getRows().get(0).getValues()).containsExactly(orderReceiverKey, null);
+		verify(spySecurityService, times(1)).unsecurelyGetIndexView(Mockito.any());
+
+		// Ein Token ohne Einträge für diese Tabelle darf alle Spalten sehen
+		Row unrestricted = new Row();
+		unrestricted.addValue(new Value("vJournalIndexTest", null));
+		unrestricted.addValue(new Value("user", null));
+		unrestricted.addValue(new Value(false, null));
+		val allColumns = new Table();
+		allColumns.setName("vJournalIndexTest");
+		allColumns.addColumn(new Column("OrderReceiverKey", DataType.INTEGER));
+		allColumns.addColumn(new Column("ServiceKey", DataType.STRING));
+		assertThat(spySecurityService.columnSecurity(allColumns, List.of(userGroups.get(0), unrestricted)).getColumns()).hasSize(2);
+	}
+
+	@DisplayName("SecurityTokens der Spalten-Berechtigungen werden unabhängig von der Schreibweise gefunden")
+	@WithMockUser(username = "admin", roles = { "admin" })
+	@Test
+	void test_columnSecurityTokenCase() {
+		Table columnSecurity = tableOf(row("vJournalIndexTest", "OrderReceiverKey", "Dispo"));
+		columnSecurity.addRow(row("vJournalIndexTest", "ServiceKey", "ADMIN"));
+		doReturn(columnSecurity).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+
+		for (String token : List.of("dispo", "DISPO", "Dispo")) {
+			val inputTable = new Table();
+			inputTable.setName("vJournalIndexTest");
+			inputTable.addColumn(new Column("OrderReceiverKey", DataType.INTEGER));
+			inputTable.addColumn(new Column("ServiceKey", DataType.STRING));
+			inputTable.addColumn(new Column("ChargedQuantity", DataType.STRING));
+			Row group = row("vjournalindextest", token);
+			group.addValue(new Value(false, null));
+
+			// Ohne Treffer dürfte der Nutzer alle Spalten sehen.
+			assertThat(spySecurityService.columnSecurity(inputTable, List.of(group)).getColumns()).extracting(Column::getName)
+					.containsExactly("OrderReceiverKey");
+		}
+	}
+
 	@DisplayName("Frage nach Tabelle (*), bekomme berechitgte Spalten zurück.")
 	@WithMockUser(username = "admin", roles = { "admin" })
 	@Test
@@ -462,6 +585,44 @@ class SecurityServiceTests {
 		assertThat(result).isEmpty();
 	}
 
+	@DisplayName("getPrivilegePermissions lädt mehrere Privilegien mit einer Abfrage")
+	@WithMockUser(username = "user", roles = { "user", "dispatcher" })
+	@Test
+	void test_getPrivilegePermissionsBatched() {
+		Mockito.doAnswer(returnsFirstArg()).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+		Mockito.doNothing().when(spySecurityService).loadAllPrivileges();
+
+		Map<String, List<Row>> result = spySecurityService.getPrivilegePermissions(List.of("xpBatchA", "xpBatchB"));
+
+		verify(spySecurityService, times(1)).unsecurelyGetIndexView(Mockito.any());
+		assertThat(result.get("xpBatchA")).hasSize(2).allSatisfy(row -> assertThat(row.getValues().get(0).getStringValue()).isEqualTo("xpBatchA"));
+		assertThat(result.get("xpBatchB")).hasSize(2).allSatisfy(row -> assertThat(row.getValues().get(0).getStringValue()).isEqualTo("xpBatchB"));
+		assertThat(result.get("xpBatchA")).extracting(row -> row.getValues().get(1).getStringValue()).containsExactlyInAnyOrder("ROLE_user",
+				"ROLE_dispatcher");
+	}
+
+	@DisplayName("TransactionChecker werden pro Privileg nur einmal geliefert")
+	@Test
+	void test_getTransactionCheckers() {
+		Table privileges = new Table();
+		privileges.setName("xtcasUserPrivilege");
+		privileges.addColumn(new Column("KeyText", DataType.STRING));
+		privileges.addColumn(new Column("TransactionChecker", DataType.STRING));
+		Row withChecker = new Row();
+		withChecker.addValue(new Value("xpOrder", null));
+		withChecker.addValue(new Value("xpCheckOrder", null));
+		privileges.addRow(withChecker);
+		Row withoutChecker = new Row();
+		withoutChecker.addValue(new Value("xpOrderItem", null));
+		withoutChecker.addValue(null);
+		privileges.addRow(withoutChecker);
+		doReturn(privileges).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+
+		List<Row> checkers = spySecurityService.getTransactionCheckers(List.of("XPORDER", "xpOrderItem", "xpOrder", "xpUnknown"));
+
+		assertThat(checkers).containsExactly(withChecker, withoutChecker);
+	}
+
 	@DisplayName("Finde Spalte mit SecurityToken per findSecurityTokenColumn")
 	@WithMockUser(username = "user", roles = {})
 	@Test
@@ -535,4 +696,136 @@ class SecurityServiceTests {
 
 		assertFalse(spySecurityService.isRowAccessValid(userGroups, rowToBeChecked, 1));
 	}
-}
\ No newline at end of file
+
+	@DisplayName("Gefundene Tabellen werden bis zum Invalidieren gemerkt")
+	@Test
+	void test_isTablePresentIsCached() throws Exception {
+		securityService.invalidateSchemaCache();
+		assertFalse(securityService.isTablePresent("xtcasschemacachetest"));
+
+		execute("create table xtcasschemacachetest (KeyLong int)");
+		assertTrue(securityService.isTablePresent("xtcasschemacachetest"));
+
+		execute("drop table xtcasschemacachetest");
+		assertTrue(securityService.isTablePresent("xtcasschemacachetest"));
+
+		securityService.invalidateSchemaCache();
+		assertFalse(securityService.isTablePresent("xtcasschemacachetest"));
+	}
+
+	@DisplayName("Die Authorities eines Users werden bis zum Invalidieren gemerkt")
+	@WithMockUser(username = "cacheuser", roles = { "cachetest" })
+	@Test
+	void test_authorityCache() {
+		final Authentication login = SecurityContextHolder.getContext().getAuthentication();
+		doReturn(tableOf(row("ROLE_cachetest", "#extra1"))).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+		assertThat(loadAuthorities(login)).containsExactly("ROLE_cachetest", "extra1");
+
+		// Die Gruppe bekommt ein anderes Token, der User sieht aber noch die gecachten Authorities.
+		doReturn(tableOf(row("ROLE_cachetest", "#extra2"))).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+		assertThat(loadAuthorities(login)).containsExactly("ROLE_cachetest", "extra1");
+		verify(spySecurityService, times(1)).loadUserGroupPrivileges(Mockito.any(), Mockito.any(), Mockito.any());
+
+		securityService.invalidatePrivilegeCache();
+		assertThat(loadAuthorities(login)).containsExactly("ROLE_cachetest", "extra2");
+		verify(spySecurityService, times(2)).loadUserGroupPrivileges(Mockito.any(), Mockito.any(), Mockito.any());
+	}
+
+	private List<String> loadAuthorities(Authentication login) {
+		// Jede Anfrage beginnt mit den Authorities aus der Anmeldung.
+		SecurityContextHolder.getContext().setAuthentication(login);
+		spySecurityService.loadAllPrivileges();
+		return SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+	}
+
+	@DisplayName("Die Berechtigungen eines Privilegs werden bis zum Invalidieren gemerkt")
+	@WithMockUser(username = "cacheuser", roles = { "cachetest" })
+	@Test
+	void test_permissionCache() {
+		Mockito.doNothing().when(spySecurityService).loadAllPrivileges();
+		Row permission = row("xpcasCacheTest", "ROLE_cachetest");
+		permission.addValue(new Value(false, null));
+		doReturn(tableOf(permission)).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+		assertThat(spySecurityService.getPrivilegePermissions("xpcasCacheTest")).hasSize(1);
+
+		// Das Recht wurde entzogen, bis zum Invalidieren gilt aber noch der Cache.
+		doReturn(new Table()).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+		assertThat(spySecurityService.getPrivilegePermissions("xpcasCacheTest")).hasSize(1);
+		verify(spySecurityService, times(1)).unsecurelyGetIndexView(Mockito.any());
+
+		securityService.invalidatePrivilegeCache();
+		assertThat(spySecurityService.getPrivilegePermissions("xpcasCacheTest")).isEmpty();
+	}
+
+	@DisplayName("Der Index der xtcasColumnSecurity wird bis zum Invalidieren gemerkt")
+	@WithMockUser(username = "admin", roles = { "admin" })
+	@Test
+	void test_columnSecurityIndexIsCached() {
+		Table columnSecurity = new Table();
+		columnSecurity.addColumn(new Column("TableName", DataType.STRING));
+		columnSecurity.addColumn(new Column("ColumnName", DataType.STRING));
+		columnSecurity.addColumn(new Column("SecurityToken", DataType.STRING));
+		columnSecurity.addRow(row("vCacheIndexTest", "KeyLong", "admin"));
+		doReturn(columnSecurity).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+
+		Row group = row("vCacheIndexTest", "admin");
+		group.addValue(new Value(false, null));
+		assertThat(spySecurityService.columnSecurity(cacheIndexTable(), List.of(group)).getColumns()).extracting(Column::getName).containsExactly("KeyLong");
+
+		// Der Eintrag wurde gelöscht, bis zum Invalidieren gilt aber noch der Index.
+		doReturn(new Table()).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+		assertThat(spySecurityService.columnSecurity(cacheIndexTable(), List.of(group)).getColumns()).extracting(Column::getName).containsExactly("KeyLong");
+		verify(spySecurityService, times(1)).unsecurelyGetIndexView(Mockito.any());
+
+		securityService.invalidateColumnSecurity();
+		assertThat(spySecurityService.columnSecurity(cacheIndexTable(), List.of(group)).getColumns()).extracting(Column::getName).containsExactly("KeyLong",
+				"KeyText");
+	}
+
+	private static Table cacheIndexTable() {
+		Table table = new Table();
+		table.setName("vCacheIndexTest");
+		table.addColumn(new Column("KeyLong", DataType.INTEGER));
+		table.addColumn(new Column("KeyText", DataType.STRING));
+		return table;
+	}
+
+	@DisplayName("Die TransactionChecker werden bis zum Invalidieren gemerkt")
+	@Test
+	void test_transactionCheckerCache() {
+		doReturn(tableOf(row("xpcasCacheTest", "checkerA"))).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+		assertThat(spySecurityService.getTransactionCheckers(List.of("xpcasCacheTest")).get(0).getValues().get(1).getStringValue()).isEqualTo("checkerA");
+
+		// Der TransactionChecker wurde geändert, bis zum Invalidieren gilt aber noch der Cache.
+		doReturn(tableOf(row("xpcasCacheTest", "checkerB"))).when(spySecurityService).unsecurelyGetIndexView(Mockito.any());
+		assertThat(spySecurityService.getTransactionCheckers(List.of("XPCASCACHETEST")).get(0).getValues().get(1).getStringValue()).isEqualTo("checkerA");
+		verify(spySecurityService, times(1)).unsecurelyGetIndexView(Mockito.any());
+
+		securityService.invalidatePrivilegeCache();
+		assertThat(spySecurityService.getTransactionCheckers(List.of("xpcasCacheTest")).get(0).getValues().get(1).getStringValue()).isEqualTo("checkerB");
+	}
+
+	private static Row row(String... values) {
+		Row row = new Row();
+		for (String value : values) {
+			row.addValue(new Value(value, null));
+		}
+		return row;
+	}
+
+	private static Table tableOf(Row row) {
+		Table table = new Table();
+		table.addRow(row);
+		return table;
+	}
+
+	private void execute(String sql) throws Exception {
+		Connection connection = systemDatabase.getConnection();
+		try {
+			connection.createStatement().execute(sql);
+			connection.commit();
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package aero.minova.cas.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.service.SecurityTokenDictionary.TokenSet;
+
+class SecurityTokenDictionaryTest {
+
+	private final SecurityTokenDictionary dictionary = new SecurityTokenDictionary();
+
+	@DisplayName("Tokens werden ohne Berücksichtigung der Groß- und Kleinschreibung geprüft")
+	@Test
+	void test_allows() {
+		TokenSet tokenSet = dictionary.tokenSet(List.of("user", "dispatcher"));
+
+		assertThat(tokenSet.isUnrestricted()).isFalse();
+		assertThat(tokenSet.allows("dispatcher")).isTrue();
+		assertThat(tokenSet.allows("Dispatcher")).isTrue();
+		assertThat(tokenSet.allows("DISPATCHER")).isTrue();
+		assertThat(tokenSet.allows("admin")).isFalse();
+		assertThat(tokenSet.allows(null)).isTrue();
+	}
+
+	@DisplayName("Tokens anderer User sind bekannt, gehören aber nicht zum TokenSet")
+	@Test
+	void test_sharedDictionary() {
+		TokenSet admin = dictionary.tokenSet(List.of("admin"));
+		TokenSet user = dictionary.tokenSet(List.of("user"));
+
+		assertThat(admin.allows("admin")).isTrue();
+		assertThat(user.allows("admin")).isFalse();
+		assertThat(dictionary.intern("ADMIN")).isEqualTo(dictionary.intern("admin"));
+		assertThat(dictionary.lookup("unknown")).isEqualTo(-1);
+	}
+
+	@DisplayName("Ohne Tokens gilt keine Row-Level-Security")
+	@Test
+	void test_unrestricted() {
+		TokenSet tokenSet = dictionary.tokenSet(List.of());
+
+		assertThat(tokenSet.isUnrestricted()).isTrue();
+		assertThat(tokenSet.allows("admin")).isTrue();
+	}
+
+	@DisplayName("Für 10000 Rows liefert das TokenSet dasselbe Ergebnis wie die Liste der Tokens")
+	@Test
+	void test_sameResultAsTokenList() {
+		List<String> userTokens = List.of("user", "dispatcher", "codemonkey");
+		TokenSet tokenSet = dictionary.tokenSet(userTokens);
+		SecurityService securityService = new SecurityService();
+
+		List<Row> rows = new ArrayList<>();
+		String[] rowTokens = { "user", "Dispatcher", "admin", null, "CODEMONKEY", "tester" };
+		for (int i = 0; i < 10000; i++) {
+			Row row = new Row();
+			row.addValue(new Value(i, null));
+			row.addValue(new Value(rowTokens[i % rowTokens.length], null));
+			rows.add(row);
+		}
+
+		int allowed = 0;
+		for (Row row : rows) {
+			boolean expected = securityService.isRowAccessValid(userTokens, row, 1);
+			assertThat(securityService.isRowAccessValid(tokenSet, row, 1)).isEqualTo(expected);
+			if (expected) {
+				allowed++;
+			}
+		}
+		assertThat(allowed).isEqualTo(6667);
+	}
+}
@@ -0,0 +1,146 @@
+package aero.minova.cas.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import aero.minova.cas.CoreApplicationSystemApplication;
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.service.model.CASServices;
+import aero.minova.cas.service.model.ServiceMessage;
+import aero.minova.cas.service.repository.CASServicesRepository;
+import aero.minova.cas.service.repository.ServiceMessageRepository;
+import aero.minova.cas.servicenotifier.ServiceNotifierRegistrationAPI;
+import aero.minova.cas.sql.SystemDatabase;
+
+/**
+ * Simuliert mehrere CAS-Knoten, welche sich eine Datenbank teilen. Läuft in einer eigenen H2-Datenbank, damit die Dienste und Nachrichten keine anderen
+ * Tests beeinflussen.
+ */
+@SpringBootTest(classes = CoreApplicationSystemApplication.class, properties = { "spring.datasource.url=jdbc:h2:mem:queueclaimtest;DATABASE_TO_LOWER=TRUE",
+		"aero.minova.check.message.intervall=-" })
+class ServiceMessageClaimerTest {
+
+	@Autowired
+	ServiceNotifierRegistrationAPI serviceNotifierRegistration;
+
+	@Autowired
+	CASServicesRepository serviceRepo;
+
+	@Autowired
+	ServiceMessageRepository serviceMessageRepo;
+
+	@Autowired
+	SystemDatabase systemDatabase;
+
+	@Autowired
+	CustomLogger logger;
+
+	private List<CASServices> services;
+
+	@BeforeEach
+	void setUp() {
+		if (serviceRepo.findAll().isEmpty()) {
+			serviceNotifierRegistration.registerService("ClaimService", "localhost", 0, 1, null, null, null, null, null);
+			serviceNotifierRegistration.registerService("OtherClaimService", "localhost", 0, 1, null, null, null, null, null);
+		}
+		services = serviceRepo.findAll().stream().sorted(Comparator.comparing(CASServices::getKeyLong)).toList();
+		// Die Nachrichten der beiden Dienste wechseln sich ab.
+		for (int i = 0; i < 6; i++) {
+			ServiceMessage message = new ServiceMessage();
+			message.setCasService(services.get(i % 2));
+			message.setMessage("message" + i);
+			serviceMessageRepo.saveAndFlush(message);
+		}
+	}
+
+	@AfterEach
+	void tearDown() {
+		serviceMessageRepo.deleteAll();
+	}
+
+	private ServiceMessageClaimer node(String nodeId, long leaseSeconds) {
+		ServiceMessageClaimer claimer = new ServiceMessageClaimer();
+		claimer.logger = logger;
+		claimer.systemDatabase = systemDatabase;
+		claimer.nodeId = nodeId;
+		claimer.leaseSeconds = leaseSeconds;
+		claimer.init();
+		return claimer;
+	}
+
+	@DisplayName("Jeder Knoten erhält andere Nachrichten")
+	@Test
+	void test_disjointClaims() {
+		ServiceMessageClaimer first = node("first", 300);
+		ServiceMessageClaimer second = node("second", 300);
+
+		List<Integer> claimedByFirst = first.claim(1, List.of());
+		List<Integer> claimedBySecond = second.claim(10, List.of());
+
+		// Die weiteren Nachrichten des ersten Dienstes warten auf die ältere Nachricht, der andere Dienst geht komplett an den zweiten Knoten.
+		assertThat(claimedByFirst).hasSize(1);
+		assertThat(claimedBySecond).hasSize(3).isSorted().doesNotContainAnyElementsOf(claimedByFirst);
+		assertThat(first.claim(10, List.of())).isEmpty();
+		assertThat(serviceMessageRepo.findAllById(claimedBySecond)).allSatisfy(message -> {
+			assertThat(message.getClaimedBy()).isEqualTo("second");
+			assertThat(message.getCasService().getKeyLong()).isEqualTo(services.get(1).getKeyLong());
+		});
+
+		// Freigegebene Nachrichten kann sofort ein anderer Knoten übernehmen, fremde Reservierungen werden nicht freigegeben.
+		first.release(claimedBySecond);
+		assertThat(first.claim(10, List.of())).isEmpty();
+		second.release(claimedBySecond);
+		assertThat(first.claim(10, List.of())).containsExactlyElementsOf(claimedBySecond);
+	}
+
+	@DisplayName("Solange eine ältere Nachricht reserviert ist, erhält kein Knoten die folgenden Nachrichten desselben Dienstes")
+	@Test
+	void test_earlierMessageBlocksService() {
+		ServiceMessageClaimer first = node("first", 300);
+		ServiceMessageClaimer second = node("second", 300);
+		final Integer serviceKey = services.get(0).getKeyLong();
+		final Integer otherServiceKey = services.get(1).getKeyLong();
+
+		// Der erste Knoten hat zwei Nachrichten reserviert, die erste schlägt fehl und bleibt bis zum nächsten Versuch reserviert.
+		List<Integer> claimedByFirst = first.claim(2, List.of(otherServiceKey));
+		assertThat(claimedByFirst).hasSize(2);
+		first.release(claimedByFirst.subList(1, 2));
+		assertThat(second.claim(10, List.of(otherServiceKey))).isEmpty();
+
+		// Nach Ablauf der Wartezeit geht es mit der ältesten Nachricht weiter.
+		first.release(claimedByFirst.subList(0, 1));
+		assertThat(second.claim(10, List.of(otherServiceKey))).hasSize(3).startsWith(claimedByFirst.get(0));
+		assertThat(first.claim(10, List.of(serviceKey))).hasSize(3);
+	}
+
+	@DisplayName("Abgelaufene Reservierungen werden übernommen")
+	@Test
+	void test_expiredLease() {
+		// Ein Knoten, dessen Reservierungen sofort ablaufen, verhält sich wie ein ausgefallener Knoten.
+		ServiceMessageClaimer crashed = node("crashed", -60);
+		ServiceMessageClaimer survivor = node("survivor", 300);
+
+		List<Integer> claimedByCrashed = crashed.claim(10, List.of());
+		assertThat(claimedByCrashed).hasSize(6);
+		assertThat(survivor.claim(10, List.of())).containsExactlyElementsOf(claimedByCrashed);
+	}
+
+	@DisplayName("Nachrichten ausgeschlossener Dienste werden nicht reserviert")
+	@Test
+	void test_excludedServices() {
+		ServiceMessageClaimer claimer = node("first", 300);
+		final Integer serviceKey = services.get(0).getKeyLong();
+		assertThat(claimer.claim(10, List.of(serviceKey))).hasSize(3);
+		assertThat(claimer.claim(10, List.of(serviceKey))).isEmpty();
+		assertThat(claimer.claim(10, List.of())).hasSize(3);
+	}
+}
@@ -0,0 +1,135 @@
+package aero.minova.cas.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.DataType;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.service.model.CASServices;
+import aero.minova.cas.service.model.NewsfeedListener;
+import aero.minova.cas.service.repository.CASServicesRepository;
+import aero.minova.cas.service.repository.NewsfeedListenerRepository;
+import aero.minova.cas.service.repository.ProcedureNewsfeedRepository;
+import aero.minova.cas.servicenotifier.ServiceNotifierService;
+
+class ServiceNotifierIndexTest {
+
+	private ServiceNotifierService serviceNotifierService;
+	private CASServicesRepository casServiceRepo;
+	private NewsfeedListenerRepository newsfeedListenerRepo;
+	private ProcedureNewsfeedRepository procedureNewsfeedRepo;
+
+	@BeforeEach
+	void setUp() {
+		serviceNotifierService = new ServiceNotifierService();
+		casServiceRepo = mock(CASServicesRepository.class);
+		newsfeedListenerRepo = mock(NewsfeedListenerRepository.class);
+		procedureNewsfeedRepo = mock(ProcedureNewsfeedRepository.class);
+		ReflectionTestUtils.setField(serviceNotifierService, "logger", mock(CustomLogger.class));
+		ReflectionTestUtils.setField(serviceNotifierService, "casServiceRepo", casServiceRepo);
+		ReflectionTestUtils.setField(serviceNotifierService, "newsfeedListenerRepo", newsfeedListenerRepo);
+		ReflectionTestUtils.setField(serviceNotifierService, "procedureNewsfeedRepo", procedureNewsfeedRepo);
+	}
+
+	private static CASServices service(int key, String name) {
+		CASServices service = new CASServices();
+		service.setKeyLong(key);
+		service.setKeyText(name);
+		return service;
+	}
+
+	private static NewsfeedListener listener(int key, CASServices service, String topic) {
+		NewsfeedListener listener = new NewsfeedListener();
+		listener.setKeyLong(key);
+		listener.setCasService(service);
+		listener.setTopic(topic);
+		return listener;
+	}
+
+	private static Table listenerTable(String serviceName, String topic) {
+		Table table = new Table();
+		table.addColumn(new Column("CASServiceName", DataType.STRING));
+		table.addColumn(new Column("Topic", DataType.STRING));
+		Row row = new Row();
+		row.addValue(new Value(serviceName, null));
+		row.addValue(new Value(topic, null));
+		table.addRow(row);
+		return table;
+	}
+
+	@DisplayName("Der Index wird aus der Datenbank aufgebaut und enthält keine abgemeldeten Dienste")
+	@Test
+	void test_rebuildIndex() {
+		CASServices active = service(1, "Active");
+		CASServices unregistered = service(2, "Unregistered");
+		unregistered.setLastAction(-1);
+		when(newsfeedListenerRepo.findAllByLastActionGreaterThan(0))
+				.thenReturn(List.of(listener(1, active, "tShipment"), listener(2, unregistered, "tShipment"), listener(3, active, "tFlight")));
+
+		serviceNotifierService.rebuildIndex();
+
+		assertThat(serviceNotifierService.findListeners("tShipment")).extracting(NewsfeedListener::getKeyLong).containsExactly(1);
+		assertThat(serviceNotifierService.findListeners("tFlight")).extracting(NewsfeedListener::getKeyLong).containsExactly(3);
+		assertThat(serviceNotifierService.findListeners("tUnknown")).isEmpty();
+		assertThat(serviceNotifierService.getNewsfeeds().get("Active")).containsExactly("tShipment", "tFlight");
+	}
+
+	@DisplayName("An- und Abmelden von NewsfeedListenern hält den Index aktuell")
+	@Test
+	void test_registerAndUnregister() {
+		CASServices service = service(1, "Service");
+		when(casServiceRepo.findByKeyText("Service")).thenReturn(List.of(service));
+		doAnswer(invocation -> {
+			NewsfeedListener saved = invocation.getArgument(0);
+			if (saved.getKeyLong() == null) {
+				saved.setKeyLong(7);
+			}
+			return saved;
+		}).when(newsfeedListenerRepo).saveAndFlush(any(NewsfeedListener.class));
+
+		serviceNotifierService.registerNewsfeedListener(listenerTable("Service", "tShipment"));
+
+		List<NewsfeedListener> listeners = serviceNotifierService.findListeners("tShipment");
+		assertThat(listeners).hasSize(1);
+		assertThat(listeners.get(0).getCasService()).isSameAs(service);
+
+		when(newsfeedListenerRepo.findAllByCasServiceAndTopicAndLastActionGreaterThan(service, "tShipment", 0)).thenReturn(List.of(listeners.get(0)));
+		serviceNotifierService.unregisterNewsfeedListener(listenerTable("Service", "tShipment"));
+
+		assertThat(serviceNotifierService.findListeners("tShipment")).isEmpty();
+	}
+
+	@DisplayName("An- und Abmeldungen über andere Knoten kommen mit dem nächsten Abgleich an")
+	@Test
+	void test_rebuildIndexPicksUpOtherNodes() {
+		CASServices service = service(1, "Service");
+		when(newsfeedListenerRepo.findAllByLastActionGreaterThan(0)).thenReturn(List.of());
+		serviceNotifierService.rebuildIndex();
+		assertThat(serviceNotifierService.findListeners("tShipment")).isEmpty();
+
+		// Auf einem anderen Knoten angemeldet
+		when(newsfeedListenerRepo.findAllByLastActionGreaterThan(0)).thenReturn(List.of(listener(1, service, "tShipment")));
+		serviceNotifierService.rebuildIndex();
+		assertThat(serviceNotifierService.findListeners("tShipment")).extracting(NewsfeedListener::getKeyLong).containsExactly(1);
+
+		// Auf einem anderen Knoten wieder abgemeldet
+		when(newsfeedListenerRepo.findAllByLastActionGreaterThan(0)).thenReturn(List.of());
+		serviceNotifierService.rebuildIndex();
+		assertThat(serviceNotifierService.findListeners("tShipment")).isEmpty();
+		assertThat(serviceNotifierService.getNewsfeeds()).doesNotContainKey("Service");
+	}
+}
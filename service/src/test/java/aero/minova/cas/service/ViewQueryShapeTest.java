@@ -0,0 +1,87 @@
+package aero.minova.cas.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.DataType;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.Value;
+
+class ViewQueryShapeTest {
+
+	private static Table table(Value keyText, Value keyLong) {
+		Table table = new Table();
+		table.setName("xvcasTest");
+		table.addColumn(new Column("KeyText", DataType.STRING));
+		table.addColumn(new Column("KeyLong", DataType.INTEGER));
+		table.addColumn(new Column(Column.AND_FIELD_NAME, DataType.BOOLEAN));
+		Row row = new Row();
+		row.addValue(keyText);
+		row.addValue(keyLong);
+		row.addValue(new Value(false, null));
+		table.addRow(row);
+		return table;
+	}
+
+	private static List<Row> authorities(String... tokens) {
+		List<Row> authorities = new ArrayList<>();
+		for (String token : tokens) {
+			Row row = new Row();
+			row.addValue(new Value("xvcasTest", null));
+			row.addValue(new Value(token, null));
+			row.addValue(new Value(true, null));
+			authorities.add(row);
+		}
+		return authorities;
+	}
+
+	@DisplayName("Gleiche Form mit anderen Werten ergibt denselben Schlüssel")
+	@Test
+	void test_sameShape() {
+		String first = ViewQueryShape.of("view", table(new Value("abc", null), new Value(1, ">")), 0, 0, authorities("admin"));
+		String second = ViewQueryShape.of("view", table(new Value("xyz", null), new Value(42, ">")), 0, 0, authorities("admin"));
+		assertThat(first).isNotNull().isEqualTo(second);
+	}
+
+	@DisplayName("Nutzer mit gleich vielen SecurityTokens teilen sich den Schlüssel")
+	@Test
+	void test_sameTokenBucket() {
+		String first = ViewQueryShape.of("view", table(new Value("abc", null), new Value(1, ">")), 0, 0, authorities("a", "b", "c"));
+		String second = ViewQueryShape.of("view", table(new Value("abc", null), new Value(1, ">")), 0, 0, authorities("x", "y", "z", "w"));
+		assertThat(first).isEqualTo(second);
+	}
+
+	@DisplayName("Regeln, Wildcards, Listen, Limits und Tokens ändern den Schlüssel")
+	@Test
+	void test_differentShapes() {
+		String base = ViewQueryShape.of("view", table(new Value("abc", null), new Value(1, ">")), 0, 0, authorities("admin"));
+
+		assertThat(ViewQueryShape.of("view", table(new Value("abc", null), new Value(1, "<")), 0, 0, authorities("admin"))).isNotEqualTo(base);
+		assertThat(ViewQueryShape.of("view", table(new Value("ab%", null), new Value(1, ">")), 0, 0, authorities("admin"))).isNotEqualTo(base);
+		assertThat(ViewQueryShape.of("view", table(new Value("", null), new Value(1, ">")), 0, 0, authorities("admin"))).isNotEqualTo(base);
+		assertThat(ViewQueryShape.of("view", table(null, new Value(1, ">")), 0, 0, authorities("admin"))).isNotEqualTo(base);
+		assertThat(ViewQueryShape.of("paged", table(new Value("abc", null), new Value(1, ">")), 10, 1, authorities("admin"))).isNotEqualTo(base);
+		assertThat(ViewQueryShape.of("view", table(new Value("abc", null), new Value(1, ">")), 0, 0, authorities("admin", "user")))
+				.isNotEqualTo(base);
+		assertThat(ViewQueryShape.of("view", table(new Value("abc", null), new Value(1, ">")), 0, 0, new ArrayList<>())).isNotEqualTo(base);
+
+		String inTwo = ViewQueryShape.of("view", table(new Value("a,b", "in()"), new Value(1, ">")), 0, 0, authorities("admin"));
+		String inThree = ViewQueryShape.of("view", table(new Value("a,b,c", "in()"), new Value(1, ">")), 0, 0, authorities("admin"));
+		assertThat(inTwo).isNotEqualTo(inThree);
+	}
+
+	@DisplayName("Ungültige Anfragen werden nicht gecacht")
+	@Test
+	void test_invalid() {
+		Table table = table(new Value("abc", null), new Value(1, ">"));
+		table.setName(" ");
+		assertThat(ViewQueryShape.of("view", table, 0, 0, authorities("admin"))).isNull();
+	}
+}
@@ -9,8 +9,10 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.StringWriter;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,12 +30,15 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.jdbc.Sql;
 
+import com.google.gson.Gson;
+
 import aero.minova.cas.BaseTest;
 import aero.minova.cas.CoreApplicationSystemApplication;
 import aero.minova.cas.api.domain.Column;
 import aero.minova.cas.api.domain.DataType;
 import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.TableException;
 import aero.minova.cas.api.domain.TableMetaData;
 import aero.minova.cas.api.domain.Value;
 import aero.minova.cas.controller.SqlViewController;
@@ -76,6 +81,12 @@ public abstract class ViewServiceBaseTest<T extends ViewServiceInterface> extend
 	@Autowired
 	ColumnSecurityRepository columnSecurityRepository;
 
+	@Autowired
+	SecurityService securityService;
+
+	@Autowired
+	Gson gson;
+
 	private List<Integer> authorityKeys = Arrays.asList(1, 2, 3, 4, 5);
 
 	@PostConstruct
@@ -101,6 +112,9 @@ public abstract class ViewServiceBaseTest<T extends ViewServiceInterface> extend
 		columnSecurityRepository.save(new ColumnSecurity(1, "cs1", "cs1", "cs1", null));
 		columnSecurityRepository.save(new ColumnSecurity(2, "cs2", "cs2", "cs2", "admin"));
 		columnSecurityRepository.save(new ColumnSecurity(3, "cs3", "cs3", "cs3", "niemand"));
+
+		// Die xtcasColumnSecurity wurde direkt in der Datenbank geändert, im Betrieb übernimmt das die ColumnSecurityExtension.
+		securityService.invalidateColumnSecurity();
 	}
 
 	@Test
@@ -446,6 +460,38 @@ public abstract class ViewServiceBaseTest<T extends ViewServiceInterface> extend
 		assertTrue(indexViewResult.getMetaData().getResultsLeft() >= 0);
 	}
 
+	@Test
+	@DisplayName("Gestreamtes Ergebnis entspricht dem von data/index")
+	void testStreamView() throws Exception {
+		Table expected = viewController.getIndexView(getTableForRequestWithLimitedRows(1));
+
+		StringWriter out = new StringWriter();
+		viewService.streamView(getTableForRequestWithLimitedRows(1), securityService.getPrivilegePermissions("xtcasAuthorities"), gson, out);
+		Table streamed = gson.fromJson(out.toString(), Table.class);
+
+		assertEquals(gson.toJson(expected.getColumns()), gson.toJson(streamed.getColumns()));
+		assertEquals(gson.toJson(expected.getRows()), gson.toJson(streamed.getRows()));
+		assertEquals(expected.getMetaData(), streamed.getMetaData());
+	}
+
+	@Test
+	@DisplayName("Bricht das Streamen nach den ersten Zeichen ab, endet das JSON mit der returnErrorMessage statt der metaData")
+	void testStreamViewError() throws Exception {
+		Table request = getTableForRequestWithLimitedRows(1);
+		// Der Username lässt sich nicht als Zahl lesen, die erste Zeile schlägt also fehl, nachdem name und columns geschrieben wurden.
+		request.getColumns().set(1, new Column("Username", DataType.INTEGER));
+
+		StringWriter out = new StringWriter();
+		assertThrows(TableException.class,
+				() -> viewService.streamView(request, securityService.getPrivilegePermissions("xtcasAuthorities"), gson, out));
+		Table streamed = gson.fromJson(out.toString(), Table.class);
+
+		assertEquals(6, streamed.getColumns().size());
+		assertTrue(streamed.getRows().isEmpty());
+		assertNull(streamed.getMetaData());
+		assertNotNull(streamed.getReturnErrorMessage());
+	}
+
 	private Table getTableForRequest() {
 		Table indexView = new Table();
 		indexView.setName("xtcasAuthorities");
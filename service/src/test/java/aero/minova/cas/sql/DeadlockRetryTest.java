@@ -0,0 +1,84 @@
+package aero.minova.cas.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.api.domain.ProcedureException;
+
+class DeadlockRetryTest {
+
+	private DeadlockRetry retry;
+
+	@BeforeEach
+	void setUp() {
+		retry = new DeadlockRetry();
+		retry.customLogger = Mockito.mock(CustomLogger.class);
+		retry.maxRetries = 3;
+		retry.initialBackoffMillis = 1;
+		retry.maxBackoffMillis = 2;
+	}
+
+	@DisplayName("Deadlocks werden über Fehlercode und SQLState erkannt, auch verschachtelt")
+	@Test
+	void test_isDeadlock() {
+		assertThat(DeadlockRetry.isDeadlock(new SQLException("victim", "40001", 1205))).isTrue();
+		assertThat(DeadlockRetry.isDeadlock(new SQLException("victim", null, 1205))).isTrue();
+		assertThat(DeadlockRetry.isDeadlock(new SQLException("serialization", "40001"))).isTrue();
+		assertThat(DeadlockRetry.isDeadlock(new SQLException("deadlock", "40P01"))).isTrue();
+		assertThat(DeadlockRetry.isDeadlock(new ProcedureException(new RuntimeException(new SQLException("victim", null, 1205))))).isTrue();
+
+		assertThat(DeadlockRetry.isDeadlock(new SQLException("constraint", "23000", 547))).isFalse();
+		assertThat(DeadlockRetry.isDeadlock(new RuntimeException("msg.PrivilegeError"))).isFalse();
+	}
+
+	@DisplayName("Nach einem Deadlock wird die Transaktion wiederholt")
+	@Test
+	void test_retryAfterDeadlock() throws Exception {
+		AtomicInteger attempts = new AtomicInteger();
+		String result = retry.execute("test", () -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw new ProcedureException(new SQLException("victim", "40001", 1205));
+			}
+			return "ok";
+		});
+		assertThat(result).isEqualTo("ok");
+		assertThat(attempts.get()).isEqualTo(3);
+	}
+
+	@DisplayName("Andere Fehler und aufgebrauchte Versuche werden weitergeworfen")
+	@Test
+	void test_noRetry() {
+		AtomicInteger attempts = new AtomicInteger();
+		assertThrows(ProcedureException.class, () -> retry.execute("test", () -> {
+			attempts.incrementAndGet();
+			throw new ProcedureException("msg.PrivilegeError");
+		}));
+		assertThat(attempts.get()).isEqualTo(1);
+
+		attempts.set(0);
+		assertThrows(SQLException.class, () -> retry.execute("test", () -> {
+			attempts.incrementAndGet();
+			throw new SQLException("victim", "40P01");
+		}));
+		assertThat(attempts.get()).isEqualTo(4);
+	}
+
+	@DisplayName("Die Pause wächst exponentiell bis zum Maximum")
+	@Test
+	void test_backoff() {
+		for (int attempt = 0; attempt < 10; attempt++) {
+			long expected = Math.min(1000, 50L << attempt);
+			assertThat(DeadlockRetry.backoffMillis(attempt, 50, 1000)).isBetween(expected / 2, expected);
+		}
+		assertThat(DeadlockRetry.backoffMillis(100, 50, 1000)).isBetween(500L, 1000L);
+	}
+}
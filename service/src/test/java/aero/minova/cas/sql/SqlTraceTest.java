@@ -0,0 +1,73 @@
+package aero.minova.cas.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.sql.CallableStatement;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.DataType;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.Value;
+
+class SqlTraceTest {
+
+	@DisplayName("Der Trace wird im bisherigen Format ausgegeben, mehrere Statements in eigenen Zeilen")
+	@Test
+	void test_toString() {
+		SqlTrace trace = new SqlTrace();
+		trace.statement("{? = call xpcorTest (?,?)}");
+		trace.bind(2, 1);
+		trace.bind(3, null);
+		trace.statement("select count(1) from xvcorTest where SecurityToken in (?)");
+		trace.bindSecurityToken(1, "admin");
+
+		assertThat(trace).hasToString("{? = call xpcorTest (?,?)} ; Position: 2, Value: 1 ; Position: 3, Value: null\n"
+				+ "select count(1) from xvcorTest where SecurityToken in (?) ; Position: 1, SecurityToken: admin");
+	}
+
+	@DisplayName("Nach reset fehlen nur die Einträge nach dem mark, auch über die Anfangsgröße hinaus")
+	@Test
+	void test_reset() {
+		SqlTrace trace = new SqlTrace();
+		trace.statement("{call xpcorTest (?)}");
+		final int mark = trace.mark();
+		trace.statement("{call xpcorTest (?)} (batch)");
+		for (int i = 0; i < 100; i++) {
+			trace.bind(1, i);
+		}
+		trace.reset(mark);
+		trace.bind(1, "row");
+
+		assertThat(trace).hasToString("{call xpcorTest (?)} ; Position: 1, Value: row");
+
+		trace.clear();
+		assertThat(trace.isEmpty()).isTrue();
+		assertThat(trace).hasToString("");
+	}
+
+	@DisplayName("Die Parameter einer View-Abfrage werden mit ihrer Position vermerkt")
+	@Test
+	void test_fillPreparedViewString() {
+		Table inputTable = new Table();
+		inputTable.setName("xvcorTest");
+		inputTable.addColumn(new Column("KeyLong", DataType.INTEGER));
+		inputTable.addColumn(new Column("KeyText", DataType.STRING));
+		Row row = new Row();
+		row.addValue(new Value(5, ">"));
+		row.addValue(new Value("a,b", "in()"));
+		inputTable.addRow(row);
+		final String query = "select * from xvcorTest where KeyLong > ? and KeyText in (?,?) and SecurityToken in (?)";
+
+		SqlTrace trace = new SqlTrace();
+		SqlUtils.fillPreparedViewString(inputTable, mock(CallableStatement.class), query, trace, NOPLogger.NOP_LOGGER, List.of("admin"));
+
+		assertThat(trace).hasToString(query + " ; Position: 1, Value: 5 ; Position: 2, Value: a ; Position: 3, Value: b ; Position: 4, SecurityToken: admin");
+	}
+}
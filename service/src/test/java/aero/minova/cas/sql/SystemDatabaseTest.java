@@ -0,0 +1,49 @@
+package aero.minova.cas.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import aero.minova.cas.CoreApplicationSystemApplication;
+
+@SpringBootTest(classes = CoreApplicationSystemApplication.class, properties = { "application.runner.enabled=false" })
+class SystemDatabaseTest {
+
+	@Autowired
+	SystemDatabase systemDatabase;
+
+	@DisplayName("Innerhalb von shareConnection wird immer dieselbe Connection geliefert")
+	@Test
+	void test_sharedConnection() throws Exception {
+		Connection first;
+		try (SystemDatabase.SharedConnection shared = systemDatabase.shareConnection()) {
+			first = systemDatabase.getConnection();
+			first.close();
+			systemDatabase.closeConnection(first);
+			Connection second = systemDatabase.getConnection();
+
+			assertThat(second).isSameAs(first);
+			assertThat(second.isClosed()).isFalse();
+			assertThat(second.getAutoCommit()).isFalse();
+
+			// Verschachtelte Klammern verwenden die äußere Connection weiter
+			try (SystemDatabase.SharedConnection nested = systemDatabase.shareConnection()) {
+				assertThat(systemDatabase.getConnection()).isSameAs(first);
+			}
+			assertThat(systemDatabase.getConnection()).isSameAs(first);
+		}
+		assertThat(first.isClosed()).isTrue();
+
+		Connection own = systemDatabase.getConnection();
+		try {
+			assertThat(own).isNotSameAs(first);
+		} finally {
+			systemDatabase.closeConnection(own);
+		}
+	}
+}